@@ -0,0 +1,150 @@
+package com.mjoys.common.wolf.redis;
+
+import redis.clients.jedis.Tuple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 14:55.<br/>
+ * 功能描述 : RedisClient的异步视图,每个方法都在RedisAsyncExecutor中执行并返回CompletableFuture.<br/>
+ * <br/>
+ * 适合一次请求要读多个互不相关的key的场景,先把所有读请求发出去,再一起join,
+ * 总耗时从所有往返时间之和降到最慢的那一次:
+ * <pre>
+ * CompletableFuture&lt;String&gt; a = async.get("a");
+ * CompletableFuture&lt;Map&lt;String, String&gt;&gt; b = async.hgetAll("b");
+ * CompletableFuture.allOf(a, b).join();
+ * </pre>
+ * 未列出的命令可以通过{@link #execute(Function)}执行.<br/>
+ * 变更记录 : .<br/>
+ */
+public class AsyncRedisClient {
+
+    private final RedisClient        client;
+    private final RedisAsyncExecutor executor;
+
+    /**
+     * @param client 实际执行命令的客户端
+     * @param executor 执行命令的线程池
+     */
+    public AsyncRedisClient(RedisClient client, RedisAsyncExecutor executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    /**
+     * @return 执行命令的线程池,可以从中读取排队/拒绝等统计数据
+     */
+    public RedisAsyncExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 异步执行任意RedisClient操作
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    public <T> CompletableFuture<T> execute(final Function<RedisClient, T> action) {
+        return executor.submit(() -> action.apply(client));
+    }
+
+    public CompletableFuture<String> get(final String key) {
+        return executor.submit(() -> client.get(key));
+    }
+
+    public CompletableFuture<Boolean> exists(final String key) {
+        return executor.submit(() -> client.exists(key));
+    }
+
+    public CompletableFuture<Long> ttl(final String key) {
+        return executor.submit(() -> client.ttl(key));
+    }
+
+    public CompletableFuture<String> set(final String key, final String value) {
+        return executor.submit(() -> client.set(key, value));
+    }
+
+    public CompletableFuture<String> setex(final String key, final int seconds, final String value) {
+        return executor.submit(() -> client.setex(key, seconds, value));
+    }
+
+    public CompletableFuture<Long> del(final String key) {
+        return executor.submit(() -> client.del(key));
+    }
+
+    public CompletableFuture<Long> expire(final String key, final int seconds) {
+        return executor.submit(() -> client.expire(key, seconds));
+    }
+
+    public CompletableFuture<Long> incr(final String key) {
+        return executor.submit(() -> client.incr(key));
+    }
+
+    public CompletableFuture<Long> incrBy(final String key, final long integer) {
+        return executor.submit(() -> client.incrBy(key, integer));
+    }
+
+    public CompletableFuture<String> hget(final String key, final String field) {
+        return executor.submit(() -> client.hget(key, field));
+    }
+
+    public CompletableFuture<List<String>> hmget(final String key, final String... fields) {
+        return executor.submit(() -> client.hmget(key, fields));
+    }
+
+    public CompletableFuture<Map<String, String>> hgetAll(final String key) {
+        return executor.submit(() -> client.hgetAll(key));
+    }
+
+    public CompletableFuture<Long> hset(final String key, final String field, final String value) {
+        return executor.submit(() -> client.hset(key, field, value));
+    }
+
+    public CompletableFuture<Long> hincrBy(final String key, final String field, final long value) {
+        return executor.submit(() -> client.hincrBy(key, field, value));
+    }
+
+    public CompletableFuture<List<String>> lrange(final String key, final long start,
+                                                  final long end) {
+        return executor.submit(() -> client.lrange(key, start, end));
+    }
+
+    public CompletableFuture<Set<String>> smembers(final String key) {
+        return executor.submit(() -> client.smembers(key));
+    }
+
+    public CompletableFuture<Boolean> sismember(final String key, final String member) {
+        return executor.submit(() -> client.sismember(key, member));
+    }
+
+    public CompletableFuture<Double> zscore(final String key, final String member) {
+        return executor.submit(() -> client.zscore(key, member));
+    }
+
+    public CompletableFuture<Set<String>> zrange(final String key, final long start,
+                                                 final long end) {
+        return executor.submit(() -> client.zrange(key, start, end));
+    }
+
+    public CompletableFuture<Set<String>> zrevrange(final String key, final long start,
+                                                    final long end) {
+        return executor.submit(() -> client.zrevrange(key, start, end));
+    }
+
+    public CompletableFuture<Set<Tuple>> zrangeWithScores(final String key, final long start,
+                                                          final long end) {
+        return executor.submit(() -> client.zrangeWithScores(key, start, end));
+    }
+
+    public CompletableFuture<Set<String>> zrangeByScore(final String key, final double min,
+                                                       final double max) {
+        return executor.submit(() -> client.zrangeByScore(key, min, max));
+    }
+}
@@ -0,0 +1,106 @@
+package com.mjoys.common.wolf.redis;
+
+import com.mjoys.common.wolf.model.ReturnValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 14:55.<br/>
+ * 功能描述 : ShardJedisClient的异步视图,每个方法都在RedisAsyncExecutor中执行并返回CompletableFuture&lt;ReturnValue&gt;.<br/>
+ * <br/>
+ * 如果传入的是spring代理过的ShardJedisClient,RediscachePlugin依然生效,异常会被转换成失败的ReturnValue;
+ * 否则异常会让future以异常结束.<br/>
+ * 变更记录 : .<br/>
+ */
+public class AsyncShardJedisClient {
+
+    private final ShardJedisClient   client;
+    private final RedisAsyncExecutor executor;
+
+    /**
+     * @param client 实际执行命令的客户端
+     * @param executor 执行命令的线程池
+     */
+    public AsyncShardJedisClient(ShardJedisClient client, RedisAsyncExecutor executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    /**
+     * @return 执行命令的线程池,可以从中读取排队/拒绝等统计数据
+     */
+    public RedisAsyncExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 异步执行任意ShardJedisClient操作
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    public <T> CompletableFuture<ReturnValue<T>> execute(final Function<ShardJedisClient, ReturnValue<T>> action) {
+        return executor.submit(() -> action.apply(client));
+    }
+
+    public CompletableFuture<ReturnValue<String>> get(final String key) {
+        return executor.submit(() -> client.get(key));
+    }
+
+    public CompletableFuture<ReturnValue<byte[]>> get(final byte[] key) {
+        return executor.submit(() -> client.get(key));
+    }
+
+    public CompletableFuture<ReturnValue<Boolean>> exists(final String key) {
+        return executor.submit(() -> client.exists(key));
+    }
+
+    public CompletableFuture<ReturnValue<Boolean>> set(final String key, final String value) {
+        return executor.submit(() -> client.set(key, value));
+    }
+
+    public CompletableFuture<ReturnValue<Boolean>> setex(final String key, final String value,
+                                                         final int expire) {
+        return executor.submit(() -> client.setex(key, value, expire));
+    }
+
+    public CompletableFuture<ReturnValue<Long>> incrBy(final String key, final long value) {
+        return executor.submit(() -> client.incrBy(key, value));
+    }
+
+    public CompletableFuture<ReturnValue<String>> hget(final String key, final String field) {
+        return executor.submit(() -> client.hget(key, field));
+    }
+
+    public CompletableFuture<ReturnValue<byte[]>> hget(final byte[] key, final byte[] field) {
+        return executor.submit(() -> client.hget(key, field));
+    }
+
+    public CompletableFuture<ReturnValue<Map<String, String>>> hgetAll(final String key) {
+        return executor.submit(() -> client.hgetAll(key));
+    }
+
+    public CompletableFuture<ReturnValue<Boolean>> hset(final String key, final String field,
+                                                        final String value) {
+        return executor.submit(() -> client.hset(key, field, value));
+    }
+
+    public CompletableFuture<ReturnValue<Long>> hincrBy(final String key, final String field,
+                                                        final long value) {
+        return executor.submit(() -> client.hincrBy(key, field, value));
+    }
+
+    public CompletableFuture<ReturnValue<Boolean>> hexists(final String key, final String field) {
+        return executor.submit(() -> client.hexists(key, field));
+    }
+
+    public CompletableFuture<ReturnValue<List<String>>> lrange(final String key, final long start,
+                                                               final long end) {
+        return executor.submit(() -> client.lrange(key, start, end));
+    }
+}
@@ -2,12 +2,21 @@ package com.mjoys.common.wolf.redis;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisShardInfo;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.util.Sharded;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 创 建 人 : leiliang.<br/>
@@ -21,6 +30,13 @@ public class BaseShardedJedisClient {
 
     protected ShardedJedisPool jedisPool = null;
 
+    private Sharded<Jedis, JedisShardInfo> shards;                                                       // 和连接池相同的分片规则,用于在借连接之前算出key所在的节点
+    private volatile RedisCircuitBreaker.Config circuitBreakerConfig;                                   // 熔断参数,为null表示未开启熔断
+    private final ConcurrentMap<String, RedisCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>(); // 每个分片节点一个熔断器
+    private volatile RedisPoolSizer poolSizer;                                                            // 连接池自适应调整,为null表示固定大小
+    private ScheduledExecutorService poolSizerExecutor;
+    private final RedisPoolWarmer warmer = new RedisPoolWarmer();
+
     /**
      * 初始化redis.
      */
@@ -48,12 +64,186 @@ public class BaseShardedJedisClient {
             config.setBlockWhenExhausted(false);
             config.setTestOnBorrow(false);
             jedisPool = new ShardedJedisPool(config, ppl);
+            shards = new Sharded<>(ppl);
         } catch (Exception e) {
             logger.error("redis 初始化失败", e);
             throw new IllegalArgumentException("请检查配置项和参数值", e);
         }
     }
 
+    /**
+     * 在后台线程中并行预热连接池,每个连接PING所有分片,完成后放行就绪信号;connections为0时直接就绪
+     *
+     * @param connections 预热的连接数
+     */
+    protected void warmUp(int connections) {
+        long start = System.nanoTime();
+        if (connections <= 0 || jedisPool == null) {
+            warmer.markReady(start);
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                int warmed = warmer.warm("shards", jedisPool, connections, resource -> {
+                    for (Jedis jedis : resource.getAllShards()) {
+                        jedis.ping();
+                    }
+                });
+                warmer.onWarmed("shards", warmed, connections);
+            } catch (RuntimeException e) {
+                logger.error("redis warm up failed", e);
+                warmer.onWarmed("shards", 0, connections);
+            } finally {
+                warmer.markReady(start);
+            }
+        }, "redis-shard-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 等待连接池预热完成,应用在接入流量之前调用
+     *
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 预热已完成且所有分片都可用时返回true
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return warmer.awaitReady(timeout, unit);
+    }
+
+    /**
+     * @return 预热是否已完成且所有分片都可用
+     */
+    public boolean isReady() {
+        return warmer.isReady();
+    }
+
+    /**
+     * @return 预热器,可以查看预热耗时和连接数
+     */
+    public RedisPoolWarmer getWarmer() {
+        return warmer;
+    }
+
+    /**
+     * 开启连接池自适应调整:每5秒采样一次,连接用到80%以上或借连接变慢时在上限内扩大maxTotal,持续空闲时缩小.
+     * 分片连接池默认maxTotal为1000且不阻塞等待,开启后可以用一个小得多的下限起步
+     *
+     * @param minTotal maxTotal的下限
+     * @param maxTotal maxTotal的上限
+     * @return 调整器,可以修改阈值、查看扩缩容次数
+     */
+    public synchronized RedisPoolSizer enableAdaptivePoolSizing(int minTotal, int maxTotal) {
+        RedisPoolSizer sizer = new RedisPoolSizer(minTotal, maxTotal);
+        poolSizer = sizer;
+        if (poolSizerExecutor == null) {
+            poolSizerExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "redis-shard-pool-sizer");
+                t.setDaemon(true);
+                return t;
+            });
+            poolSizerExecutor.scheduleWithFixedDelay(this::adjustPoolSize, 5, 5, TimeUnit.SECONDS);
+        }
+        return sizer;
+    }
+
+    /**
+     * 关闭连接池自适应调整,连接池保持当前大小
+     */
+    public synchronized void disableAdaptivePoolSizing() {
+        poolSizer = null;
+        if (poolSizerExecutor != null) {
+            poolSizerExecutor.shutdownNow();
+            poolSizerExecutor = null;
+        }
+    }
+
+    /**
+     * @return 连接池自适应调整器,未开启时返回null
+     */
+    public RedisPoolSizer getPoolSizer() {
+        return poolSizer;
+    }
+
+    private void adjustPoolSize() {
+        RedisPoolSizer sizer = poolSizer;
+        if (sizer == null || jedisPool == null) {
+            return;
+        }
+        try {
+            sizer.adjust("shards", jedisPool);
+        } catch (RuntimeException e) {
+            logger.warn("adjust redis shard pool size failed", e);
+        }
+    }
+
+    /**
+     * 开启熔断:每个分片节点一个熔断器,按失败率或慢调用率打开,打开期间落在该节点上的命令直接返回失败,
+     * 不再等待借连接和socket超时.已经开启时返回当前的参数
+     *
+     * @return 熔断参数,可以直接修改,对所有节点生效
+     */
+    public synchronized RedisCircuitBreaker.Config enableCircuitBreaker() {
+        if (circuitBreakerConfig == null) {
+            circuitBreakerConfig = new RedisCircuitBreaker.Config();
+        }
+        return circuitBreakerConfig;
+    }
+
+    /**
+     * 关闭熔断,丢弃所有熔断器的状态
+     */
+    public synchronized void disableCircuitBreaker() {
+        circuitBreakerConfig = null;
+        circuitBreakers.clear();
+    }
+
+    /**
+     * @return 各节点的熔断器,按节点地址排序
+     */
+    public Map<String, RedisCircuitBreaker> getCircuitBreakers() {
+        return new TreeMap<>(circuitBreakers);
+    }
+
+    /**
+     * @param key 操作的key
+     * @return key所在节点的熔断器,未开启熔断时返回null
+     */
+    protected RedisCircuitBreaker circuitBreaker(String key) {
+        if (circuitBreakerConfig == null || shards == null) {
+            return null;
+        }
+        return circuitBreaker(shards.getShardInfo(key));
+    }
+
+    /**
+     * 二进制key按原始字节分片,和ShardedJedis的路由一致;不能先转成String,非UTF-8的key转换后会落到别的分片
+     *
+     * @param key 操作的key
+     * @return key所在节点的熔断器,未开启熔断时返回null
+     */
+    protected RedisCircuitBreaker circuitBreaker(byte[] key) {
+        if (circuitBreakerConfig == null || shards == null) {
+            return null;
+        }
+        return circuitBreaker(shards.getShardInfo(key));
+    }
+
+    private RedisCircuitBreaker circuitBreaker(JedisShardInfo shard) {
+        RedisCircuitBreaker.Config config = circuitBreakerConfig;
+        if (config == null) {
+            return null;
+        }
+        String name = shard.getHost() + ":" + shard.getPort();
+        RedisCircuitBreaker breaker = circuitBreakers.get(name);
+        if (breaker == null) {
+            breaker = circuitBreakers.computeIfAbsent(name, k -> new RedisCircuitBreaker(k, config));
+        }
+        return breaker;
+    }
+
     /**
      * Close resource.
      *
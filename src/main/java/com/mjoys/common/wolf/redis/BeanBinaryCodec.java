@@ -0,0 +1,387 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 18:10.<br/>
+ * 功能描述 : 基于反射的紧凑二进制bean编解码器.<br/>
+ * <br/>
+ * 只写字段值不写字段名:先写4字节的结构指纹,再按字段名顺序依次写每个字段,int/long用变长编码,
+ * 可以为null的字段前面多一个字节的标记.支持的字段类型:基本类型及其包装类、String、byte[]、Date、BigDecimal、枚举,
+ * 其他类型在创建codec时直接报错.static和transient字段会被忽略.<br/>
+ * 结构指纹由字段名和字段类型计算,类的字段有增删改后旧数据的指纹对不上,decode返回null,按缓存未命中处理.
+ * 指纹对上但数据被截断、不是本codec写入的,或者枚举常量已经改名,也返回null.<br/>
+ * 变更记录 : .<br/>
+ */
+public class BeanBinaryCodec<T> implements RedisCodec<T> {
+
+    private static final Logger                 logger  = LoggerFactory.getLogger(BeanBinaryCodec.class);
+
+    private static final int                    BOOLEAN = 0;
+    private static final int                    BYTE    = 1;
+    private static final int                    SHORT   = 2;
+    private static final int                    CHAR    = 3;
+    private static final int                    INT     = 4;
+    private static final int                    LONG    = 5;
+    private static final int                    FLOAT   = 6;
+    private static final int                    DOUBLE  = 7;
+    private static final int                    STRING  = 8;
+    private static final int                    BYTES   = 9;
+    private static final int                    DATE    = 10;
+    private static final int                    DECIMAL = 11;
+    private static final int                    ENUM    = 12;
+    /** 可以为null的类型在kind上加这个偏移,编码时多写一个是否为null的标记 */
+    private static final int                    BOXED   = 100;
+
+    private static final Map<Class<?>, Integer> KINDS   = new HashMap<>();
+
+    static {
+        KINDS.put(boolean.class, BOOLEAN);
+        KINDS.put(byte.class, BYTE);
+        KINDS.put(short.class, SHORT);
+        KINDS.put(char.class, CHAR);
+        KINDS.put(int.class, INT);
+        KINDS.put(long.class, LONG);
+        KINDS.put(float.class, FLOAT);
+        KINDS.put(double.class, DOUBLE);
+        KINDS.put(Boolean.class, BOXED + BOOLEAN);
+        KINDS.put(Byte.class, BOXED + BYTE);
+        KINDS.put(Short.class, BOXED + SHORT);
+        KINDS.put(Character.class, BOXED + CHAR);
+        KINDS.put(Integer.class, BOXED + INT);
+        KINDS.put(Long.class, BOXED + LONG);
+        KINDS.put(Float.class, BOXED + FLOAT);
+        KINDS.put(Double.class, BOXED + DOUBLE);
+        KINDS.put(String.class, BOXED + STRING);
+        KINDS.put(byte[].class, BOXED + BYTES);
+        KINDS.put(Date.class, BOXED + DATE);
+        KINDS.put(BigDecimal.class, BOXED + DECIMAL);
+    }
+
+    private final Class<T>                      type;
+    private final Constructor<T>                constructor;
+    private final Field[]                       fields;
+    private final int[]                         kinds;
+    private final int                           fingerprint;
+
+    /**
+     * @param type bean类型,需要有无参构造函数
+     */
+    public BeanBinaryCodec(Class<T> type) {
+        this.type = type;
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no default constructor", e);
+        }
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic()) {
+                    continue;
+                }
+                f.setAccessible(true);
+                list.add(f);
+            }
+        }
+        list.sort(Comparator.comparing(Field::getName)
+            .thenComparing(f -> f.getDeclaringClass().getName()));
+        this.fields = list.toArray(new Field[list.size()]);
+        this.kinds = new int[fields.length];
+        int hash = 17;
+        for (int i = 0; i < fields.length; i++) {
+            kinds[i] = kindOf(fields[i]);
+            hash = 31 * hash + fields[i].getName().hashCode();
+            hash = 31 * hash + fields[i].getType().getName().hashCode();
+        }
+        this.fingerprint = hash;
+    }
+
+    private static int kindOf(Field field) {
+        Integer kind = KINDS.get(field.getType());
+        if (kind != null) {
+            return kind;
+        }
+        if (field.getType().isEnum()) {
+            return BOXED + ENUM;
+        }
+        throw new IllegalArgumentException("unsupported field type " + field.getType().getName()
+                                           + " of " + field.getDeclaringClass().getName() + "."
+                                           + field.getName());
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        Output out = new Output();
+        out.writeFixedInt(fingerprint);
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Object v = fields[i].get(value);
+                int kind = kinds[i];
+                if (kind >= BOXED) {
+                    if (v == null) {
+                        out.write(0);
+                        continue;
+                    }
+                    out.write(1);
+                    kind -= BOXED;
+                }
+                writeValue(out, kind, v);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeValue(Output out, int kind, Object v) {
+        switch (kind) {
+            case BOOLEAN:
+                out.write((Boolean) v ? 1 : 0);
+                break;
+            case BYTE:
+                out.write((Byte) v);
+                break;
+            case SHORT:
+                out.writeVarLong((Short) v);
+                break;
+            case CHAR:
+                out.writeVarLong((Character) v);
+                break;
+            case INT:
+                out.writeVarLong((Integer) v);
+                break;
+            case LONG:
+                out.writeVarLong((Long) v);
+                break;
+            case FLOAT:
+                out.writeFixedInt(Float.floatToIntBits((Float) v));
+                break;
+            case DOUBLE:
+                long bits = Double.doubleToLongBits((Double) v);
+                out.writeFixedInt((int) (bits >>> 32));
+                out.writeFixedInt((int) bits);
+                break;
+            case STRING:
+                out.writeBytes(((String) v).getBytes(StandardCharsets.UTF_8));
+                break;
+            case BYTES:
+                out.writeBytes((byte[]) v);
+                break;
+            case DATE:
+                out.writeVarLong(((Date) v).getTime());
+                break;
+            case DECIMAL:
+                out.writeBytes(((BigDecimal) v).toString().getBytes(StandardCharsets.UTF_8));
+                break;
+            case ENUM:
+                out.writeBytes(((Enum<?>) v).name().getBytes(StandardCharsets.UTF_8));
+                break;
+            default:
+                throw new IllegalStateException("unknown kind " + kind);
+        }
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        Input in = new Input(bytes);
+        if (bytes.length < 4 || in.readFixedInt() != fingerprint) {
+            // 类结构变了或者不是本codec写入的数据,当作不存在,由调用方回源后覆盖
+            logger.debug("bean codec fingerprint mismatch, type:{}", type.getName());
+            return null;
+        }
+        try {
+            T bean = constructor.newInstance();
+            for (int i = 0; i < fields.length; i++) {
+                int kind = kinds[i];
+                if (kind >= BOXED) {
+                    if (in.read() == 0) {
+                        continue;
+                    }
+                    kind -= BOXED;
+                }
+                Field field = fields[i];
+                switch (kind) {
+                    case BOOLEAN:
+                        field.set(bean, in.read() != 0);
+                        break;
+                    case BYTE:
+                        field.set(bean, (byte) in.read());
+                        break;
+                    case SHORT:
+                        field.set(bean, (short) in.readVarLong());
+                        break;
+                    case CHAR:
+                        field.set(bean, (char) in.readVarLong());
+                        break;
+                    case INT:
+                        field.set(bean, (int) in.readVarLong());
+                        break;
+                    case LONG:
+                        field.set(bean, in.readVarLong());
+                        break;
+                    case FLOAT:
+                        field.set(bean, Float.intBitsToFloat(in.readFixedInt()));
+                        break;
+                    case DOUBLE:
+                        long high = in.readFixedInt() & 0xFFFFFFFFL;
+                        long low = in.readFixedInt() & 0xFFFFFFFFL;
+                        field.set(bean, Double.longBitsToDouble(high << 32 | low));
+                        break;
+                    case STRING:
+                        field.set(bean, in.readString());
+                        break;
+                    case BYTES:
+                        field.set(bean, in.readBytes());
+                        break;
+                    case DATE:
+                        field.set(bean, new Date(in.readVarLong()));
+                        break;
+                    case DECIMAL:
+                        field.set(bean, new BigDecimal(in.readString()));
+                        break;
+                    case ENUM:
+                        field.set(bean, enumValue(field.getType(), in.readString()));
+                        break;
+                    default:
+                        throw new IllegalStateException("unknown kind " + kind);
+                }
+            }
+            return bean;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            // 数据被截断或者不是本codec写入的,枚举常量改名后valueOf也会走到这里
+            logger.warn("bean codec can not decode {} bytes as {}", bytes.length, type.getName(), e);
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("decode " + type.getName() + " failed", e);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    /**
+     * 变长整数的输出缓冲,long先做zigzag再按7位一组输出
+     */
+    private static class Output {
+
+        private byte[] buf = new byte[64];
+        private int    pos;
+
+        void write(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeFixedInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeVarLong(long v) {
+            long zigzag = (v << 1) ^ (v >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[pos++] = (byte) zigzag;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static class Input {
+
+        private final byte[] buf;
+        private int          pos;
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int read() {
+            return buf[pos++];
+        }
+
+        int readFixedInt() {
+            return (buf[pos++] & 0xFF) << 24 | (buf[pos++] & 0xFF) << 16 | (buf[pos++] & 0xFF) << 8
+                   | (buf[pos++] & 0xFF);
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        byte[] readBytes() {
+            int len = readLength();
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return bytes;
+        }
+
+        String readString() {
+            int len = readLength();
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        /**
+         * 长度超过剩余字节时抛出异常,避免截断的数据被补0读出或者申请过大的数组
+         */
+        private int readLength() {
+            long len = readVarLong();
+            if (len < 0 || len > buf.length - pos) {
+                throw new IndexOutOfBoundsException("length " + len + " exceeds remaining "
+                                                    + (buf.length - pos) + " bytes");
+            }
+            return (int) len;
+        }
+    }
+}
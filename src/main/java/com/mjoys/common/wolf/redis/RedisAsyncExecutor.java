@@ -0,0 +1,129 @@
+package com.mjoys.common.wolf.redis;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 14:55.<br/>
+ * 功能描述 : 异步redis调用使用的有界线程池.线程数和队列长度都有上限,队列满时直接返回失败的future,不会阻塞调用线程.<br/>
+ * <br/>
+ * 线程数一般不需要超过redis连接池的大小,多出来的线程只会在连接池上排队.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisAsyncExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder          submitted = new LongAdder();
+    private final LongAdder          rejected  = new LongAdder();
+    private final LongAdder          failed    = new LongAdder();
+
+    /**
+     * @param name 线程名前缀
+     * @param threads 线程数
+     * @param queueCapacity 等待队列长度
+     */
+    public RedisAsyncExecutor(final String name, int threads, int queueCapacity) {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue<Runnable>(queueCapacity),
+                                          new ThreadFactory() {
+
+                                              private final AtomicInteger index = new AtomicInteger();
+
+                                              @Override
+                                              public Thread newThread(Runnable r) {
+                                                  Thread t = new Thread(r, name + "-" + index.incrementAndGet());
+                                                  t.setDaemon(true);
+                                                  return t;
+                                              }
+                                          }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在线程池中执行action,线程池满时返回一个以RejectedExecutionException失败的future
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<T> action) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        submitted.increment();
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        future.complete(action.get());
+                    } catch (Throwable e) {
+                        failed.increment();
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 关闭线程池,已经提交的任务会执行完
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return 正在执行的任务数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return 排队中的任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return 线程池创建以来提交的任务数(包含被拒绝的)
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return 已经执行完成的任务数
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return 因为队列满被拒绝的任务数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 执行时抛出异常的任务数
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+}
@@ -0,0 +1,279 @@
+package com.mjoys.common.wolf.redis;
+
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 10:12.<br/>
+ * 功能描述 : 批量(管道)操作,由RedisClient.batch创建,提交的命令只在本地排队,回调结束后在同一个连接上一次性发出.<br/>
+ * <br/>
+ * 每个命令返回一个Response,相当于一个类型化的future,RedisClient.batch返回后才能调用Response.get()取值.<br/>
+ * 集群模式下命令按key分到各自节点的pipeline,各节点并行执行,结果仍按提交顺序返回.<br/>
+ * 写命令操作过的key在batch结束后统一失效近端缓存(并通知其他节点),和单条写命令一样.
+ * 带value的写命令入队前统计大小,超过写入上限时在该命令入队之前抛出IllegalArgumentException,batch随之失败(之前已入队的命令仍会发出).<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisBatch {
+
+    private final Pipeline                   pipeline;
+    private final Function<String, Pipeline> router;
+    private final List<Pipeline>             order;
+    private final RedisPayloadMetrics        payloadMetrics;
+    private final Set<String>                writtenKeys = new LinkedHashSet<>();
+
+    /**
+     * @param pipeline 所有命令共用的pipeline
+     * @param payloadMetrics 写请求的大小统计和上限检查,为null时不检查
+     */
+    RedisBatch(Pipeline pipeline, RedisPayloadMetrics payloadMetrics) {
+        this.pipeline = pipeline;
+        this.router = null;
+        this.order = null;
+        this.payloadMetrics = payloadMetrics;
+    }
+
+    /**
+     * 集群模式使用,每个命令按key路由到所在节点的pipeline,并记录提交顺序用于合并结果
+     *
+     * @param router 根据key返回所在节点的pipeline
+     * @param payloadMetrics 写请求的大小统计和上限检查,为null时不检查
+     */
+    RedisBatch(Function<String, Pipeline> router, RedisPayloadMetrics payloadMetrics) {
+        this.pipeline = null;
+        this.router = router;
+        this.order = new ArrayList<>();
+        this.payloadMetrics = payloadMetrics;
+    }
+
+    /**
+     * 每个命令都经过这里取pipeline;key只在集群模式下用于路由,非集群模式只有一个pipeline,直接返回
+     *
+     * @param key 命令操作的key
+     * @return 该key所在节点的pipeline
+     */
+    private Pipeline pipeline(String key) {
+        if (router == null) {
+            return pipeline;
+        }
+        Pipeline p = router.apply(key);
+        order.add(p);
+        return p;
+    }
+
+    /**
+     * 写命令使用,记录写过的key,batch结束后统一失效近端缓存
+     */
+    private Pipeline write(String key) {
+        writtenKeys.add(key);
+        return pipeline(key);
+    }
+
+    /**
+     * 带value的写命令使用,和RedisClient的单条写命令一样先统计大小,超过写入上限时抛出异常,命令不会入队
+     */
+    private Pipeline write(String command, String key, Object value) {
+        if (payloadMetrics != null) {
+            payloadMetrics.recordWrite(command, key, value);
+        }
+        return write(key);
+    }
+
+    /**
+     * @return 写命令操作过的key,按第一次写入的顺序,已去重
+     */
+    Set<String> getWrittenKeys() {
+        return writtenKeys;
+    }
+
+    /**
+     * @return 每个命令所在的pipeline,按提交顺序排列;单pipeline时为null
+     */
+    List<Pipeline> getOrder() {
+        return order;
+    }
+
+    public Response<String> set(String key, String value) {
+        return write("set", key, value).set(key, value);
+    }
+
+    public Response<String> set(String key, String value, String nxxx, String expx, int time) {
+        return write("set", key, value).set(key, value, nxxx, expx, time);
+    }
+
+    public Response<String> setex(String key, int seconds, String value) {
+        return write("setex", key, value).setex(key, seconds, value);
+    }
+
+    public Response<Long> setnx(String key, String value) {
+        return write("setnx", key, value).setnx(key, value);
+    }
+
+    public Response<String> get(String key) {
+        return pipeline(key).get(key);
+    }
+
+    public Response<String> getSet(String key, String value) {
+        return write("getSet", key, value).getSet(key, value);
+    }
+
+    public Response<Boolean> exists(String key) {
+        return pipeline(key).exists(key);
+    }
+
+    public Response<Long> del(String key) {
+        return write(key).del(key);
+    }
+
+    public Response<Long> expire(String key, int seconds) {
+        return write(key).expire(key, seconds);
+    }
+
+    public Response<Long> pexpire(String key, long milliseconds) {
+        return write(key).pexpire(key, milliseconds);
+    }
+
+    public Response<Long> ttl(String key) {
+        return pipeline(key).ttl(key);
+    }
+
+    public Response<Long> incr(String key) {
+        return write(key).incr(key);
+    }
+
+    public Response<Long> incrBy(String key, long integer) {
+        return write(key).incrBy(key, integer);
+    }
+
+    public Response<Long> decr(String key) {
+        return write(key).decr(key);
+    }
+
+    public Response<Long> decrBy(String key, long integer) {
+        return write(key).decrBy(key, integer);
+    }
+
+    public Response<Long> hset(String key, String field, String value) {
+        return write("hset", key, value).hset(key, field, value);
+    }
+
+    public Response<String> hget(String key, String field) {
+        return pipeline(key).hget(key, field);
+    }
+
+    public Response<String> hmset(String key, Map<String, String> hash) {
+        return write("hmset", key, hash).hmset(key, hash);
+    }
+
+    public Response<List<String>> hmget(String key, String... fields) {
+        return pipeline(key).hmget(key, fields);
+    }
+
+    public Response<Map<String, String>> hgetAll(String key) {
+        return pipeline(key).hgetAll(key);
+    }
+
+    public Response<Long> hdel(String key, String... field) {
+        return write(key).hdel(key, field);
+    }
+
+    public Response<Long> hincrBy(String key, String field, long value) {
+        return write(key).hincrBy(key, field, value);
+    }
+
+    public Response<Boolean> hexists(String key, String field) {
+        return pipeline(key).hexists(key, field);
+    }
+
+    public Response<Long> lpush(String key, String... string) {
+        return write("lpush", key, string).lpush(key, string);
+    }
+
+    public Response<Long> rpush(String key, String... string) {
+        return write("rpush", key, string).rpush(key, string);
+    }
+
+    public Response<String> lpop(String key) {
+        return write(key).lpop(key);
+    }
+
+    public Response<String> rpop(String key) {
+        return write(key).rpop(key);
+    }
+
+    public Response<Long> llen(String key) {
+        return pipeline(key).llen(key);
+    }
+
+    public Response<List<String>> lrange(String key, long start, long end) {
+        return pipeline(key).lrange(key, start, end);
+    }
+
+    public Response<Long> sadd(String key, String... member) {
+        return write("sadd", key, member).sadd(key, member);
+    }
+
+    public Response<Long> srem(String key, String... member) {
+        return write(key).srem(key, member);
+    }
+
+    public Response<Set<String>> smembers(String key) {
+        return pipeline(key).smembers(key);
+    }
+
+    public Response<Boolean> sismember(String key, String member) {
+        return pipeline(key).sismember(key, member);
+    }
+
+    public Response<Long> scard(String key) {
+        return pipeline(key).scard(key);
+    }
+
+    public Response<Long> zadd(String key, double score, String member) {
+        return write("zadd", key, member).zadd(key, score, member);
+    }
+
+    public Response<Long> zadd(String key, Map<String, Double> scoreMembers) {
+        return write("zadd", key, scoreMembers).zadd(key, scoreMembers);
+    }
+
+    public Response<Long> zrem(String key, String... member) {
+        return write(key).zrem(key, member);
+    }
+
+    public Response<Double> zincrby(String key, double score, String member) {
+        return write(key).zincrby(key, score, member);
+    }
+
+    public Response<Double> zscore(String key, String member) {
+        return pipeline(key).zscore(key, member);
+    }
+
+    public Response<Long> zcard(String key) {
+        return pipeline(key).zcard(key);
+    }
+
+    public Response<Set<String>> zrange(String key, long start, long end) {
+        return pipeline(key).zrange(key, start, end);
+    }
+
+    public Response<Set<String>> zrevrange(String key, long start, long end) {
+        return pipeline(key).zrevrange(key, start, end);
+    }
+
+    public Response<Set<Tuple>> zrangeWithScores(String key, long start, long end) {
+        return pipeline(key).zrangeWithScores(key, start, end);
+    }
+
+    public Response<Set<String>> zrangeByScore(String key, double min, double max) {
+        return pipeline(key).zrangeByScore(key, min, max);
+    }
+}
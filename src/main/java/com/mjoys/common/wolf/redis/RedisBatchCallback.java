@@ -0,0 +1,17 @@
+package com.mjoys.common.wolf.redis;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 10:12.<br/>
+ * 功能描述 : RedisClient.batch的回调,在回调中通过RedisBatch提交命令,回调返回后所有命令通过一次pipeline发出.<br/>
+ * 变更记录 : .<br/>
+ */
+public interface RedisBatchCallback {
+
+    /**
+     * 在这里向batch提交命令,注意回调中不能调用Response.get(),结果要等batch方法返回后才可用
+     *
+     * @param batch
+     */
+    void doInBatch(RedisBatch batch);
+}
@@ -0,0 +1,96 @@
+package com.mjoys.common.wolf.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:59.<br/>
+ * 功能描述 : 阻塞命令(blpop/brpop/brpoplpush)专用的连接通道,每个节点一个独立的小连接池,通过{@link RedisClient#getBlockingLane()}获得.<br/>
+ * <br/>
+ * 阻塞命令在整个超时时间内占着连接,和普通命令共用连接池时几个队列消费者就能把连接池耗尽,让所有get排队.
+ * 放到独立的连接池后,消费者最多用满自己的maxTotal,普通命令不受影响;消费者数超过maxTotal时在这个池上排队等连接.<br/>
+ * 阻塞命令的耗时取决于timeout参数,单独统计在{@link #getMetrics()}中,不打印慢日志,也不混进普通命令的延迟分布.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisBlockingLane {
+
+    private final int                                maxTotal;
+    private final Function<String, Pool<Jedis>>      factory;
+    private final ConcurrentMap<String, Pool<Jedis>> pools   = new ConcurrentHashMap<>();
+    private final RedisCommandMetrics                metrics = new RedisCommandMetrics();
+
+    /**
+     * @param maxTotal 每个节点的最大连接数
+     * @param factory 按节点名创建连接池
+     */
+    RedisBlockingLane(int maxTotal, Function<String, Pool<Jedis>> factory) {
+        this.maxTotal = maxTotal;
+        this.factory = factory;
+        metrics.setDefaultSlowThresholdMillis(0);
+    }
+
+    /**
+     * @param node 节点名,单机/sentinel模式为master,集群模式为ip:port
+     * @return 该节点的阻塞命令连接池,第一次使用时创建
+     */
+    Pool<Jedis> pool(String node) {
+        Pool<Jedis> pool = pools.get(node);
+        if (pool == null) {
+            pool = pools.computeIfAbsent(node, factory);
+        }
+        return pool;
+    }
+
+    /**
+     * @return 该连接池对应的节点名,不属于本通道时返回null
+     */
+    String getNodeName(Pool<Jedis> pool) {
+        for (Map.Entry<String, Pool<Jedis>> e : pools.entrySet()) {
+            if (e.getValue() == pool) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    void shutdown() {
+        for (Pool<Jedis> pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    /**
+     * @return 每个节点的最大连接数
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @return 阻塞命令的调用统计
+     */
+    public RedisCommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return 各节点连接池的使用情况,按节点名排序
+     */
+    public Map<String, String> getPoolStats() {
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, Pool<Jedis>> e : pools.entrySet()) {
+            Pool<Jedis> pool = e.getValue();
+            result.put(e.getKey(), "active:" + pool.getNumActive() + ", idle:" + pool.getNumIdle()
+                                   + ", waiters:" + pool.getNumWaiters());
+        }
+        return result;
+    }
+}
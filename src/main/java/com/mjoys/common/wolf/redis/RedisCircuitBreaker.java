@@ -0,0 +1,338 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:54.<br/>
+ * 功能描述 : 单个连接池(节点)的熔断器,redis变慢或者不可用时让请求立即失败,不再排队等连接和socket超时.<br/>
+ * <br/>
+ * 关闭(CLOSED)状态下按秒分桶统计最近windowSeconds秒的调用数、失败数和慢调用数,调用数达到minimumCalls后,
+ * 失败率或者慢调用率超过阈值就打开(OPEN).打开期间请求直接抛出{@link RedisCircuitOpenException},
+ * openMillis之后进入半开(HALF_OPEN),只放行halfOpenTrials个试探请求:全部成功且不慢则关闭,任何一个失败或者慢就重新打开.<br/>
+ * 只有连接失败、借不到连接、超时等基础设施错误算失败,redis返回的命令错误(WRONGTYPE等)说明节点是好的,算成功.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisCircuitBreaker {
+
+    private static final Logger          logger         = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final String                 name;
+    private final Config                 config;
+    private final AtomicReference<State> state          = new AtomicReference<>(State.CLOSED);
+    private volatile long                openUntilMillis;
+    private final AtomicInteger          trialPermits   = new AtomicInteger();
+    private final AtomicInteger          trialSuccesses = new AtomicInteger();
+    private final Bucket[]               buckets;
+
+    private final LongAdder              rejectedCount  = new LongAdder();
+    private final LongAdder              openCount      = new LongAdder();
+    private final LongAdder              halfOpenCount  = new LongAdder();
+    private final LongAdder              closeCount     = new LongAdder();
+
+    RedisCircuitBreaker(String name, Config config) {
+        this.name = name;
+        this.config = config;
+        this.buckets = new Bucket[Math.max(config.windowSeconds, 1)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 请求发出之前调用
+     *
+     * @return false表示熔断器打开或者半开时试探名额已满,请求应该直接失败
+     */
+    boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+            transition(State.OPEN, State.HALF_OPEN);
+            current = state.get();
+        }
+        if (current == State.HALF_OPEN && trialPermits.incrementAndGet() <= config.halfOpenTrials) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    /**
+     * 请求完成后调用,不论成功失败都必须调用一次
+     *
+     * @param nanos 请求耗时,包括借连接
+     * @param error 请求抛出的异常,成功时为null
+     */
+    void onComplete(long nanos, RuntimeException error) {
+        boolean failed = error != null && isFailure(error);
+        boolean slow = config.slowCallMillis > 0
+                       && nanos > TimeUnit.MILLISECONDS.toNanos(config.slowCallMillis);
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (failed || slow) {
+                open(State.HALF_OPEN);
+            } else if (trialSuccesses.incrementAndGet() >= config.halfOpenTrials
+                       && transition(State.HALF_OPEN, State.CLOSED)) {
+                for (Bucket bucket : buckets) {
+                    bucket.reset(0);
+                }
+            }
+            return;
+        }
+        if (current != State.CLOSED) {
+            return;
+        }
+        Bucket bucket = bucket(System.currentTimeMillis() / 1000);
+        bucket.calls.increment();
+        if (failed) {
+            bucket.failures.increment();
+        }
+        if (slow) {
+            bucket.slowCalls.increment();
+        }
+        if (failed || slow) {
+            checkThresholds();
+        }
+    }
+
+    private void checkThresholds() {
+        long calls = 0;
+        long failures = 0;
+        long slowCalls = 0;
+        long second = System.currentTimeMillis() / 1000;
+        for (Bucket bucket : buckets) {
+            if (second - bucket.second < buckets.length) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+                slowCalls += bucket.slowCalls.sum();
+            }
+        }
+        if (calls < config.minimumCalls) {
+            return;
+        }
+        if (failures >= calls * config.failureRateThreshold
+            || slowCalls >= calls * config.slowCallRateThreshold) {
+            logger.warn("redis circuit breaker {} trips, calls:{}, failures:{}, slow calls:{}", name,
+                        calls, failures, slowCalls);
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        openUntilMillis = System.currentTimeMillis() + config.openMillis;
+        transition(from, State.OPEN);
+    }
+
+    private boolean transition(State from, State to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        if (to == State.OPEN) {
+            openCount.increment();
+        } else if (to == State.HALF_OPEN) {
+            trialPermits.set(0);
+            trialSuccesses.set(0);
+            halfOpenCount.increment();
+        } else {
+            closeCount.increment();
+        }
+        logger.warn("redis circuit breaker {} {} -> {}", name, from, to);
+        Listener l = config.listener;
+        if (l != null) {
+            try {
+                l.onStateChange(name, from, to);
+            } catch (RuntimeException e) {
+                logger.warn("circuit breaker listener failed, name:{}", name, e);
+            }
+        }
+        return true;
+    }
+
+    private Bucket bucket(long second) {
+        Bucket bucket = buckets[(int) (second % buckets.length)];
+        if (bucket.second != second) {
+            synchronized (bucket) {
+                if (bucket.second != second) {
+                    bucket.reset(second);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * @return 异常是否说明节点或者网络有问题
+     */
+    static boolean isFailure(RuntimeException e) {
+        if (e instanceof JedisConnectionException) {
+            return true;
+        }
+        return e instanceof JedisException && !(e instanceof JedisDataException)
+               && !(e instanceof RedisCircuitOpenException);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return 熔断期间直接拒绝的请求数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return 进入OPEN状态的次数
+     */
+    public long getOpenCount() {
+        return openCount.sum();
+    }
+
+    /**
+     * @return 进入HALF_OPEN状态的次数
+     */
+    public long getHalfOpenCount() {
+        return halfOpenCount.sum();
+    }
+
+    /**
+     * @return 从HALF_OPEN恢复到CLOSED的次数
+     */
+    public long getCloseCount() {
+        return closeCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + state.get() + ", rejected:" + getRejectedCount() + ", opened:"
+               + getOpenCount() + ", closed:" + getCloseCount();
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static class Bucket {
+
+        private volatile long   second;
+        private final LongAdder calls     = new LongAdder();
+        private final LongAdder failures  = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+
+        void reset(long second) {
+            calls.reset();
+            failures.reset();
+            slowCalls.reset();
+            this.second = second;
+        }
+    }
+
+    /**
+     * 熔断参数,同一个客户端的所有熔断器共用一份,修改后立即对所有节点生效(窗口长度除外)
+     */
+    public static class Config {
+
+        private volatile int      windowSeconds         = 10;
+        private volatile int      minimumCalls          = 20;
+        private volatile double   failureRateThreshold  = 0.5;
+        private volatile double   slowCallRateThreshold = 0.8;
+        private volatile long     slowCallMillis        = 500;
+        private volatile long     openMillis            = 5000;
+        private volatile int      halfOpenTrials        = 3;
+        private volatile Listener listener;
+
+        /**
+         * @param windowSeconds 统计窗口,秒,默认10;只对之后新建的熔断器生效
+         */
+        public Config setWindowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+            return this;
+        }
+
+        /**
+         * @param minimumCalls 窗口内调用数达到这个值才判断是否熔断,默认20
+         */
+        public Config setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param failureRateThreshold 失败率阈值,0~1,默认0.5
+         */
+        public Config setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * @param slowCallRateThreshold 慢调用率阈值,0~1,默认0.8;大于1表示不按慢调用熔断
+         */
+        public Config setSlowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * @param slowCallMillis 耗时(含借连接)超过这个值算慢调用,默认500;小于等于0表示不统计慢调用
+         */
+        public Config setSlowCallMillis(long slowCallMillis) {
+            this.slowCallMillis = slowCallMillis;
+            return this;
+        }
+
+        /**
+         * @param openMillis 打开后多久进入半开,默认5000
+         */
+        public Config setOpenMillis(long openMillis) {
+            this.openMillis = openMillis;
+            return this;
+        }
+
+        /**
+         * @param halfOpenTrials 半开时放行的试探请求数,默认3
+         */
+        public Config setHalfOpenTrials(int halfOpenTrials) {
+            this.halfOpenTrials = halfOpenTrials;
+            return this;
+        }
+
+        /**
+         * @param listener 状态变化回调
+         */
+        public Config setListener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+    }
+
+    /**
+     * 状态变化回调,在触发变化的业务线程中执行
+     */
+    public interface Listener {
+
+        /**
+         * @param name 熔断器名,即节点地址
+         * @param from 原状态
+         * @param to 新状态
+         */
+        void onStateChange(String name, State from, State to);
+    }
+}
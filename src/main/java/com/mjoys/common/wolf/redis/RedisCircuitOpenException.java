@@ -0,0 +1,18 @@
+package com.mjoys.common.wolf.redis;
+
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:54.<br/>
+ * 功能描述 : 熔断器打开时直接抛出,请求没有借连接也没有发往redis.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisCircuitOpenException extends JedisException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedisCircuitOpenException(String name) {
+        super("redis circuit breaker " + name + " is open");
+    }
+}
@@ -10,16 +10,35 @@ import redis.clients.jedis.*;
 import redis.clients.jedis.params.geo.GeoRadiusParam;
 import redis.clients.jedis.params.sortedset.ZAddParams;
 import redis.clients.jedis.params.sortedset.ZIncrByParams;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
 import redis.clients.util.Pool;
+import redis.clients.util.SafeEncoder;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 创 建 人 : leiliang.<br/>
  * 创建时间 : 2017/4/14 15:59.<br/>
- * 功能描述 : RedisClient,支持JedisPool和JedisSentinelPool <br/>
+ * 功能描述 : RedisClient,支持单节点、Sentinel和RedisCluster三种模式,见{@link RedisMode} <br/>
  * <br/>
- * 注意:本客户端不支持多key操作,因为考虑到以后要切换到RedisCluster,cluster对多key操作、事务、pipeline的支持不够好（因为多个key有可能分散在不同的redis上）
+ * 集群模式下客户端自己计算slot并路由到对应的master,收到MOVED/ASK时重定向并刷新拓扑.
+ * 多key命令只提供del和mget,集群模式下按slot拆分、同一节点的各组通过一个pipeline发出、各节点并行执行后合并结果;
+ * 除此之外不支持多key操作和事务.<br/>
+ * 需要减少网络往返时可以使用{@link #batch(RedisBatchCallback)},它只暴露单key命令,集群模式下同样按节点拆分
  * 变更记录 : .<br/>
  */
 public class RedisClient implements JedisCommands, InitializingBean, DisposableBean {
@@ -27,12 +46,45 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
     private static final Logger logger                     = LoggerFactory.getLogger(RedisClient.class);
 
     private static final int    DEFAULT_CONN_OR_SO_TIMEOUT = 1000;                                      // redis默认的连接和socketTimeout超时时间
+    private static final int    MAX_REDIRECTS              = 5;                                         // 集群模式下单个命令最多跟随的MOVED/ASK次数
+    private static final String DEFAULT_LOCK_CHANNEL       = "__redis_lock_unlock__";                   // 分布式锁解锁通知的默认channel
+    private static final long   DEFAULT_LOCK_LEASE_MILLIS  = 30000;                                     // 分布式锁的默认租约
+    private static final int    DEFAULT_BLOCKING_POOL_SIZE = 8;                                         // 阻塞命令专用连接池每个节点的默认大小
+    private static final String MASTER_NODE                = "master";                                  // 单机/sentinel模式下阻塞命令连接池的节点名
 
     private Pool<Jedis>         jedisPool;
+    private RedisClusterTopology cluster;                                                               // 集群模式的slot拓扑,其他模式为null
+
+    private String              sentinelMasterName;                                                     // 以下为初始化参数,创建从库、独立连接池时使用
+    private Set<String>         sentinels;
+    private String              password;
+    private int                 connOrSoTimeout;
+    private JedisPoolConfig     poolConfig;
 
     private Thread              monitorThread;
     private Integer             maxPoolSize;
     private Integer             warnPoolSize;                                                           // 超过这个poolsize需要打印报警日志
+    private int                 warmupConnections;                                                      // 启动时每个连接池预热的连接数,0表示不预热
+
+    private volatile RedisReadCoalescer  readCoalescer;                                                 // 读请求合并器,为null表示未开启
+    private volatile RedisNearCache      nearCache;                                                     // 本地一级缓存,为null表示未开启
+    private volatile AsyncRedisClient    asyncClient;
+    private volatile RedisLockManager    lockManager;                                                   // 分布式锁,第一次getLock时创建
+    private volatile RedisReplicaRouter  replicaRouter;                                                 // 从库读路由,为null表示只读主库
+    private volatile RedisCircuitBreaker.Config circuitBreakerConfig;                                   // 熔断参数,为null表示未开启熔断
+    private volatile RedisPoolSizer      poolSizer;                                                     // 连接池自适应调整,为null表示固定大小
+    private volatile RedisHedger         hedger;                                                        // 对冲读,为null表示未开启
+    private volatile RedisPubSubManager  pubSubManager;                                                 // 发布订阅管理器,第一次使用时创建
+    private volatile RedisBlockingLane   blockingLane;                                                  // 阻塞命令专用连接池,第一次使用时创建
+    private volatile RedisHotKeyDetector hotKeyDetector = new RedisHotKeyDetector(10, 4096, 0.05);      // 热点key探测,默认开启
+
+    private final RedisCommandMetrics    metrics        = new RedisCommandMetrics();
+    private final RedisSingleFlight      singleFlight   = new RedisSingleFlight(this);
+    private final RedisPayloadMetrics    payloadMetrics = new RedisPayloadMetrics();
+    private final RedisCompressor        compressor     = new RedisCompressor();
+    private final RedisScriptRegistry    scripts        = new RedisScriptRegistry();
+    private final RedisPoolWarmer        warmer         = new RedisPoolWarmer();
+    private final ConcurrentMap<Pool<Jedis>, RedisCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>(); // 每个连接池一个熔断器
 
     /**
      * 构造RedisClient,使用默认2秒的超时时间,使用默认的连接池配置
@@ -45,7 +97,7 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
      */
     public RedisClient(boolean isUseSentinel, String sentinelMasterName, String servers,
                        String password) {
-        init(isUseSentinel, sentinelMasterName, servers, password, DEFAULT_CONN_OR_SO_TIMEOUT,
+        init(mode(isUseSentinel), sentinelMasterName, servers, password, DEFAULT_CONN_OR_SO_TIMEOUT,
              getDefaultConfig());
     }
 
@@ -61,7 +113,7 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
      */
     public RedisClient(boolean isUseSentinel, String sentinelMasterName, String servers,
                        String password, int connOrSoTimeout) {
-        init(isUseSentinel, sentinelMasterName, servers, password, connOrSoTimeout,
+        init(mode(isUseSentinel), sentinelMasterName, servers, password, connOrSoTimeout,
              getDefaultConfig());
     }
 
@@ -80,7 +132,7 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
                        String password, int connOrSoTimeout, Integer maxPoolSize) {
         JedisPoolConfig config = getDefaultConfig();
         config.setMaxTotal(maxPoolSize);
-        init(isUseSentinel, sentinelMasterName, servers, password, connOrSoTimeout, config);
+        init(mode(isUseSentinel), sentinelMasterName, servers, password, connOrSoTimeout, config);
     }
 
     /**
@@ -96,10 +148,30 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
      */
     public RedisClient(boolean isUseSentinel, String sentinelMasterName, String servers,
                        String password, int connOrSoTimeout, JedisPoolConfig config) {
-        init(isUseSentinel, sentinelMasterName, servers, password, connOrSoTimeout, config);
+        init(mode(isUseSentinel), sentinelMasterName, servers, password, connOrSoTimeout, config);
+    }
+
+    /**
+     * 构造RedisClient
+     *
+     * @param mode 部署模式
+     * @param sentinelMasterName SENTINEL模式下指定Sentinel的masterName,其他模式传null
+     * @param servers
+     * SENTINEL模式为哨兵地址列表;CLUSTER模式为部分或全部集群节点地址,只要有一个可用即可;STANDALONE模式为唯一的redis地址.格式:(ip1:port,ip2:port),不包含括号
+     * @param password 密码,无密码则传入null
+     * @param connOrSoTimeout 服务器ConnectionTimeout 和 SocketTimeout的毫秒数
+     * @param config redis连接池配置,集群模式下每个master各有一个这样的连接池
+     */
+    public RedisClient(RedisMode mode, String sentinelMasterName, String servers, String password,
+                       int connOrSoTimeout, JedisPoolConfig config) {
+        init(mode, sentinelMasterName, servers, password, connOrSoTimeout, config);
+    }
+
+    private static RedisMode mode(boolean isUseSentinel) {
+        return isUseSentinel ? RedisMode.SENTINEL : RedisMode.STANDALONE;
     }
 
-    private void init(boolean isUseSentinel, String sentinelMasterName, String servers,
+    private void init(RedisMode mode, String sentinelMasterName, String servers,
                       String password, int connOrSoTimeout, JedisPoolConfig config) {
         String[] serverArr = servers.split(",");
         List<String> serverList = new ArrayList<>();
@@ -108,9 +180,27 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
                 serverList.add(s);
             }
         }
-        if (isUseSentinel) {
-            jedisPool = new JedisSentinelPool(sentinelMasterName, new HashSet<String>(serverList),
-                                              config, connOrSoTimeout, password);
+        maxPoolSize = config.getMaxTotal();
+        warnPoolSize = maxPoolSize / 2;
+        this.sentinelMasterName = sentinelMasterName;
+        this.password = password;
+        this.connOrSoTimeout = connOrSoTimeout;
+        this.poolConfig = config;
+        // 阻塞命令的耗时取决于timeout参数,不打印慢日志
+        metrics.setSlowThresholdMillis("blpop", 0);
+        metrics.setSlowThresholdMillis("brpop", 0);
+        if (mode == RedisMode.SENTINEL) {
+            sentinels = new HashSet<>(serverList);
+            jedisPool = new JedisSentinelPool(sentinelMasterName, sentinels, config, connOrSoTimeout,
+                                              password);
+        } else if (mode == RedisMode.CLUSTER) {
+            Set<HostAndPort> seeds = new LinkedHashSet<>();
+            for (String server : serverList) {
+                String[] serverConfig = server.trim().split(":");
+                int port = NumberUtils.parseInt(serverConfig[1], 0);
+                seeds.add(new HostAndPort(serverConfig[0], port));
+            }
+            cluster = new RedisClusterTopology(seeds, config, connOrSoTimeout, password);
         } else {
             if (serverList.size() != 1) {
                 throw new IllegalArgumentException("when not using sentinel, [servers] must contains one and only one node.");
@@ -118,15 +208,14 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
             String[] serverConfig = serverList.get(0).split(":");
             String host = serverConfig[0];
             int port = NumberUtils.parseInt(serverConfig[1], 0);
-            maxPoolSize = config.getMaxTotal();
-            warnPoolSize = maxPoolSize / 2;
             jedisPool = new JedisPool(config, host, port, connOrSoTimeout, password);
         }
     }
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        // 每隔5秒扫描一次，查看redis连接池是否正常，超过阈值则打印日志
+        warmUp();
+        // 每隔5秒扫描一次，查看redis连接池是否正常，超过阈值则打印日志;开启自适应时顺便调整连接池大小
         monitorThread = new Thread() {
 
             @Override
@@ -141,12 +230,23 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
                         break;
                     }
 
-                    int numActive = jedisPool.getNumActive();
-                    int numIdle = jedisPool.getNumIdle();
-                    int numWaiters = jedisPool.getNumWaiters();
-                    if (numActive > warnPoolSize || numWaiters > 1) {
-                        logger.warn("redis 告警,maxTotal:{},numActive:{},numIdle:{},numWaiters:{}",
-                                    maxPoolSize, numActive, numIdle, numWaiters);
+                    RedisPoolSizer sizer = poolSizer;
+                    for (Pool<Jedis> pool : pools()) {
+                        int maxTotal = RedisPoolSizer.maxTotal(pool, maxPoolSize);
+                        int numActive = pool.getNumActive();
+                        int numIdle = pool.getNumIdle();
+                        int numWaiters = pool.getNumWaiters();
+                        if (numActive > (sizer != null ? maxTotal / 2 : warnPoolSize) || numWaiters > 1) {
+                            logger.warn("redis 告警,maxTotal:{},numActive:{},numIdle:{},numWaiters:{}",
+                                        maxTotal, numActive, numIdle, numWaiters);
+                        }
+                        if (sizer != null) {
+                            try {
+                                sizer.adjust(poolName(pool), pool);
+                            } catch (RuntimeException e) {
+                                logger.warn("adjust redis pool size failed", e);
+                            }
+                        }
                     }
                 }
             }
@@ -155,1514 +255,2462 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
         monitorThread.start();
     }
 
-    @Override
-    public void destroy() throws Exception {
-        monitorThread.interrupt();
+    /**
+     * 在后台线程中并行预热所有主库连接池,完成后放行就绪信号;warmupConnections为0时直接就绪
+     */
+    private void warmUp() {
+        long start = System.nanoTime();
+        if (warmupConnections <= 0) {
+            warmer.markReady(start);
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                for (Pool<Jedis> pool : pools()) {
+                    String name = poolName(pool);
+                    int warmed = warmer.warm(name, pool, warmupConnections, Jedis::ping);
+                    warmer.onWarmed(name, warmed, warmupConnections);
+                }
+            } catch (RuntimeException e) {
+                logger.error("redis warm up failed", e);
+                warmer.onWarmed("all", 0, warmupConnections);
+            } finally {
+                warmer.markReady(start);
+            }
+        }, "redis-warmup");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    private JedisPoolConfig getDefaultConfig() {
-        JedisPoolConfig config = new JedisPoolConfig();
-        config.setMinIdle(1);
-        config.setTestOnBorrow(false);
-        config.setMaxTotal(20);
-        config.setMaxWaitMillis(1000);// Borrow最大等待时间
-        config.setTestWhileIdle(true);
-        config.setTimeBetweenEvictionRunsMillis(90000);// 每隔90S testWhileIdle一次
-        return config;
+    /**
+     * 设置启动时每个连接池预热的连接数,在afterPropertiesSet之前调用;超过连接池maxTotal/maxIdle时按较小值预热
+     *
+     * @param warmupConnections 连接数,0表示不预热
+     */
+    public void setWarmupConnections(int warmupConnections) {
+        this.warmupConnections = warmupConnections;
     }
 
     /**
-     * 从连接池获得一个redis连接,使用完毕后必须close掉,否则连接池会被耗尽. <br/>
-     * 该方法目前私有,是为了防止客户端获得后忘了close.Redis的管道/事务调用方式不好封装,后续如果有需求可以考虑放开,或者把管道/事务也封装一下
+     * 等待连接池预热完成,应用在接入流量之前调用.afterPropertiesSet之前调用会一直等到超时
      *
-     * @return jedis连接,使用完后务必调用jedis.close()释放资源占用
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 预热已完成且每个连接池都可用时返回true
+     * @throws InterruptedException 等待时被中断
      */
-    private Jedis getResource() {
-        return jedisPool.getResource();
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return warmer.awaitReady(timeout, unit);
     }
 
     /**
-     * 销毁连接池,一般在应用退出前调用
+     * @return 预热是否已完成且每个连接池都可用
      */
-    public void close() {
-        jedisPool.close();
+    public boolean isReady() {
+        return warmer.isReady();
     }
 
     /**
-     * Set the string value as value of the key. The string can't be longer than
-     * 1073741824 bytes (1 GB).
-     * <p>
-     * Time complexity: O(1)
-     * 
-     * @param key
-     * @param value
-     * @return Status code reply
+     * @return 预热器,可以查看预热耗时和连接数
      */
+    public RedisPoolWarmer getWarmer() {
+        return warmer;
+    }
+
     @Override
-    public String set(String key, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.set(key, value);
-        } finally {
-            jedis.close();
+    public void destroy() throws Exception {
+        monitorThread.interrupt();
+        disableReadCoalescing();
+        disableNearCache();
+        disableReplicaReads();
+        disableHedgedReads();
+        if (lockManager != null) {
+            lockManager.shutdown();
+        }
+        if (pubSubManager != null) {
+            pubSubManager.shutdown();
+        }
+        if (blockingLane != null) {
+            blockingLane.shutdown();
+        }
+        if (asyncClient != null) {
+            asyncClient.getExecutor().shutdown();
         }
     }
 
-    @Override
-    public String set(String key, String value, String nxxx, String expx, long time) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.set(key, value, nxxx, expx, time);
-        } finally {
-            jedis.close();
+    /**
+     * 获得本客户端的异步视图,第一次调用时创建,线程数等于连接池大小,等待队列长度为线程数的50倍. <br/>
+     * 需要自定义线程池时直接new AsyncRedisClient(client, executor).
+     *
+     * @return 异步客户端
+     */
+    public AsyncRedisClient async() {
+        AsyncRedisClient async = asyncClient;
+        if (async == null) {
+            synchronized (this) {
+                async = asyncClient;
+                if (async == null) {
+                    async = new AsyncRedisClient(this, new RedisAsyncExecutor("redis-async",
+                                                                              maxPoolSize,
+                                                                              maxPoolSize * 50));
+                    asyncClient = async;
+                }
+            }
         }
+        return async;
     }
 
-    @Override
-    public String set(String key, String value, String nxxx) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.set(key, value, nxxx);
-        } finally {
-            jedis.close();
+    /**
+     * 开启本地一级缓存,开启后还需要通过返回值的addRule为需要缓存的key前缀配置规则,没有规则的key不会被缓存. <br/>
+     * 各个节点必须使用同一个channel,失效消息通过{@link #getPubSubManager()}的订阅连接接收,不占用连接池.
+     *
+     * @param invalidationChannel 发布/订阅失效消息的channel
+     * @return 本地缓存,用来配置规则和查看命中率
+     */
+    public synchronized RedisNearCache enableNearCache(String invalidationChannel) {
+        disableNearCache();
+        RedisNearCache cache = new RedisNearCache(this, invalidationChannel);
+        cache.start();
+        nearCache = cache;
+        return cache;
+    }
+
+    /**
+     * 关闭本地一级缓存
+     */
+    public synchronized void disableNearCache() {
+        RedisNearCache old = nearCache;
+        nearCache = null;
+        if (old != null) {
+            old.shutdown();
         }
     }
 
     /**
-     * 获得key对应的字符串value
+     * @return 本地一级缓存,未开启时返回null
+     */
+    public RedisNearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * 发布订阅管理器,第一次调用时创建:所有channel共用一个不属于连接池的订阅连接,断开后自动重连并重新订阅,
+     * 消息在4个工作线程上分发(每个线程队列10000条). 需要长期订阅时应该使用它,而不是阻塞的{@link #subscribe(JedisPubSub, String...)}
      *
-     * @param key
-     * @return
+     * @return 发布订阅管理器
      */
-    @Override
-    public String get(String key) {
-        long start = System.currentTimeMillis();
-        Jedis jedis = getResource();
-        try {
-            return jedis.get(key);
-        } finally {
-            jedis.close();
-            long period = System.currentTimeMillis() - start;
-            if (period > 50) {
-                logger.warn("redis.get cost {} ms, too long,key is:{}", period, key);
+    public RedisPubSubManager getPubSubManager() {
+        RedisPubSubManager manager = pubSubManager;
+        if (manager == null) {
+            synchronized (this) {
+                manager = pubSubManager;
+                if (manager == null) {
+                    manager = new RedisPubSubManager(this::masterNode, connOrSoTimeout, password, 4, 10000);
+                    manager.start();
+                    pubSubManager = manager;
+                }
             }
         }
+        return manager;
     }
 
-    @Override
-    public Boolean exists(String key) {
+    /**
+     * @return 主库地址:sentinel模式为当前主库,其他模式从连接池借一个连接看它连的是哪里(集群模式为任意一个主节点)
+     */
+    private HostAndPort masterNode() {
+        if (jedisPool instanceof JedisSentinelPool) {
+            return ((JedisSentinelPool) jedisPool).getCurrentHostMaster();
+        }
         Jedis jedis = getResource();
         try {
-            return jedis.exists(key);
+            return new HostAndPort(jedis.getClient().getHost(), jedis.getClient().getPort());
         } finally {
             jedis.close();
         }
     }
 
-    @Override
-    public Long persist(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.persist(key);
-        } finally {
-            jedis.close();
+    /**
+     * @return 一个不属于连接池的新连接,订阅结束后由调用方关闭
+     */
+    private Jedis newSubscriberConnection() {
+        HostAndPort node = masterNode();
+        Jedis jedis = new Jedis(node.getHost(), node.getPort(), connOrSoTimeout);
+        if (password != null) {
+            try {
+                jedis.auth(password);
+            } catch (RuntimeException e) {
+                jedis.close();
+                throw e;
+            }
         }
+        return jedis;
     }
 
-    @Override
-    public String type(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.type(key);
-        } finally {
-            jedis.close();
+    /**
+     * 阻塞命令专用连接池,第一次调用时按每个节点8个连接创建. 需要其他大小时在第一次blpop/brpop之前调用{@link #enableBlockingLane(int)}
+     *
+     * @return 阻塞命令通道,可以查看各节点连接池的使用情况和阻塞命令的统计
+     */
+    public RedisBlockingLane getBlockingLane() {
+        RedisBlockingLane lane = blockingLane;
+        if (lane == null) {
+            synchronized (this) {
+                lane = blockingLane;
+                if (lane == null) {
+                    lane = enableBlockingLane(DEFAULT_BLOCKING_POOL_SIZE);
+                }
+            }
         }
+        return lane;
     }
 
-    @Override
-    public Long expire(String key, int seconds) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.expire(key, seconds);
-        } finally {
-            jedis.close();
+    /**
+     * 设置阻塞命令专用连接池的大小,替换掉已有的通道(已有的连接池会被关闭,正在阻塞的命令会失败)
+     *
+     * @param maxTotal 每个节点的最大连接数,即同时阻塞的消费者上限,超出的在这个池上排队等连接
+     * @return 阻塞命令通道
+     */
+    public synchronized RedisBlockingLane enableBlockingLane(int maxTotal) {
+        JedisPoolConfig config = (JedisPoolConfig) poolConfig.clone();
+        config.setMaxTotal(maxTotal);
+        config.setMaxIdle(maxTotal);
+        config.setMinIdle(0);
+        config.setBlockWhenExhausted(true);
+        RedisBlockingLane lane = new RedisBlockingLane(maxTotal, node -> {
+            if (!MASTER_NODE.equals(node)) {
+                String[] hostAndPort = node.split(":");
+                return new JedisPool(config, hostAndPort[0], NumberUtils.parseInt(hostAndPort[1], 0),
+                                     connOrSoTimeout, password);
+            }
+            if (sentinels != null) {
+                return new JedisSentinelPool(sentinelMasterName, sentinels, config, connOrSoTimeout,
+                                             password);
+            }
+            HostAndPort master = masterNode();
+            return new JedisPool(config, master.getHost(), master.getPort(), connOrSoTimeout, password);
+        });
+        RedisBlockingLane old = blockingLane;
+        blockingLane = lane;
+        if (old != null) {
+            old.shutdown();
         }
+        return lane;
     }
 
-    @Override
-    public Long pexpire(String key, long milliseconds) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.pexpire(key, milliseconds);
-        } finally {
-            jedis.close();
-        }
+    /**
+     * 获得一个分布式锁,使用默认30秒的租约,持有期间自动续期
+     *
+     * @param name 锁对应的redis key
+     * @return 锁
+     * @see RedisLock
+     */
+    public RedisLock getLock(String name) {
+        return getLockManager().getLock(name);
     }
 
-    @Override
-    public Long expireAt(String key, long unixTime) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.expireAt(key, unixTime);
-        } finally {
-            jedis.close();
-        }
+    /**
+     * 获得一个分布式锁
+     *
+     * @param name 锁对应的redis key
+     * @param leaseMillis 租约,毫秒,持有者进程挂掉后锁最多保留这么久;持有期间自动续期
+     * @return 锁
+     */
+    public RedisLock getLock(String name, long leaseMillis) {
+        return getLockManager().getLock(name, leaseMillis);
     }
 
-    @Override
-    public Long pexpireAt(String key, long millisecondsTimestamp) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.pexpireAt(key, millisecondsTimestamp);
-        } finally {
-            jedis.close();
+    /**
+     * 第一次调用时创建,使用默认的解锁通知channel,解锁通知通过{@link #getPubSubManager()}的订阅连接接收. <br/>
+     * 需要自定义channel或默认租约时,在第一次getLock之前调用{@link #enableLocks(String, long)}.
+     *
+     * @return 分布式锁管理器
+     */
+    public RedisLockManager getLockManager() {
+        RedisLockManager manager = lockManager;
+        if (manager == null) {
+            synchronized (this) {
+                manager = lockManager;
+                if (manager == null) {
+                    manager = enableLocks(DEFAULT_LOCK_CHANNEL, DEFAULT_LOCK_LEASE_MILLIS);
+                }
+            }
         }
+        return manager;
     }
 
-    @Override
-    public Long ttl(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.ttl(key);
-        } finally {
-            jedis.close();
+    /**
+     * 开启分布式锁,替换掉已有的锁管理器(旧管理器持有的锁停止续期). 各节点必须使用同一个channel
+     *
+     * @param unlockChannel 发布/订阅解锁通知的channel
+     * @param defaultLeaseMillis 默认租约,毫秒
+     * @return 分布式锁管理器
+     */
+    public synchronized RedisLockManager enableLocks(String unlockChannel, long defaultLeaseMillis) {
+        RedisLockManager manager = new RedisLockManager(this, unlockChannel, defaultLeaseMillis);
+        RedisLockManager old = lockManager;
+        manager.start();
+        lockManager = manager;
+        if (old != null) {
+            old.shutdown();
         }
+        return manager;
     }
 
-    @Override
-    public Long pttl(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.pttl(key);
-        } finally {
-            jedis.close();
+    /**
+     * 创建令牌桶限流器,允许突发到capacity,长期平均速率为permitsPerSecond
+     *
+     * @param name 限流器名,作为key前缀,实际key为name:id
+     * @param capacity 桶容量
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @return 限流器
+     */
+    public RedisRateLimiter tokenBucketLimiter(String name, long capacity, double permitsPerSecond) {
+        return RedisRateLimiter.tokenBucket(this, name, capacity, permitsPerSecond);
+    }
+
+    /**
+     * 创建滑动窗口限流器,任意windowMillis毫秒内最多通过limit个许可
+     *
+     * @param name 限流器名,作为key前缀,实际key为name:id
+     * @param limit 窗口内的上限
+     * @param windowMillis 窗口长度,毫秒
+     * @return 限流器
+     */
+    public RedisRateLimiter slidingWindowLimiter(String name, long limit, long windowMillis) {
+        return RedisRateLimiter.slidingWindow(this, name, limit, windowMillis);
+    }
+
+    /**
+     * 创建可靠队列消费者,创建后调用start开始消费
+     *
+     * @param queue 队列的key,集群模式下需要带hash tag,例如{orders}
+     * @param batchSize 每批最多取几个
+     * @param workerThreads 处理线程数
+     * @param handler 批量处理逻辑
+     * @return 消费者
+     * @see RedisQueueConsumer
+     */
+    public RedisQueueConsumer queueConsumer(String queue, int batchSize, int workerThreads,
+                                            RedisQueueConsumer.BatchHandler handler) {
+        return new RedisQueueConsumer(this, queue, batchSize, workerThreads, handler);
+    }
+
+    /**
+     * 创建延时任务队列,生产者直接调用schedule,消费者调用start开始消费
+     *
+     * @param name 队列名
+     * @param shards 分片数,同一个队列的所有生产者和消费者必须一致
+     * @return 延时队列
+     * @see RedisDelayQueue
+     */
+    public RedisDelayQueue delayQueue(String name, int shards) {
+        return new RedisDelayQueue(this, name, shards);
+    }
+
+    /**
+     * 写操作之后调用,清掉本地缓存并通知其他节点
+     */
+    private void invalidateNearCache(String key) {
+        RedisNearCache cache = nearCache;
+        if (cache != null) {
+            cache.invalidate(key);
         }
     }
 
-    @Override
-    public Boolean setbit(String key, long offset, boolean value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.setbit(key, offset, value);
-        } finally {
-            jedis.close();
+    /**
+     * 开启读请求合并,使用2个分发线程.开启后并发的get/hget/exists会被合并成pipeline批量发出,
+     * 每个调用方最多多等待windowMicros微秒,换取更少的连接占用和更高的吞吐.
+     *
+     * @param windowMicros 合并窗口,单位微秒,例如200
+     * @param maxBatchSize 每批最多合并的请求数
+     */
+    public void enableReadCoalescing(long windowMicros, int maxBatchSize) {
+        enableReadCoalescing(windowMicros, maxBatchSize, 2);
+    }
+
+    /**
+     * 开启读请求合并
+     *
+     * @param windowMicros 合并窗口,单位微秒,例如200
+     * @param maxBatchSize 每批最多合并的请求数
+     * @param concurrency 分发线程数,即同时在途的pipeline数,每个分发线程执行时占用一个连接
+     */
+    public synchronized void enableReadCoalescing(long windowMicros, int maxBatchSize,
+                                                  int concurrency) {
+        RedisReadCoalescer coalescer = new RedisReadCoalescer(this, windowMicros, maxBatchSize,
+                                                              concurrency);
+        coalescer.start();
+        RedisReadCoalescer old = readCoalescer;
+        readCoalescer = coalescer;
+        if (old != null) {
+            old.shutdown();
         }
     }
 
-    @Override
-    public Boolean setbit(String key, long offset, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.setbit(key, offset, value);
-        } finally {
-            jedis.close();
+    /**
+     * 关闭读请求合并,已经在排队的请求会失败
+     */
+    public synchronized void disableReadCoalescing() {
+        RedisReadCoalescer old = readCoalescer;
+        readCoalescer = null;
+        if (old != null) {
+            old.shutdown();
         }
     }
 
-    @Override
-    public Boolean getbit(String key, long offset) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.getbit(key, offset);
-        } finally {
-            jedis.close();
+    /**
+     * @return 读请求合并器,可以用来查看合并的统计数据;未开启时返回null
+     */
+    public RedisReadCoalescer getReadCoalescer() {
+        return readCoalescer;
+    }
+
+    /**
+     * 开启对冲读,只对hedgedGet/hedgedHget生效:请求超过近期延迟的quantile分位数还没返回时再发一次,谁先返回用谁.
+     * 对冲请求经过从库路由,开启从库读时会倾向发往另一个从库,否则在主库上另借一个连接.
+     * 已经开启时先关闭旧的
+     *
+     * @param quantile 对冲延迟取的分位数,例如0.95
+     * @param budgetRatio 对冲请求占总请求的上限,例如0.05
+     * @return 对冲器,可以调整延迟上下限、查看对冲统计
+     */
+    public synchronized RedisHedger enableHedgedReads(double quantile, double budgetRatio) {
+        disableHedgedReads();
+        hedger = new RedisHedger(new RedisAsyncExecutor("redis-hedge", maxPoolSize, maxPoolSize * 50),
+                                 quantile, budgetRatio);
+        return hedger;
+    }
+
+    /**
+     * 关闭对冲读,hedgedGet/hedgedHget退化为普通读
+     */
+    public synchronized void disableHedgedReads() {
+        if (hedger != null) {
+            hedger.shutdown();
+            hedger = null;
         }
     }
 
+    /**
+     * @return 对冲器,未开启时返回null
+     */
+    public RedisHedger getHedger() {
+        return hedger;
+    }
+
+    /**
+     * 对冲版本的get,用于对尾延迟敏感的接口;不经过本地缓存和读合并.未开启对冲读时等同于直接读redis
+     *
+     * @param key
+     * @return
+     */
+    public String hedgedGet(final String key) {
+        return hedged("get", key, jedis -> jedis.get(key));
+    }
+
+    /**
+     * 对冲版本的get,值用codec解码
+     *
+     * @param key
+     * @param codec 值的编解码方式
+     * @param <T>
+     * @return key不存在时返回null
+     */
+    public <T> T hedgedGet(final String key, final RedisCodec<T> codec) {
+        return decode(key, hedged("get", key, jedis -> jedis.get(SafeEncoder.encode(key))), codec);
+    }
+
+    /**
+     * 对冲版本的hget
+     *
+     * @param key
+     * @param field
+     * @return
+     */
+    public String hedgedHget(final String key, final String field) {
+        return hedged("hget", key, jedis -> jedis.hget(key, field));
+    }
+
+    private <T> T hedged(String command, String key, JedisAction<T> action) {
+        RedisHedger h = hedger;
+        if (h == null) {
+            return executeRead(command, key, action);
+        }
+        return h.execute(() -> executeRead(command, key, action));
+    }
+
+    /**
+     * 开启连接池自适应调整:监控线程每5秒采样一次,有等待或借连接变慢时在上限内扩大maxTotal和minIdle,
+     * 持续空闲时缩小,避免高峰时连接耗尽、低峰时每个进程挂着大量空闲连接.需要先调用afterPropertiesSet启动监控线程
+     *
+     * @param minTotal maxTotal的下限
+     * @param maxTotal maxTotal的上限
+     * @return 调整器,可以修改阈值、查看扩缩容次数
+     */
+    public synchronized RedisPoolSizer enableAdaptivePoolSizing(int minTotal, int maxTotal) {
+        poolSizer = new RedisPoolSizer(minTotal, maxTotal);
+        return poolSizer;
+    }
+
+    /**
+     * 关闭连接池自适应调整,连接池保持当前大小
+     */
+    public synchronized void disableAdaptivePoolSizing() {
+        poolSizer = null;
+    }
+
+    /**
+     * @return 连接池自适应调整器,未开启时返回null
+     */
+    public RedisPoolSizer getPoolSizer() {
+        return poolSizer;
+    }
+
+    /**
+     * 开启熔断:每个连接池(单机/主库、集群的每个节点、每个从库)一个熔断器,按失败率或慢调用率打开,
+     * 打开期间该节点上的命令直接抛出{@link RedisCircuitOpenException},不再等待借连接和socket超时.
+     * 已经开启时返回当前的参数
+     *
+     * @return 熔断参数,可以直接修改,对所有节点生效
+     */
+    public synchronized RedisCircuitBreaker.Config enableCircuitBreaker() {
+        if (circuitBreakerConfig == null) {
+            circuitBreakerConfig = new RedisCircuitBreaker.Config();
+        }
+        return circuitBreakerConfig;
+    }
+
+    /**
+     * 关闭熔断,丢弃所有熔断器的状态
+     */
+    public synchronized void disableCircuitBreaker() {
+        circuitBreakerConfig = null;
+        circuitBreakers.clear();
+    }
+
+    /**
+     * @return 各节点的熔断器,按名字排序
+     */
+    public Map<String, RedisCircuitBreaker> getCircuitBreakers() {
+        Map<String, RedisCircuitBreaker> result = new TreeMap<>();
+        for (RedisCircuitBreaker breaker : circuitBreakers.values()) {
+            result.put(breaker.getName(), breaker);
+        }
+        return result;
+    }
+
+    /**
+     * 熔断时降级:执行action,熔断器打开导致失败时返回fallback的结果,其他异常照常抛出.例如
+     * <pre>
+     * String value = redisClient.withFallback(() -> redisClient.get(key), () -> loadFromDb(id));
+     * </pre>
+     *
+     * @param action redis操作
+     * @param fallback 降级逻辑
+     * @param <T>
+     * @return action或fallback的结果
+     */
+    public <T> T withFallback(Supplier<T> action, Supplier<T> fallback) {
+        try {
+            return action.get();
+        } catch (RedisCircuitOpenException e) {
+            return fallback.get();
+        }
+    }
+
+    /**
+     * 开启从库读(只支持sentinel模式):get/hget/zrange/smembers等只读命令分发到从库,按延迟和在途请求数做负载均衡,
+     * 从库不可用或者复制落后太多时读主库. 从库是异步复制的,需要读己之写的业务不要开启
+     *
+     * @param maxLagBytes 从库落后主库超过这么多字节时不再读它,例如1048576
+     * @param refreshIntervalMillis 从sentinel刷新从库列表和复制状态的间隔,例如5000
+     * @return 从库路由,可以查看各从库的延迟和分发统计
+     */
+    public synchronized RedisReplicaRouter enableReplicaReads(long maxLagBytes,
+                                                              long refreshIntervalMillis) {
+        if (sentinels == null) {
+            throw new IllegalStateException("replica reads are only supported in sentinel mode");
+        }
+        RedisReplicaRouter router = new RedisReplicaRouter(sentinelMasterName, sentinels, jedisPool,
+                                                           poolConfig, connOrSoTimeout, password,
+                                                           maxLagBytes);
+        router.start(refreshIntervalMillis);
+        RedisReplicaRouter old = replicaRouter;
+        replicaRouter = router;
+        if (old != null) {
+            old.shutdown();
+        }
+        return router;
+    }
+
+    /**
+     * 关闭从库读,之后所有命令都发往主库
+     */
+    public synchronized void disableReplicaReads() {
+        RedisReplicaRouter old = replicaRouter;
+        replicaRouter = null;
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     * @return 从库路由,未开启时返回null
+     */
+    public RedisReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    private JedisPoolConfig getDefaultConfig() {
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMinIdle(1);
+        config.setTestOnBorrow(false);
+        config.setMaxTotal(20);
+        config.setMaxWaitMillis(1000);// Borrow最大等待时间
+        config.setTestWhileIdle(true);
+        config.setTimeBetweenEvictionRunsMillis(90000);// 每隔90S testWhileIdle一次
+        return config;
+    }
+
+    /**
+     * 从连接池获得一个redis连接,使用完毕后必须close掉,否则连接池会被耗尽. <br/>
+     * 该方法私有,是为了防止客户端获得后忘了close.需要管道的场景请使用{@link #batch(RedisBatchCallback)},由它负责连接的归还
+     *
+     * @return jedis连接,使用完后务必调用jedis.close()释放资源占用
+     */
+    private Jedis getResource() {
+        return cluster != null ? cluster.getAnyPool().getResource() : jedisPool.getResource();
+    }
+
+    /**
+     * @return 所有连接池,集群模式下为每个master的连接池
+     */
+    private List<? extends Pool<Jedis>> pools() {
+        return cluster != null ? cluster.getMasterPools() : Collections.singletonList(jedisPool);
+    }
+
+    /**
+     * @return 集群模式的slot拓扑,可以查看节点和重定向统计;其他模式返回null
+     */
+    public RedisClusterTopology getClusterTopology() {
+        return cluster;
+    }
+
+    /**
+     * 批量执行命令:只借用一个连接,回调中提交的所有命令通过一次pipeline发出,连接由本方法负责归还. <br/>
+     * 用法:
+     * <pre>
+     * List&lt;Object&gt; results = client.batch(b -&gt; { b.get(k1); b.hget(k2, f); b.incr(k3); });
+     * String v1 = (String) results.get(0);
+     * </pre>
+     * 也可以保留回调中拿到的Response,本方法返回后直接调用Response.get()取得类型化的结果.
+     * 如果某个命令在服务端执行出错,对应位置是一个JedisDataException,调用该Response.get()时会抛出.
+     *
+     * @param callback 提交命令的回调
+     * @return 按提交顺序排列的所有命令结果
+     */
+    public List<Object> batch(RedisBatchCallback callback) {
+        if (cluster != null) {
+            return clusterBatch(callback);
+        }
+        final AtomicReference<RedisBatch> created = new AtomicReference<>();
+        try {
+            return execute("batch", null, jedis -> {
+                Pipeline pipeline = jedis.pipelined();
+                RedisBatch batch = new RedisBatch(pipeline, payloadMetrics);
+                created.set(batch);
+                try {
+                    callback.doInBatch(batch);
+                } catch (RuntimeException e) {
+                    // 回调中途失败时,已经发出的命令的回复必须读完,否则连接还回池里会被下一个使用者读到错位的回复
+                    pipeline.sync();
+                    throw e;
+                }
+                return pipeline.syncAndReturnAll();
+            });
+        } finally {
+            invalidateWritten(created.get());
+        }
+    }
+
+    /**
+     * batch结束后(无论成功与否)失效写过的key,写命令可能已经在服务端执行
+     */
+    private void invalidateWritten(RedisBatch batch) {
+        if (batch == null || nearCache == null) {
+            return;
+        }
+        for (String key : batch.getWrittenKeys()) {
+            invalidateNearCache(key);
+        }
+    }
+
+    /**
+     * 集群模式的batch:每个节点借一个连接、一个pipeline,各节点并行sync后按提交顺序合并结果.
+     * 结果中出现MOVED时刷新拓扑,该命令的结果仍然是异常,由调用方决定是否重试
+     */
+    private List<Object> clusterBatch(RedisBatchCallback callback) {
+        long start = System.nanoTime();
+        boolean success = false;
+        final Map<Pool<Jedis>, Jedis> connections = new LinkedHashMap<>();
+        final Map<Pool<Jedis>, Pipeline> pipelines = new LinkedHashMap<>();
+        RedisBatch batch = null;
+        try {
+            batch = new RedisBatch(key -> {
+                Pool<Jedis> pool = cluster.getPool(key);
+                Pipeline pipeline = pipelines.get(pool);
+                if (pipeline == null) {
+                    Jedis jedis = pool.getResource();
+                    connections.put(pool, jedis);
+                    pipeline = jedis.pipelined();
+                    pipelines.put(pool, pipeline);
+                }
+                return pipeline;
+            }, payloadMetrics);
+            List<Supplier<List<Object>>> tasks = new ArrayList<>(pipelines.size());
+            try {
+                callback.doInBatch(batch);
+            } catch (RuntimeException e) {
+                // 和单节点一样,已经发出的命令的回复必须读完才能归还连接
+                for (Pipeline pipeline : pipelines.values()) {
+                    pipeline.sync();
+                }
+                throw e;
+            }
+            for (Pipeline pipeline : pipelines.values()) {
+                tasks.add(pipeline::syncAndReturnAll);
+            }
+            List<List<Object>> replies = cluster.fanOut(tasks);
+            Map<Pipeline, Iterator<Object>> byPipeline = new IdentityHashMap<>();
+            int i = 0;
+            for (Pipeline pipeline : pipelines.values()) {
+                byPipeline.put(pipeline, replies.get(i++).iterator());
+            }
+            List<Object> results = new ArrayList<>(batch.getOrder().size());
+            JedisMovedDataException moved = null;
+            for (Pipeline pipeline : batch.getOrder()) {
+                Object reply = byPipeline.get(pipeline).next();
+                if (reply instanceof JedisMovedDataException) {
+                    moved = (JedisMovedDataException) reply;
+                }
+                results.add(reply);
+            }
+            if (moved != null) {
+                cluster.onMoved(moved.getSlot(), moved.getTargetNode());
+            }
+            success = true;
+            return results;
+        } finally {
+            for (Jedis jedis : connections.values()) {
+                jedis.close();
+            }
+            metrics.record("batch", null, 0, System.nanoTime() - start, success);
+            invalidateWritten(batch);
+        }
+    }
+
+    /**
+     * 在一个连接上执行操作,负责连接的借还和耗时统计
+     *
+     * @param command 命令名,用于统计和慢日志
+     * @param key 操作的key,用于慢日志,没有或者有多个key时传null
+     * @param action 具体操作
+     * @return 操作的返回值
+     */
+    private <T> T execute(String command, String key, JedisAction<T> action) {
+        return execute(command, key, false, action);
+    }
+
+    /**
+     * 执行只读命令,开启了从库读时可能在从库上执行
+     */
+    private <T> T executeRead(String command, String key, JedisAction<T> action) {
+        return execute(command, key, true, action);
+    }
+
+    private <T> T execute(String command, String key, boolean readOnly, JedisAction<T> action) {
+        T result = send(command, key, readOnly, action);
+        payloadMetrics.recordRead(command, key, result);
+        return result;
+    }
+
+    /**
+     * 采样热点key后执行,不统计响应大小;写命令的回复是状态或数字,统计进响应直方图没有意义
+     */
+    private <T> T send(String command, String key, boolean readOnly, JedisAction<T> action) {
+        RedisHotKeyDetector detector = hotKeyDetector;
+        if (detector != null) {
+            detector.record(command, key);
+        }
+        return route(command, key, readOnly, action);
+    }
+
+    /**
+     * 选择执行的节点:集群模式按slot,开启从库读时只读命令走从库,否则走主库
+     */
+    private <T> T route(String command, String key, boolean readOnly, JedisAction<T> action) {
+        RedisReplicaRouter router = readOnly ? replicaRouter : null;
+        if (cluster != null) {
+            return executeOnCluster(command, key, null, action);
+        } else if (router != null) {
+            return executeOnReplica(router, command, key, action);
+        }
+        return execute(command, key, jedisPool, action);
+    }
+
+    /**
+     * 读请求合并器发出一组单key读:每个请求照常做热点key采样并按自己的命令名记录统计,
+     * 整组在一个连接上用pipeline发出,和executeRead一样经过从库路由和熔断,pipeline本身记在coalesce命令下.
+     * 集群模式下这组key必须在同一个slot,收到MOVED时整组到新节点重发;ASKING只对紧接着的一个命令有效,
+     * 所以收到ASK后在目标节点上逐个请求先发ASKING再发出,直到再次收到MOVED
+     *
+     * @param commands 每个请求的命令名
+     * @param keys 每个请求的key,和commands一一对应
+     * @param requests 每个请求把自己写入batch并返回Response,和commands一一对应
+     * @return 各请求的Response,已经sync过
+     */
+    List<Response<?>> executeCoalesced(List<String> commands, List<String> keys,
+                                       List<Function<RedisBatch, Response<?>>> requests) {
+        RedisHotKeyDetector detector = hotKeyDetector;
+        if (detector != null) {
+            for (int i = 0; i < keys.size(); i++) {
+                detector.record(commands.get(i), keys.get(i));
+            }
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        final AtomicBoolean asking = new AtomicBoolean();
+        try {
+            List<Response<?>> responses = route("coalesce", keys.get(0), true, jedis -> {
+                List<Response<?>> submitted = asking.get() ? sendAsking(jedis, requests)
+                    : sendCoalesced(jedis, requests);
+                if (cluster != null) {
+                    // pipeline中的重定向不会抛出,这里取出来交给executeOnCluster重试
+                    for (Response<?> response : submitted) {
+                        try {
+                            response.get();
+                        } catch (JedisRedirectionException e) {
+                            asking.set(e instanceof JedisAskDataException);
+                            throw e;
+                        } catch (JedisDataException e) {
+                            // 单个请求的错误由调用方读取结果时抛出
+                        }
+                    }
+                }
+                return submitted;
+            });
+            success = true;
+            return responses;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            for (int i = 0; i < keys.size(); i++) {
+                metrics.record(commands.get(i), keys.get(i), 0, nanos, success);
+            }
+        }
+    }
+
+    /**
+     * 所有请求通过一个pipeline发出
+     */
+    private static List<Response<?>> sendCoalesced(Jedis jedis,
+                                                   List<Function<RedisBatch, Response<?>>> requests) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<?>> submitted = new ArrayList<>(requests.size());
+        try {
+            // 合并的都是读命令,不需要写入大小检查
+            RedisBatch batch = new RedisBatch(pipeline, null);
+            for (Function<RedisBatch, Response<?>> request : requests) {
+                submitted.add(request.apply(batch));
+            }
+        } finally {
+            pipeline.sync();
+        }
+        return submitted;
+    }
+
+    /**
+     * slot迁移中收到ASK后使用:每个请求前单独发一次ASKING,一个请求一次往返,只在迁移期间发生
+     */
+    private static List<Response<?>> sendAsking(Jedis jedis,
+                                                List<Function<RedisBatch, Response<?>>> requests) {
+        List<Response<?>> submitted = new ArrayList<>(requests.size());
+        for (Function<RedisBatch, Response<?>> request : requests) {
+            jedis.asking();
+            Pipeline pipeline = jedis.pipelined();
+            try {
+                submitted.add(request.apply(new RedisBatch(pipeline, null)));
+            } finally {
+                pipeline.sync();
+            }
+        }
+        return submitted;
+    }
+
+    /**
+     * 从库读:选一个从库执行,从库连接失败或者暂时不能提供读时改到主库执行一次
+     */
+    private <T> T executeOnReplica(RedisReplicaRouter router, String command, String key,
+                                   JedisAction<T> action) {
+        RedisReplicaRouter.Replica replica = router.choose();
+        if (replica == null) {
+            return execute(command, key, jedisPool, action);
+        }
+        long start = replica.start();
+        try {
+            T result = execute(command, key, replica.getPool(), action);
+            replica.finish(start);
+            router.onReplicaRead();
+            return result;
+        } catch (RuntimeException e) {
+            replica.finish(start);
+            if (!RedisReplicaRouter.shouldFallback(e)) {
+                throw e;
+            }
+            router.onFallback(replica, e);
+        }
+        return execute(command, key, jedisPool, action);
+    }
+
+    /**
+     * 集群模式:按key所在slot选择节点,没有key时随机选一个master;收到MOVED时刷新拓扑后重试,收到ASK时在目标节点上先发ASKING再重试
+     */
+    private <T> T executeOnCluster(String command, String key, RedisBlockingLane lane,
+                                   JedisAction<T> action) {
+        Pool<Jedis> pool = key == null ? cluster.getAnyPool() : cluster.getPool(key);
+        JedisAction<T> current = action;
+        for (int redirects = 0;; redirects++) {
+            try {
+                if (lane != null) {
+                    return execute(command, key, lane.pool(cluster.getNodeName(pool)), null,
+                                   lane.getMetrics(), current);
+                }
+                return execute(command, key, pool, current);
+            } catch (JedisRedirectionException e) {
+                if (redirects >= MAX_REDIRECTS) {
+                    throw e;
+                }
+                if (e instanceof JedisAskDataException) {
+                    cluster.onAsk();
+                    current = jedis -> {
+                        jedis.asking();
+                        return action.doInRedis(jedis);
+                    };
+                } else {
+                    cluster.onMoved(e.getSlot(), e.getTargetNode());
+                    current = action;
+                }
+                pool = cluster.getPoolByNode(e.getTargetNode());
+            } catch (JedisConnectionException e) {
+                // 节点可能已经下线,刷新拓扑后让调用方重试,不自动重发以免写命令执行两次
+                cluster.refresh(false);
+                throw e;
+            }
+        }
+    }
+
+    private <T> T execute(String command, String key, Pool<Jedis> pool, JedisAction<T> action) {
+        return execute(command, key, pool, circuitBreaker(pool), metrics, action);
+    }
+
+    /**
+     * @param breaker 该连接池的熔断器,没有时传null
+     * @param metrics 记录到哪个统计中
+     */
+    private <T> T execute(String command, String key, Pool<Jedis> pool, RedisCircuitBreaker breaker,
+                          RedisCommandMetrics metrics, JedisAction<T> action) {
+        if (breaker != null && !breaker.tryAcquire()) {
+            metrics.record(command, key, 0, 0, false);
+            throw new RedisCircuitOpenException(breaker.getName());
+        }
+        long start = System.nanoTime();
+        long borrowed = start;
+        Jedis jedis = null;
+        RuntimeException error = null;
+        try {
+            jedis = pool.getResource();
+            borrowed = System.nanoTime();
+            return action.doInRedis(jedis);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+            long end = System.nanoTime();
+            if (jedis == null) {
+                borrowed = end;
+            }
+            metrics.record(command, key, borrowed - start, end - borrowed, error == null);
+            if (breaker != null) {
+                breaker.onComplete(end - start, error);
+            }
+        }
+    }
+
+    /**
+     * @return 该连接池的熔断器,未开启熔断时返回null
+     */
+    private RedisCircuitBreaker circuitBreaker(Pool<Jedis> pool) {
+        RedisCircuitBreaker.Config config = circuitBreakerConfig;
+        if (config == null) {
+            return null;
+        }
+        RedisCircuitBreaker breaker = circuitBreakers.get(pool);
+        if (breaker == null) {
+            breaker = circuitBreakers.computeIfAbsent(pool,
+                p -> new RedisCircuitBreaker(poolName(p), config));
+        }
+        return breaker;
+    }
+
+    private String poolName(Pool<Jedis> pool) {
+        if (pool == jedisPool) {
+            return sentinelMasterName != null ? "master:" + sentinelMasterName : "master";
+        }
+        String name = cluster != null ? cluster.getNodeName(pool) : null;
+        RedisReplicaRouter router = replicaRouter;
+        if (name == null && router != null) {
+            name = router.getNodeName(pool);
+        }
+        return name != null ? name : pool.toString();
+    }
+
+    /**
+     * 在阻塞命令专用连接池上执行,不经过熔断器(阻塞时间由timeout决定,会被当成慢调用)
+     */
+    private <T> T executeBlocking(String command, String key, JedisAction<T> action) {
+        RedisBlockingLane lane = getBlockingLane();
+        try {
+            if (cluster != null) {
+                return executeOnCluster(command, key, lane, action);
+            }
+            return execute(command, key, lane.pool(MASTER_NODE), null, lane.getMetrics(), action);
+        } finally {
+            invalidateNearCache(key);
+        }
+    }
+
+    /**
+     * 执行带value的写操作,发出之前先统计value大小,超过写入上限时直接抛出IllegalArgumentException
+     */
+    private <T> T executeWrite(String command, String key, Object value, JedisAction<T> action) {
+        payloadMetrics.recordWrite(command, key, value);
+        return executeWrite(command, key, action);
+    }
+
+    /**
+     * 执行写操作,执行后清掉该key的本地缓存
+     */
+    private <T> T executeWrite(String command, String key, JedisAction<T> action) {
+        try {
+            return send(command, key, false, action);
+        } finally {
+            invalidateNearCache(key);
+        }
+    }
+
+    /**
+     * 执行返回数据的写命令(getSet、pop等),和读命令一样统计响应大小
+     */
+    private <T> T executeTake(String command, String key, JedisAction<T> action) {
+        T result = executeWrite(command, key, action);
+        payloadMetrics.recordRead(command, key, result);
+        return result;
+    }
+
+    /**
+     * 集群模式下执行多key命令:按slot分组,同一节点上的各组通过一个pipeline发出,各节点并行执行.
+     * pipeline中的MOVED/ASK不会抛出而是留在各组的回复里,所以逐组检查:MOVED时更新slot后把该组重发到新节点,
+     * ASK时在目标节点上先发ASKING再单独重发.收到重定向的命令没有执行,只重发这些组不会重复执行
+     *
+     * @param command 命令名,用于统计
+     * @param keys 所有key
+     * @param op 对同一个slot的一组key执行命令
+     * @return 每组key在原数组中的下标和对应的结果
+     */
+    private <R> List<KeyGroup<R>> executeBySlot(String command, String[] keys,
+                                                BiFunction<Pipeline, String[], Response<R>> op) {
+        Map<Integer, List<Integer>> bySlot = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            int slot = RedisClusterTopology.slot(keys[i]);
+            bySlot.computeIfAbsent(slot, s -> new ArrayList<>()).add(i);
+        }
+        List<KeyGroup<R>> all = new ArrayList<>(bySlot.size());
+        for (Map.Entry<Integer, List<Integer>> e : bySlot.entrySet()) {
+            KeyGroup<R> group = new KeyGroup<>(keys, e.getValue());
+            group.pool = cluster.getPoolBySlot(e.getKey());
+            all.add(group);
+        }
+        List<KeyGroup<R>> pending = all;
+        for (int redirects = 0;; redirects++) {
+            sendBySlot(command, pending, op);
+            List<KeyGroup<R>> redirected = new ArrayList<>();
+            for (KeyGroup<R> group : pending) {
+                JedisRedirectionException e = group.redirection();
+                if (e == null) {
+                    continue;
+                }
+                if (redirects >= MAX_REDIRECTS) {
+                    throw e;
+                }
+                if (e instanceof JedisAskDataException) {
+                    cluster.onAsk();
+                    group.asking = true;
+                } else {
+                    cluster.onMoved(e.getSlot(), e.getTargetNode());
+                    group.asking = false;
+                }
+                group.pool = cluster.getPoolByNode(e.getTargetNode());
+                redirected.add(group);
+            }
+            if (redirected.isEmpty()) {
+                return all;
+            }
+            pending = redirected;
+        }
+    }
+
+    /**
+     * 把各组发到各自的节点:同一节点的普通组合并成一个pipeline,ASK重定向的组各自先发ASKING
+     */
+    private <R> void sendBySlot(final String command, List<KeyGroup<R>> groups,
+                                final BiFunction<Pipeline, String[], Response<R>> op) {
+        Map<Pool<Jedis>, List<KeyGroup<R>>> byNode = new LinkedHashMap<>();
+        List<Supplier<Object>> tasks = new ArrayList<>();
+        for (final KeyGroup<R> group : groups) {
+            if (!group.asking) {
+                byNode.computeIfAbsent(group.pool, p -> new ArrayList<>()).add(group);
+                continue;
+            }
+            tasks.add(() -> execute(command, null, group.pool, jedis -> {
+                // ASKING只对下一条命令有效,每组单独发
+                jedis.asking();
+                Pipeline pipeline = jedis.pipelined();
+                group.response = op.apply(pipeline, group.keys);
+                pipeline.sync();
+                return null;
+            }));
+        }
+        for (Map.Entry<Pool<Jedis>, List<KeyGroup<R>>> e : byNode.entrySet()) {
+            final List<KeyGroup<R>> nodeGroups = e.getValue();
+            tasks.add(() -> execute(command, null, e.getKey(), jedis -> {
+                Pipeline pipeline = jedis.pipelined();
+                for (KeyGroup<R> group : nodeGroups) {
+                    group.response = op.apply(pipeline, group.keys);
+                }
+                pipeline.sync();
+                return null;
+            }));
+        }
+        cluster.fanOut(tasks);
+    }
+
+    /**
+     * 集群模式下按slot拆分执行返回列表的多key读命令(mget),按原始顺序合并结果
+     */
+    private <V> List<V> executeListBySlot(String command, String[] keys,
+                                          BiFunction<Pipeline, String[], Response<List<V>>> op) {
+        List<V> result = new ArrayList<>(Collections.<V> nCopies(keys.length, null));
+        for (KeyGroup<List<V>> group : executeBySlot(command, keys, op)) {
+            List<V> values = group.response.get();
+            for (int i = 0; i < group.indexes.length; i++) {
+                result.set(group.indexes[i], values.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 按命令和key前缀统计的请求/响应大小,也可以在上面设置大value阈值和写入上限
+     */
+    public RedisPayloadMetrics getPayloadMetrics() {
+        return payloadMetrics;
+    }
+
+    /**
+     * 开启类型化方法(参数带RedisCodec的get/set/hget/hset/mget/hgetAll)的值压缩,编码后超过threshold字节的值压缩后写入.
+     * 读取总是能识别压缩过的值,所以可以随时开启和关闭;但不支持压缩的旧版本客户端读不了压缩过的值
+     *
+     * @param threshold 压缩阈值,字节,例如4096
+     * @return 压缩器,可以按key前缀设置阈值、查看压缩率和cpu耗时
+     * @see RedisCompressor
+     */
+    public RedisCompressor enableCompression(int threshold) {
+        compressor.setThreshold(threshold);
+        return compressor;
+    }
+
+    /**
+     * 关闭默认阈值的压缩,已经压缩的值仍然可以正常读取;按前缀设置的策略不受影响
+     */
+    public void disableCompression() {
+        compressor.setThreshold(0);
+    }
+
+    /**
+     * @return 值压缩器
+     */
+    public RedisCompressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * 重新配置热点key探测,默认已经以topK=10、width=4096、采样率0.05开启
+     *
+     * @param topK 每个命令保留的热点key个数
+     * @param width count-min sketch每行的计数器个数
+     * @param sampleRate 采样率,0~1
+     * @return 新的探测器,可以在上面设置告警阈值和回调
+     */
+    public RedisHotKeyDetector enableHotKeyDetection(int topK, int width, double sampleRate) {
+        RedisHotKeyDetector detector = new RedisHotKeyDetector(topK, width, sampleRate);
+        hotKeyDetector = detector;
+        return detector;
+    }
+
+    /**
+     * 关闭热点key探测
+     */
+    public void disableHotKeyDetection() {
+        hotKeyDetector = null;
+    }
+
+    /**
+     * @return 热点key探测器,用来查看各命令的热点key和设置告警;关闭时返回null
+     */
+    public RedisHotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    /**
+     * @return 按命令统计的耗时数据,也可以在上面调整各个命令的慢日志阈值和采样率
+     */
+    public RedisCommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 读取key,不存在时调用loader加载并以ttlSeconds写回redis. <br/>
+     * 同一个JVM内同一个key同时只会有一个loader在执行,其他线程等待它的结果,防止热点key过期时大量请求同时回源.
+     * 需要整个集群只回源一次时,通过{@link #getSingleFlight()}开启分布式模式.
+     *
+     * @param key
+     * @param ttlSeconds 写回redis的过期时间,秒
+     * @param loader 回源加载,返回null时不写缓存;抛出的受检异常会被包装成UncheckedExecutionException
+     * @return 缓存中的值或者loader加载的值
+     */
+    public String getOrLoad(String key, int ttlSeconds, Callable<String> loader) {
+        return singleFlight.getOrLoad(key, ttlSeconds, loader);
+    }
+
+    /**
+     * hash版本的{@link #getOrLoad(String, int, Callable)},加载后hset并刷新整个hash的过期时间
+     *
+     * @param key
+     * @param field
+     * @param ttlSeconds 整个hash的过期时间,秒
+     * @param loader 回源加载,返回null时不写缓存
+     * @return 缓存中的值或者loader加载的值
+     */
+    public String hgetOrLoad(String key, String field, int ttlSeconds, Callable<String> loader) {
+        return singleFlight.hgetOrLoad(key, field, ttlSeconds, loader);
+    }
+
+    /**
+     * @return getOrLoad使用的请求合并器,用来开启分布式模式和查看统计数据
+     */
+    public RedisSingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * 按codec读取key,全程使用byte[],不经过中间String
+     *
+     * @param key
+     * @param codec 见{@link RedisCodecs}
+     * @return key不存在或者codec解码返回null时为null
+     */
+    public <T> T get(final String key, final RedisCodec<T> codec) {
+        return decode(key, executeRead("get", key, jedis -> jedis.get(SafeEncoder.encode(key))), codec);
+    }
+
+    /**
+     * 按codec写入key
+     *
+     * @param key
+     * @param value 不能为null
+     * @param codec 见{@link RedisCodecs}
+     * @param ttlSeconds 过期时间,秒;小于等于0表示不过期
+     * @return Status code reply
+     */
+    public <T> String set(final String key, final T value, final RedisCodec<T> codec,
+                          final int ttlSeconds) {
+        final byte[] bytes = compressor.compress(key, codec.encode(value));
+        if (ttlSeconds > 0) {
+            return executeWrite("setex", key, bytes,
+                jedis -> jedis.setex(SafeEncoder.encode(key), ttlSeconds, bytes));
+        }
+        return executeWrite("set", key, bytes,
+            jedis -> jedis.set(SafeEncoder.encode(key), bytes));
+    }
+
+    /**
+     * 按codec批量读取,返回的列表和keys一一对应,不存在的key对应null
+     *
+     * @param codec
+     * @param keys
+     * @return
+     */
+    public <T> List<T> mget(final RedisCodec<T> codec, final String... keys) {
+        List<byte[]> values;
+        if (cluster != null) {
+            values = executeListBySlot("mget", keys,
+                (pipeline, group) -> pipeline.mget(SafeEncoder.encodeMany(group)));
+        } else {
+            values = executeRead("mget", null, jedis -> jedis.mget(SafeEncoder.encodeMany(keys)));
+        }
+        List<T> result = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            result.add(decode(keys[i], values.get(i), codec));
+        }
+        return result;
+    }
+
+    /**
+     * 按codec读取hash中的一个field
+     *
+     * @param key
+     * @param field
+     * @param codec
+     * @return
+     */
+    public <T> T hget(final String key, final String field, final RedisCodec<T> codec) {
+        return decode(key, executeRead("hget", key,
+            jedis -> jedis.hget(SafeEncoder.encode(key), SafeEncoder.encode(field))), codec);
+    }
+
+    /**
+     * 按codec写入hash中的一个field
+     *
+     * @param key
+     * @param field
+     * @param value 不能为null
+     * @param codec
+     * @return 新建field时返回1,覆盖已有field时返回0
+     */
+    public <T> Long hset(final String key, final String field, final T value,
+                         final RedisCodec<T> codec) {
+        final byte[] bytes = compressor.compress(key, codec.encode(value));
+        return executeWrite("hset", key, bytes,
+            jedis -> jedis.hset(SafeEncoder.encode(key), SafeEncoder.encode(field), bytes));
+    }
+
+    /**
+     * 按codec读取整个hash,field按UTF-8解码为String
+     *
+     * @param key
+     * @param codec
+     * @return key不存在时返回空map
+     */
+    public <T> Map<String, T> hgetAll(final String key, final RedisCodec<T> codec) {
+        Map<byte[], byte[]> values = executeRead("hgetAll", key,
+            jedis -> jedis.hgetAll(SafeEncoder.encode(key)));
+        Map<String, T> result = new HashMap<>(values.size() * 4 / 3 + 1);
+        for (Map.Entry<byte[], byte[]> e : values.entrySet()) {
+            T value = decode(key, e.getValue(), codec);
+            if (value != null) {
+                result.put(SafeEncoder.encode(e.getKey()), value);
+            }
+        }
+        return result;
+    }
+
+    private <T> T decode(String key, byte[] bytes, RedisCodec<T> codec) {
+        return bytes == null ? null : codec.decode(compressor.decompress(key, bytes));
+    }
+
+    /**
+     * 销毁连接池,一般在应用退出前调用
+     */
+    public void close() {
+        if (cluster != null) {
+            cluster.close();
+        } else {
+            jedisPool.close();
+        }
+    }
+
+    /**
+     * Set the string value as value of the key. The string can't be longer than
+     * 1073741824 bytes (1 GB).
+     * <p>
+     * Time complexity: O(1)
+     * 
+     * @param key
+     * @param value
+     * @return Status code reply
+     */
+    @Override
+    public String set(String key, String value) {
+        return executeWrite("set", key, value, jedis -> jedis.set(key, value));
+    }
+
+    @Override
+    public String set(String key, String value, String nxxx, String expx, long time) {
+        return executeWrite("set", key, value, jedis -> jedis.set(key, value, nxxx, expx, time));
+    }
+
+    @Override
+    public String set(String key, String value, String nxxx) {
+        return executeWrite("set", key, value, jedis -> jedis.set(key, value, nxxx));
+    }
+
+    /**
+     * 获得key对应的字符串value
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public String get(final String key) {
+        RedisNearCache cache = nearCache;
+        if (cache != null) {
+            return cache.get(key, () -> doGet(key));
+        }
+        return doGet(key);
+    }
+
+    private String doGet(String key) {
+        RedisReadCoalescer coalescer = readCoalescer;
+        if (coalescer != null) {
+            return coalescer.get(key);
+        }
+        return executeRead("get", key, jedis -> jedis.get(key));
+    }
+
+    @Override
+    public Boolean exists(String key) {
+        RedisReadCoalescer coalescer = readCoalescer;
+        if (coalescer != null) {
+            return coalescer.exists(key);
+        }
+        return executeRead("exists", key, jedis -> jedis.exists(key));
+    }
+
+    @Override
+    public Long persist(String key) {
+        return executeWrite("persist", key, jedis -> jedis.persist(key));
+    }
+
+    @Override
+    public String type(String key) {
+        return executeRead("type", key, jedis -> jedis.type(key));
+    }
+
+    @Override
+    public Long expire(String key, int seconds) {
+        return executeWrite("expire", key, jedis -> jedis.expire(key, seconds));
+    }
+
+    @Override
+    public Long pexpire(String key, long milliseconds) {
+        return executeWrite("pexpire", key, jedis -> jedis.pexpire(key, milliseconds));
+    }
+
+    @Override
+    public Long expireAt(String key, long unixTime) {
+        return executeWrite("expireAt", key, jedis -> jedis.expireAt(key, unixTime));
+    }
+
+    @Override
+    public Long pexpireAt(String key, long millisecondsTimestamp) {
+        return executeWrite("pexpireAt", key, jedis -> jedis.pexpireAt(key, millisecondsTimestamp));
+    }
+
+    @Override
+    public Long ttl(String key) {
+        return executeRead("ttl", key, jedis -> jedis.ttl(key));
+    }
+
+    @Override
+    public Long pttl(String key) {
+        return executeRead("pttl", key, jedis -> jedis.pttl(key));
+    }
+
+    @Override
+    public Boolean setbit(String key, long offset, boolean value) {
+        return executeWrite("setbit", key, jedis -> jedis.setbit(key, offset, value));
+    }
+
+    @Override
+    public Boolean setbit(String key, long offset, String value) {
+        return executeWrite("setbit", key, jedis -> jedis.setbit(key, offset, value));
+    }
+
+    @Override
+    public Boolean getbit(String key, long offset) {
+        return executeRead("getbit", key, jedis -> jedis.getbit(key, offset));
+    }
+
     @Override
     public Long setrange(String key, long offset, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.setrange(key, offset, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("setrange", key, value, jedis -> jedis.setrange(key, offset, value));
     }
 
     @Override
     public String getrange(String key, long startOffset, long endOffset) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.getrange(key, startOffset, endOffset);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("getrange", key, jedis -> jedis.getrange(key, startOffset, endOffset));
     }
 
     @Override
     public String getSet(String key, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.getSet(key, value);
-        } finally {
-            jedis.close();
-        }
+        String old = executeWrite("getSet", key, value, jedis -> jedis.getSet(key, value));
+        payloadMetrics.recordRead("getSet", key, old);
+        return old;
     }
 
     @Override
     public Long setnx(String key, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.setnx(key, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("setnx", key, value, jedis -> jedis.setnx(key, value));
     }
 
     @Override
     public String setex(String key, int seconds, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.setex(key, seconds, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("setex", key, value, jedis -> jedis.setex(key, seconds, value));
     }
 
     @Override
     public String psetex(String key, long milliseconds, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.psetex(key, milliseconds, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("psetex", key, value, jedis -> jedis.psetex(key, milliseconds, value));
     }
 
     @Override
     public Long decrBy(String key, long integer) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.decrBy(key, integer);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("decrBy", key, jedis -> jedis.decrBy(key, integer));
     }
 
     @Override
     public Long decr(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.decr(key);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("decr", key, jedis -> jedis.decr(key));
     }
 
     @Override
     public Long incrBy(String key, long integer) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.incrBy(key, integer);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("incrBy", key, jedis -> jedis.incrBy(key, integer));
     }
 
     @Override
     public Double incrByFloat(String key, double value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.incrByFloat(key, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("incrByFloat", key, jedis -> jedis.incrByFloat(key, value));
     }
 
     @Override
     public Long incr(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.incr(key);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("incr", key, jedis -> jedis.incr(key));
     }
 
     @Override
     public Long append(String key, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.append(key, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("append", key, value, jedis -> jedis.append(key, value));
     }
 
     @Override
     public String substr(String key, int start, int end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.substr(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("substr", key, jedis -> jedis.substr(key, start, end));
     }
 
     @Override
     public Long hset(String key, String field, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hset(key, field, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("hset", key, value, jedis -> jedis.hset(key, field, value));
     }
 
     @Override
-    public String hget(String key, String field) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hget(key, field);
-        } finally {
-            jedis.close();
+    public String hget(final String key, final String field) {
+        RedisNearCache cache = nearCache;
+        if (cache != null) {
+            return cache.hget(key, field, () -> doHget(key, field));
         }
+        return doHget(key, field);
+    }
+
+    private String doHget(String key, String field) {
+        RedisReadCoalescer coalescer = readCoalescer;
+        if (coalescer != null) {
+            return coalescer.hget(key, field);
+        }
+        return executeRead("hget", key, jedis -> jedis.hget(key, field));
     }
 
     @Override
     public Long hsetnx(String key, String field, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hsetnx(key, field, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("hsetnx", key, value, jedis -> jedis.hsetnx(key, field, value));
     }
 
     @Override
     public String hmset(String key, Map<String, String> hash) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hmset(key, hash);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("hmset", key, hash, jedis -> jedis.hmset(key, hash));
     }
 
     @Override
     public List<String> hmget(String key, String... fields) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hmget(key, fields);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("hmget", key, jedis -> jedis.hmget(key, fields));
     }
 
     @Override
     public Long hincrBy(String key, String field, long value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hincrBy(key, field, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("hincrBy", key, jedis -> jedis.hincrBy(key, field, value));
     }
 
     @Override
     public Double hincrByFloat(String key, String field, double value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hincrByFloat(key, field, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("hincrByFloat", key, jedis -> jedis.hincrByFloat(key, field, value));
     }
 
     @Override
     public Boolean hexists(String key, String field) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hexists(key, field);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("hexists", key, jedis -> jedis.hexists(key, field));
     }
 
     @Override
     public Long hdel(String key, String... field) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hdel(key, field);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("hdel", key, jedis -> jedis.hdel(key, field));
     }
 
     @Override
     public Long hlen(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hlen(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("hlen", key, jedis -> jedis.hlen(key));
     }
 
     @Override
     public Set<String> hkeys(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hkeys(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("hkeys", key, jedis -> jedis.hkeys(key));
     }
 
     @Override
     public List<String> hvals(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hvals(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("hvals", key, jedis -> jedis.hvals(key));
     }
 
     @Override
-    public Map<String, String> hgetAll(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hgetAll(key);
-        } finally {
-            jedis.close();
+    public Map<String, String> hgetAll(final String key) {
+        RedisNearCache cache = nearCache;
+        if (cache != null) {
+            return cache.hgetAll(key, () -> doHgetAll(key));
         }
+        return doHgetAll(key);
+    }
+
+    private Map<String, String> doHgetAll(String key) {
+        return executeRead("hgetAll", key, jedis -> jedis.hgetAll(key));
     }
 
     @Override
     public Long rpush(String key, String... string) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.rpush(key, string);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("rpush", key, string, jedis -> jedis.rpush(key, string));
     }
 
     @Override
     public Long lpush(String key, String... string) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lpush(key, string);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("lpush", key, string, jedis -> jedis.lpush(key, string));
     }
 
     @Override
     public Long llen(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.llen(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("llen", key, jedis -> jedis.llen(key));
     }
 
     @Override
     public List<String> lrange(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lrange(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("lrange", key, jedis -> jedis.lrange(key, start, end));
     }
 
     @Override
     public String ltrim(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.ltrim(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("ltrim", key, jedis -> jedis.ltrim(key, start, end));
     }
 
     @Override
     public String lindex(String key, long index) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lindex(key, index);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("lindex", key, jedis -> jedis.lindex(key, index));
     }
 
     @Override
     public String lset(String key, long index, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lset(key, index, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("lset", key, value, jedis -> jedis.lset(key, index, value));
     }
 
     @Override
     public Long lrem(String key, long count, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lrem(key, count, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("lrem", key, jedis -> jedis.lrem(key, count, value));
     }
 
     @Override
     public String lpop(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lpop(key);
-        } finally {
-            jedis.close();
-        }
+        return executeTake("lpop", key, jedis -> jedis.lpop(key));
     }
 
     @Override
     public String rpop(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.rpop(key);
-        } finally {
-            jedis.close();
-        }
+        return executeTake("rpop", key, jedis -> jedis.rpop(key));
     }
 
     @Override
     public Long sadd(String key, String... member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sadd(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("sadd", key, member, jedis -> jedis.sadd(key, member));
     }
 
     @Override
     public Set<String> smembers(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.smembers(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("smembers", key, jedis -> jedis.smembers(key));
     }
 
     @Override
     public Long srem(String key, String... member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.srem(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("srem", key, jedis -> jedis.srem(key, member));
     }
 
     @Override
     public String spop(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.spop(key);
-        } finally {
-            jedis.close();
-        }
+        return executeTake("spop", key, jedis -> jedis.spop(key));
     }
 
     @Override
     public Set<String> spop(String key, long count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.spop(key, count);
-        } finally {
-            jedis.close();
-        }
+        return executeTake("spop", key, jedis -> jedis.spop(key, count));
     }
 
     @Override
     public Long scard(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.scard(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("scard", key, jedis -> jedis.scard(key));
     }
 
     @Override
     public Boolean sismember(String key, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sismember(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("sismember", key, jedis -> jedis.sismember(key, member));
     }
 
     @Override
     public String srandmember(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.srandmember(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("srandmember", key, jedis -> jedis.srandmember(key));
     }
 
     @Override
     public List<String> srandmember(String key, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.srandmember(key, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("srandmember", key, jedis -> jedis.srandmember(key, count));
     }
 
     @Override
     public Long strlen(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.strlen(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("strlen", key, jedis -> jedis.strlen(key));
     }
 
     @Override
     public Long zadd(String key, double score, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zadd(key, score, member);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zadd", key, member, jedis -> jedis.zadd(key, score, member));
     }
 
     @Override
     public Long zadd(String key, double score, String member, ZAddParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zadd(key, score, member, params);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zadd", key, member,
+            jedis -> jedis.zadd(key, score, member, params));
     }
 
     @Override
     public Long zadd(String key, Map<String, Double> scoreMembers) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zadd(key, scoreMembers);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zadd", key, scoreMembers, jedis -> jedis.zadd(key, scoreMembers));
     }
 
     @Override
-    public Long zadd(String key, Map<String, Double> scoreMembers, ZAddParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zadd(key, scoreMembers, params);
-        } finally {
-            jedis.close();
-        }
+    public Long zadd(String key, Map<String, Double> scoreMembers, ZAddParams params) {
+        return executeWrite("zadd", key, scoreMembers,
+            jedis -> jedis.zadd(key, scoreMembers, params));
     }
 
     @Override
     public Set<String> zrange(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrange(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrange", key, jedis -> jedis.zrange(key, start, end));
     }
 
     @Override
     public Long zrem(String key, String... member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrem(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zrem", key, jedis -> jedis.zrem(key, member));
     }
 
     @Override
     public Double zincrby(String key, double score, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zincrby(key, score, member);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zincrby", key, jedis -> jedis.zincrby(key, score, member));
     }
 
     @Override
     public Double zincrby(String key, double score, String member, ZIncrByParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zincrby(key, score, member, params);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zincrby", key, jedis -> jedis.zincrby(key, score, member, params));
     }
 
     @Override
     public Long zrank(String key, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrank(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrank", key, jedis -> jedis.zrank(key, member));
     }
 
     @Override
     public Long zrevrank(String key, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrank(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrank", key, jedis -> jedis.zrevrank(key, member));
     }
 
     @Override
     public Set<String> zrevrange(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrange(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrange", key, jedis -> jedis.zrevrange(key, start, end));
     }
 
     @Override
     public Set<Tuple> zrangeWithScores(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeWithScores(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeWithScores", key, jedis -> jedis.zrangeWithScores(key, start, end));
     }
 
     @Override
     public Set<Tuple> zrevrangeWithScores(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeWithScores(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeWithScores", key,
+                       jedis -> jedis.zrevrangeWithScores(key, start, end));
     }
 
     @Override
     public Long zcard(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zcard(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zcard", key, jedis -> jedis.zcard(key));
     }
 
     @Override
     public Double zscore(String key, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zscore(key, member);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zscore", key, jedis -> jedis.zscore(key, member));
     }
 
     @Override
     public List<String> sort(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sort(key);
-        } finally {
-            jedis.close();
-        }
+        return execute("sort", key, jedis -> jedis.sort(key));
     }
 
     @Override
     public List<String> sort(String key, SortingParams sortingParameters) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sort(key, sortingParameters);
-        } finally {
-            jedis.close();
-        }
+        return execute("sort", key, jedis -> jedis.sort(key, sortingParameters));
     }
 
     @Override
     public Long zcount(String key, double min, double max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zcount(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zcount", key, jedis -> jedis.zcount(key, min, max));
     }
 
     @Override
     public Long zcount(String key, String min, String max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zcount(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zcount", key, jedis -> jedis.zcount(key, min, max));
     }
 
     @Override
     public Set<String> zrangeByScore(String key, double min, double max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScore(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScore", key, jedis -> jedis.zrangeByScore(key, min, max));
     }
 
     @Override
     public Set<String> zrangeByScore(String key, String min, String max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScore(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScore", key, jedis -> jedis.zrangeByScore(key, min, max));
     }
 
     @Override
     public Set<String> zrevrangeByScore(String key, double max, double min) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScore(key, max, min);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScore", key, jedis -> jedis.zrevrangeByScore(key, max, min));
     }
 
     @Override
     public Set<String> zrangeByScore(String key, double min, double max, int offset, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScore(key, min, max, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScore", key,
+                       jedis -> jedis.zrangeByScore(key, min, max, offset, count));
     }
 
     @Override
     public Set<String> zrevrangeByScore(String key, String max, String min) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScore(key, max, min);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScore", key, jedis -> jedis.zrevrangeByScore(key, max, min));
     }
 
     @Override
     public Set<String> zrangeByScore(String key, String min, String max, int offset, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScore(key, min, max, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScore", key,
+                       jedis -> jedis.zrangeByScore(key, min, max, offset, count));
     }
 
     @Override
     public Set<String> zrevrangeByScore(String key, double max, double min, int offset, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScore(key, max, min, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScore", key,
+                       jedis -> jedis.zrevrangeByScore(key, max, min, offset, count));
     }
 
     @Override
     public Set<Tuple> zrangeByScoreWithScores(String key, double min, double max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScoreWithScores(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScoreWithScores", key,
+                       jedis -> jedis.zrangeByScoreWithScores(key, min, max));
     }
 
     @Override
     public Set<Tuple> zrevrangeByScoreWithScores(String key, double max, double min) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScoreWithScores(key, max, min);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScoreWithScores", key,
+                       jedis -> jedis.zrevrangeByScoreWithScores(key, max, min));
     }
 
     @Override
     public Set<Tuple> zrangeByScoreWithScores(String key, double min, double max, int offset,
                                               int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScoreWithScores(key, min, max, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScoreWithScores", key,
+                       jedis -> jedis.zrangeByScoreWithScores(key, min, max, offset, count));
     }
 
     @Override
     public Set<String> zrevrangeByScore(String key, String max, String min, int offset, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScore(key, max, min, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScore", key,
+                       jedis -> jedis.zrevrangeByScore(key, max, min, offset, count));
     }
 
     @Override
     public Set<Tuple> zrangeByScoreWithScores(String key, String min, String max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScoreWithScores(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScoreWithScores", key,
+                       jedis -> jedis.zrangeByScoreWithScores(key, min, max));
     }
 
     @Override
     public Set<Tuple> zrevrangeByScoreWithScores(String key, String max, String min) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScoreWithScores(key, max, min);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScoreWithScores", key,
+                       jedis -> jedis.zrevrangeByScoreWithScores(key, max, min));
     }
 
     @Override
     public Set<Tuple> zrangeByScoreWithScores(String key, String min, String max, int offset,
                                               int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByScoreWithScores(key, min, max, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByScoreWithScores", key,
+                       jedis -> jedis.zrangeByScoreWithScores(key, min, max, offset, count));
     }
 
     @Override
     public Set<Tuple> zrevrangeByScoreWithScores(String key, double max, double min, int offset,
                                                  int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScoreWithScores(key, max, min, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScoreWithScores", key,
+                       jedis -> jedis.zrevrangeByScoreWithScores(key, max, min, offset, count));
     }
 
     @Override
     public Set<Tuple> zrevrangeByScoreWithScores(String key, String max, String min, int offset,
                                                  int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByScoreWithScores(key, max, min, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByScoreWithScores", key,
+                       jedis -> jedis.zrevrangeByScoreWithScores(key, max, min, offset, count));
     }
 
     @Override
     public Long zremrangeByRank(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zremrangeByRank(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zremrangeByRank", key,
+                            jedis -> jedis.zremrangeByRank(key, start, end));
     }
 
     @Override
     public Long zremrangeByScore(String key, double start, double end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zremrangeByScore(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zremrangeByScore", key,
+                            jedis -> jedis.zremrangeByScore(key, start, end));
     }
 
     @Override
     public Long zremrangeByScore(String key, String start, String end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zremrangeByScore(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zremrangeByScore", key,
+                            jedis -> jedis.zremrangeByScore(key, start, end));
     }
 
     @Override
     public Long zlexcount(String key, String min, String max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zlexcount(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zlexcount", key, jedis -> jedis.zlexcount(key, min, max));
     }
 
     @Override
     public Set<String> zrangeByLex(String key, String min, String max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByLex(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByLex", key, jedis -> jedis.zrangeByLex(key, min, max));
     }
 
     @Override
     public Set<String> zrangeByLex(String key, String min, String max, int offset, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrangeByLex(key, min, max, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrangeByLex", key,
+                       jedis -> jedis.zrangeByLex(key, min, max, offset, count));
     }
 
     @Override
     public Set<String> zrevrangeByLex(String key, String max, String min) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByLex(key, max, min);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByLex", key, jedis -> jedis.zrevrangeByLex(key, max, min));
     }
 
     @Override
     public Set<String> zrevrangeByLex(String key, String max, String min, int offset, int count) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zrevrangeByLex(key, max, min, offset, count);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("zrevrangeByLex", key,
+                       jedis -> jedis.zrevrangeByLex(key, max, min, offset, count));
     }
 
     @Override
     public Long zremrangeByLex(String key, String min, String max) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zremrangeByLex(key, min, max);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("zremrangeByLex", key, jedis -> jedis.zremrangeByLex(key, min, max));
     }
 
     @Override
     public Long linsert(String key, BinaryClient.LIST_POSITION where, String pivot, String value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.linsert(key, where, pivot, value);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("linsert", key, value, jedis -> jedis.linsert(key, where, pivot, value));
     }
 
     @Override
     public Long lpushx(String key, String... string) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.lpushx(key, string);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("lpushx", key, string, jedis -> jedis.lpushx(key, string));
     }
 
     @Override
     public Long rpushx(String key, String... string) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.rpushx(key, string);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("rpushx", key, string, jedis -> jedis.rpushx(key, string));
     }
 
     @Override
     @Deprecated
     public List<String> blpop(String arg) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.blpop(arg);
-        } finally {
-            jedis.close();
-        }
+        return executeBlocking("blpop", arg, jedis -> jedis.blpop(arg));
     }
 
     @Override
     public List<String> blpop(int timeout, String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.blpop(timeout, key);
-        } finally {
-            jedis.close();
-        }
+        return executeBlocking("blpop", key, jedis -> jedis.blpop(timeout, key));
     }
 
     @Override
     @Deprecated
     public List<String> brpop(String arg) {
-        Jedis jedis = getResource();
+        return executeBlocking("brpop", arg, jedis -> jedis.brpop(arg));
+    }
+
+    @Override
+    public List<String> brpop(int timeout, String key) {
+        return executeBlocking("brpop", key, jedis -> jedis.brpop(timeout, key));
+    }
+
+    /**
+     * 从source右边弹出一个元素并放到destination左边,集群模式下两个key必须在同一个slot
+     *
+     * @param source
+     * @param destination
+     * @return 移动的元素,source为空时返回null
+     */
+    public String rpoplpush(String source, String destination) {
         try {
-            return jedis.brpop(arg);
+            return executeTake("rpoplpush", source, jedis -> jedis.rpoplpush(source, destination));
         } finally {
-            jedis.close();
+            invalidateNearCache(destination);
         }
     }
 
-    @Override
-    public List<String> brpop(int timeout, String key) {
-        Jedis jedis = getResource();
+    /**
+     * rpoplpush的阻塞版本,在阻塞命令专用连接池上执行
+     *
+     * @param source
+     * @param destination
+     * @param timeout 阻塞秒数,0表示一直等
+     * @return 移动的元素,超时返回null
+     */
+    public String brpoplpush(String source, String destination, int timeout) {
         try {
-            return jedis.brpop(timeout, key);
+            return executeBlocking("brpoplpush", source,
+                                   jedis -> jedis.brpoplpush(source, destination, timeout));
         } finally {
-            jedis.close();
+            invalidateNearCache(destination);
         }
     }
 
     @Override
     public Long del(String key) {
-        Jedis jedis = getResource();
+        return executeWrite("del", key, jedis -> jedis.del(key));
+    }
+
+    /**
+     * 批量删除
+     *
+     * @param keys
+     * @return
+     */
+    public Long del(String... keys) {
         try {
-            return jedis.del(key);
+            if (cluster == null) {
+                return execute("del", null, jedis -> jedis.del(keys));
+            }
+            long deleted = 0;
+            for (KeyGroup<Long> group : executeBySlot("del", keys, Pipeline::del)) {
+                deleted += group.response.get();
+            }
+            return deleted;
         } finally {
-            jedis.close();
+            for (String key : keys) {
+                invalidateNearCache(key);
+            }
         }
     }
 
     /**
-     * 批量删除
+     * 批量读取,返回的列表和keys一一对应,不存在的key对应null.集群模式下按slot拆分后并行执行
      *
      * @param keys
      * @return
      */
-    public Long del(String... keys) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.del(keys);
-        } finally {
-            jedis.close();
+    public List<String> mget(final String... keys) {
+        if (cluster != null) {
+            return executeListBySlot("mget", keys, Pipeline::mget);
         }
+        return executeRead("mget", null, jedis -> jedis.mget(keys));
     }
 
     @Override
     public String echo(String string) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.echo(string);
-        } finally {
-            jedis.close();
-        }
+        return execute("echo", null, jedis -> jedis.echo(string));
     }
 
     @Override
     public Long move(String key, int dbIndex) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.move(key, dbIndex);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("move", key, jedis -> jedis.move(key, dbIndex));
     }
 
     @Override
     public Long bitcount(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.bitcount(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("bitcount", key, jedis -> jedis.bitcount(key));
     }
 
     @Override
     public Long bitcount(String key, long start, long end) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.bitcount(key, start, end);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("bitcount", key, jedis -> jedis.bitcount(key, start, end));
     }
 
     @Override
     public Long bitpos(String key, boolean value) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.bitpos(key, value);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("bitpos", key, jedis -> jedis.bitpos(key, value));
     }
 
     @Override
     public Long bitpos(String key, boolean value, BitPosParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.bitpos(key, value, params);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("bitpos", key, jedis -> jedis.bitpos(key, value, params));
     }
 
     public ScanResult<String> scan(String cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.scan(cursor);
-        } finally {
-            jedis.close();
-        }
+        return scan(cursor, new ScanParams());
     }
 
+    /**
+     * 集群模式下按地址顺序依次扫描每个master,游标格式为"节点地址:节点游标",扫描结束时仍然返回"0".
+     * 游标里记的是地址而不是序号,扫描期间拓扑刷新也能接着扫;游标所在节点已经不是master时从下一个节点的开头继续
+     */
     public ScanResult<String> scan(String cursor, ScanParams scanParams) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.scan(cursor, scanParams);
-        } finally {
-            jedis.close();
+        if (cluster != null) {
+            return clusterScan(cursor, scanParams);
+        }
+        return execute("scan", null, jedis -> jedis.scan(cursor, scanParams));
+    }
+
+    private ScanResult<String> clusterScan(String cursor, ScanParams scanParams) {
+        String node = null;
+        String nodeCursor = cursor;
+        JedisPool pool = null;
+        int sep = cursor.lastIndexOf(':');
+        if (sep > 0) {
+            node = cursor.substring(0, sep);
+            nodeCursor = cursor.substring(sep + 1);
+            pool = cluster.getMasterPool(node);
+            if (pool == null) {
+                nodeCursor = ScanParams.SCAN_POINTER_START;
+            }
+        }
+        if (pool == null) {
+            Map.Entry<String, JedisPool> first = cluster.nextMaster(node);
+            if (first == null) {
+                return new ScanResult<>(ScanParams.SCAN_POINTER_START, Collections.<String> emptyList());
+            }
+            node = first.getKey();
+            pool = first.getValue();
+        }
+        final String c = nodeCursor;
+        ScanResult<String> result = execute("scan", null, pool, jedis -> jedis.scan(c, scanParams));
+        String next = result.getStringCursor();
+        if (!ScanParams.SCAN_POINTER_START.equals(next)) {
+            next = node + ":" + next;
+        } else {
+            Map.Entry<String, JedisPool> following = cluster.nextMaster(node);
+            if (following != null) {
+                next = following.getKey() + ":" + ScanParams.SCAN_POINTER_START;
+            }
         }
+        return new ScanResult<>(next, result.getResult());
     }
 
     @Override
     @Deprecated
     public ScanResult<Map.Entry<String, String>> hscan(String key, int cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hscan(key, cursor);
-        } finally {
-            jedis.close();
-        }
+        return execute("hscan", key, jedis -> jedis.hscan(key, cursor));
     }
 
     @Override
     @Deprecated
     public ScanResult<String> sscan(String key, int cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sscan(key, cursor);
-        } finally {
-            jedis.close();
-        }
+        return execute("sscan", key, jedis -> jedis.sscan(key, cursor));
     }
 
     @Override
     @Deprecated
     public ScanResult<Tuple> zscan(String key, int cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zscan(key, cursor);
-        } finally {
-            jedis.close();
-        }
+        return execute("zscan", key, jedis -> jedis.zscan(key, cursor));
     }
 
     @Override
     public ScanResult<Map.Entry<String, String>> hscan(String key, String cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hscan(key, cursor);
-        } finally {
-            jedis.close();
-        }
+        return execute("hscan", key, jedis -> jedis.hscan(key, cursor));
     }
 
     @Override
     public ScanResult<Map.Entry<String, String>> hscan(String key, String cursor,
                                                        ScanParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.hscan(key, cursor, params);
-        } finally {
-            jedis.close();
-        }
+        return execute("hscan", key, jedis -> jedis.hscan(key, cursor, params));
     }
 
     @Override
     public ScanResult<String> sscan(String key, String cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sscan(key, cursor);
-        } finally {
-            jedis.close();
-        }
+        return execute("sscan", key, jedis -> jedis.sscan(key, cursor));
     }
 
     @Override
     public ScanResult<String> sscan(String key, String cursor, ScanParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.sscan(key, cursor, params);
-        } finally {
-            jedis.close();
-        }
+        return execute("sscan", key, jedis -> jedis.sscan(key, cursor, params));
     }
 
     @Override
     public ScanResult<Tuple> zscan(String key, String cursor) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zscan(key, cursor);
-        } finally {
-            jedis.close();
-        }
+        return execute("zscan", key, jedis -> jedis.zscan(key, cursor));
     }
 
     @Override
     public ScanResult<Tuple> zscan(String key, String cursor, ScanParams params) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.zscan(key, cursor, params);
-        } finally {
-            jedis.close();
-        }
+        return execute("zscan", key, jedis -> jedis.zscan(key, cursor, params));
+    }
+
+    /**
+     * 惰性遍历整个库中匹配的key,每次只取一页,用完当前页才发出下一次scan. <br/>
+     * 用法:
+     * <pre>
+     * try (Stream&lt;String&gt; keys = client.scanStream(new ScanParams().match("goods*").count(500))) {
+     *     keys.limit(10000).forEach(...);
+     * }
+     * </pre>
+     *
+     * @param params match/count参数,可以为null
+     * @return 顺序stream,提前结束后不会再发出命令
+     */
+    public Stream<String> scanStream(ScanParams params) {
+        return scanIterator(params, 0).stream();
+    }
+
+    /**
+     * 同{@link #scanStream(ScanParams)},可以限制每秒最多取回的key数量
+     *
+     * @param params match/count参数,可以为null
+     * @param maxKeysPerSecond 每秒最多取回的key数,小于等于0表示不限速
+     * @return
+     */
+    public RedisScanIterator<String> scanIterator(ScanParams params, double maxKeysPerSecond) {
+        final ScanParams p = params == null ? new ScanParams() : params;
+        return new RedisScanIterator<>(cursor -> scan(cursor, p), maxKeysPerSecond);
+    }
+
+    /**
+     * 惰性遍历hash的所有field
+     *
+     * @param key
+     * @param params match/count参数,可以为null
+     * @return
+     */
+    public Stream<Map.Entry<String, String>> hscanStream(String key, ScanParams params) {
+        return hscanIterator(key, params, 0).stream();
+    }
+
+    public RedisScanIterator<Map.Entry<String, String>> hscanIterator(String key, ScanParams params,
+                                                                      double maxPerSecond) {
+        final ScanParams p = params == null ? new ScanParams() : params;
+        return new RedisScanIterator<>(cursor -> hscan(key, cursor, p), maxPerSecond);
+    }
+
+    /**
+     * 惰性遍历set的所有成员
+     *
+     * @param key
+     * @param params match/count参数,可以为null
+     * @return
+     */
+    public Stream<String> sscanStream(String key, ScanParams params) {
+        return sscanIterator(key, params, 0).stream();
+    }
+
+    public RedisScanIterator<String> sscanIterator(String key, ScanParams params,
+                                                   double maxPerSecond) {
+        final ScanParams p = params == null ? new ScanParams() : params;
+        return new RedisScanIterator<>(cursor -> sscan(key, cursor, p), maxPerSecond);
+    }
+
+    /**
+     * 惰性遍历有序集合的所有成员和分数
+     *
+     * @param key
+     * @param params match/count参数,可以为null
+     * @return
+     */
+    public Stream<Tuple> zscanStream(String key, ScanParams params) {
+        return zscanIterator(key, params, 0).stream();
+    }
+
+    public RedisScanIterator<Tuple> zscanIterator(String key, ScanParams params,
+                                                  double maxPerSecond) {
+        final ScanParams p = params == null ? new ScanParams() : params;
+        return new RedisScanIterator<>(cursor -> zscan(key, cursor, p), maxPerSecond);
     }
 
     @Override
     public Long pfadd(String key, String... elements) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.pfadd(key, elements);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("pfadd", key, elements, jedis -> jedis.pfadd(key, elements));
     }
 
     @Override
     public long pfcount(String key) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.pfcount(key);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("pfcount", key, jedis -> jedis.pfcount(key));
     }
 
     @Override
     public Long geoadd(String key, double longitude, double latitude, String member) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.geoadd(key, longitude, latitude, member);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("geoadd", key, jedis -> jedis.geoadd(key, longitude, latitude, member));
     }
 
     @Override
     public Long geoadd(String key, Map<String, GeoCoordinate> memberCoordinateMap) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.geoadd(key, memberCoordinateMap);
-        } finally {
-            jedis.close();
-        }
+        return executeWrite("geoadd", key, jedis -> jedis.geoadd(key, memberCoordinateMap));
     }
 
     @Override
     public Double geodist(String key, String member1, String member2) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.geodist(key, member1, member2);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("geodist", key, jedis -> jedis.geodist(key, member1, member2));
     }
 
     @Override
     public Double geodist(String key, String member1, String member2, GeoUnit unit) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.geodist(key, member1, member2, unit);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("geodist", key, jedis -> jedis.geodist(key, member1, member2, unit));
     }
 
     @Override
     public List<String> geohash(String key, String... members) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.geohash(key, members);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("geohash", key, jedis -> jedis.geohash(key, members));
     }
 
     @Override
     public List<GeoCoordinate> geopos(String key, String... members) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.geopos(key, members);
-        } finally {
-            jedis.close();
-        }
+        return executeRead("geopos", key, jedis -> jedis.geopos(key, members));
     }
 
     @Override
     public List<GeoRadiusResponse> georadius(String key, double longitude, double latitude,
                                              double radius, GeoUnit unit) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.georadius(key, longitude, latitude, radius, unit);
-        } finally {
-            jedis.close();
-        }
+        return execute("georadius", key,
+                       jedis -> jedis.georadius(key, longitude, latitude, radius, unit));
     }
 
     @Override
     public List<GeoRadiusResponse> georadius(String key, double longitude, double latitude,
                                              double radius, GeoUnit unit, GeoRadiusParam param) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.georadius(key, longitude, latitude, radius, unit, param);
-        } finally {
-            jedis.close();
-        }
+        return execute("georadius", key,
+                       jedis -> jedis.georadius(key, longitude, latitude, radius, unit, param));
     }
 
     @Override
     public List<GeoRadiusResponse> georadiusByMember(String key, String member, double radius,
                                                      GeoUnit unit) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.georadiusByMember(key, member, radius, unit);
-        } finally {
-            jedis.close();
-        }
+        return execute("georadiusByMember", key,
+                       jedis -> jedis.georadiusByMember(key, member, radius, unit));
     }
 
     @Override
     public List<GeoRadiusResponse> georadiusByMember(String key, String member, double radius,
                                                      GeoUnit unit, GeoRadiusParam param) {
-        Jedis jedis = getResource();
+        return execute("georadiusByMember", key,
+                       jedis -> jedis.georadiusByMember(key, member, radius, unit, param));
+    }
+
+    /**
+     * 执行lua脚本,按第一个key路由;集群模式下所有key必须在同一个slot(可以用{hashtag}).
+     * 脚本可能修改任意key,执行后清掉所有key的本地缓存
+     *
+     * @param script lua脚本
+     * @param keys KEYS参数
+     * @param args ARGV参数
+     * @return 脚本返回值,整数为Long,字符串为String,数组为List
+     */
+    public Object eval(String script, List<String> keys, List<String> args) {
+        String key = keys.isEmpty() ? null : keys.get(0);
         try {
-            return jedis.georadiusByMember(key, member, radius, unit, param);
+            return execute("eval", key, jedis -> jedis.eval(script, keys, args));
         } finally {
-            jedis.close();
+            invalidateNearCache(keys);
+        }
+    }
+
+    /**
+     * 按sha1执行已经加载过的lua脚本,脚本不存在时抛出NOSCRIPT错误
+     *
+     * @param sha1 脚本的sha1
+     * @param keys KEYS参数
+     * @param args ARGV参数
+     * @return 脚本返回值
+     */
+    public Object evalsha(String sha1, List<String> keys, List<String> args) {
+        String key = keys.isEmpty() ? null : keys.get(0);
+        try {
+            return execute("evalsha", key, jedis -> jedis.evalsha(sha1, keys, args));
+        } finally {
+            invalidateNearCache(keys);
+        }
+    }
+
+    /**
+     * 执行注册过的lua脚本,平时只发EVALSHA,节点上没有该脚本时自动加载后重试.按第一个key路由,
+     * 集群模式下所有key必须在同一个slot
+     *
+     * @param script 脚本,见{@link #registerScript(String, String)}
+     * @param keys KEYS参数
+     * @param args ARGV参数
+     * @return 脚本返回值
+     */
+    public Object eval(RedisScript script, List<String> keys, List<String> args) {
+        String key = keys.isEmpty() ? null : keys.get(0);
+        try {
+            return execute("evalsha", key, jedis -> scripts.eval(jedis, script, keys, args));
+        } finally {
+            invalidateNearCache(keys);
+        }
+    }
+
+    /**
+     * 注册lua脚本,sha1在本地计算,不访问redis
+     *
+     * @param name 脚本名
+     * @param source lua源码
+     * @return 脚本,交给{@link #eval(RedisScript, List, List)}执行
+     */
+    public RedisScript registerScript(String name, String source) {
+        return scripts.register(name, source);
+    }
+
+    /**
+     * @return lua脚本注册表
+     */
+    public RedisScriptRegistry getScriptRegistry() {
+        return scripts;
+    }
+
+    private void invalidateNearCache(List<String> keys) {
+        if (nearCache != null) {
+            for (String key : keys) {
+                invalidateNearCache(key);
+            }
         }
     }
 
@@ -1674,12 +2722,7 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
      * @return
      */
     public Long publish(String channel, String message) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.publish(channel, message);
-        } finally {
-            jedis.close();
-        }
+        return execute("publish", channel, jedis -> jedis.publish(channel, message));
     }
 
     /**
@@ -1690,22 +2733,18 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
      * @return
      */
     public Long publish(byte[] channel, byte[] message) {
-        Jedis jedis = getResource();
-        try {
-            return jedis.publish(channel, message);
-        } finally {
-            jedis.close();
-        }
+        return execute("publish", null, jedis -> jedis.publish(channel, message));
     }
 
     /**
-     * 订阅消息
+     * 订阅消息,阻塞直到取消订阅;使用一个不属于连接池的独立连接,断开后不会重连.
+     * 需要自动重连和多路复用时使用{@link #getPubSubManager()}
      * 
      * @param jedisPubSub
      * @param channels
      */
     public void subscribe(BinaryJedisPubSub jedisPubSub, byte[]... channels) {
-        Jedis jedis = getResource();
+        Jedis jedis = newSubscriberConnection();
         try {
             jedis.subscribe(jedisPubSub, channels);
         } finally {
@@ -1714,13 +2753,14 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
     }
 
     /**
-     * 订阅消息
+     * 订阅消息,阻塞直到取消订阅;使用一个不属于连接池的独立连接,断开后不会重连.
+     * 需要自动重连和多路复用时使用{@link #getPubSubManager()}
      * 
      * @param jedisPubSub
      * @param channels
      */
     public void subscribe(JedisPubSub jedisPubSub, String... channels) {
-        Jedis jedis = getResource();
+        Jedis jedis = newSubscriberConnection();
         try {
             jedis.subscribe(jedisPubSub, channels);
         } finally {
@@ -1729,13 +2769,14 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
     }
 
     /**
-     * 订阅消息
+     * 订阅消息,阻塞直到取消订阅;使用一个不属于连接池的独立连接,断开后不会重连.
+     * 需要自动重连和多路复用时使用{@link #getPubSubManager()}
      * 
      * @param jedisPubSub
      * @param patterns
      */
     public void psubscribe(BinaryJedisPubSub jedisPubSub, byte[]... patterns) {
-        Jedis jedis = getResource();
+        Jedis jedis = newSubscriberConnection();
         try {
             jedis.psubscribe(jedisPubSub, patterns);
         } finally {
@@ -1744,13 +2785,14 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
     }
 
     /**
-     * 订阅消息
+     * 订阅消息,阻塞直到取消订阅;使用一个不属于连接池的独立连接,断开后不会重连.
+     * 需要自动重连和多路复用时使用{@link #getPubSubManager()}
      * 
      * @param jedisPubSub
      * @param patterns
      */
     public void psubscribe(JedisPubSub jedisPubSub, String... patterns) {
-        Jedis jedis = getResource();
+        Jedis jedis = newSubscriberConnection();
         try {
             jedis.psubscribe(jedisPubSub, patterns);
         } finally {
@@ -1854,4 +2896,47 @@ public class RedisClient implements JedisCommands, InitializingBean, DisposableB
         // client.close();
     }
 
+    /**
+     * 集群模式下同一个slot的一组key,以及发往的节点和该组的回复
+     */
+    private static class KeyGroup<R> {
+
+        private final int[]    indexes;
+        private final String[] keys;
+        private Pool<Jedis>    pool;
+        private boolean        asking;
+        private Response<R>    response;
+
+        KeyGroup(String[] allKeys, List<Integer> indexes) {
+            this.indexes = new int[indexes.size()];
+            this.keys = new String[indexes.size()];
+            for (int i = 0; i < this.indexes.length; i++) {
+                this.indexes[i] = indexes.get(i);
+                this.keys[i] = allKeys[this.indexes[i]];
+            }
+        }
+
+        /**
+         * @return 该组收到的MOVED/ASK,没有重定向时返回null;其他错误留给调用方读取结果时抛出
+         */
+        JedisRedirectionException redirection() {
+            try {
+                response.get();
+                return null;
+            } catch (JedisRedirectionException e) {
+                return e;
+            } catch (JedisDataException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 在一个借来的连接上执行的操作
+     */
+    private interface JedisAction<T> {
+
+        T doInRedis(Jedis jedis);
+    }
+
 }
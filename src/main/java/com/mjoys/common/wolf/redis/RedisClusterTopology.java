@@ -0,0 +1,359 @@
+package com.mjoys.common.wolf.redis;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisClusterException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.Pool;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 19:40.<br/>
+ * 功能描述 : RedisCluster的slot拓扑缓存,维护slot到master节点连接池的映射.<br/>
+ * <br/>
+ * 启动时通过CLUSTER SLOTS从任意一个可用节点加载拓扑;收到MOVED时先把该slot指向新节点,再刷新整个拓扑,
+ * 两次刷新之间至少间隔{@link #MIN_REFRESH_INTERVAL_MILLIS}毫秒,避免迁移期间大量MOVED引起刷新风暴.
+ * 下线的节点在刷新后关闭其连接池.<br/>
+ * 还负责多节点命令的并行分发,见{@link #fanOut(List)}.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisClusterTopology {
+
+    private static final Logger                    logger                      = LoggerFactory.getLogger(RedisClusterTopology.class);
+
+    public static final int                        SLOT_COUNT                  = 16384;
+
+    static final long                              MIN_REFRESH_INTERVAL_MILLIS = 100;
+
+    private final Set<HostAndPort>                 seeds;
+    private final JedisPoolConfig                  config;
+    private final int                              timeout;
+    private final String                           password;
+
+    private final ConcurrentMap<String, JedisPool> nodes                       = new ConcurrentHashMap<>();
+    private volatile JedisPool[]                   slots                       = new JedisPool[SLOT_COUNT];
+    private volatile List<JedisPool>               masters                     = Collections.emptyList();
+    private volatile TreeMap<String, JedisPool>    masterByNode                = new TreeMap<>();
+    private volatile Set<HostAndPort>              masterNodes                 = Collections.emptySet();
+    private volatile long                          lastRefreshMillis;
+
+    private final RedisAsyncExecutor               fanOutExecutor;
+
+    private final LongAdder                        refreshCount                = new LongAdder();
+    private final LongAdder                        movedCount                  = new LongAdder();
+    private final LongAdder                        askCount                    = new LongAdder();
+
+    /**
+     * @param seeds 初始节点地址,只要有一个可用即可
+     * @param config 每个节点的连接池配置
+     * @param timeout 连接和读超时,毫秒
+     * @param password 密码,无密码传null
+     */
+    RedisClusterTopology(Set<HostAndPort> seeds, JedisPoolConfig config, int timeout,
+                         String password) {
+        this.seeds = seeds;
+        this.config = config;
+        this.timeout = timeout;
+        this.password = password;
+        this.fanOutExecutor = new RedisAsyncExecutor("redis-cluster-fanout", config.getMaxTotal(),
+                                                     config.getMaxTotal() * 50);
+        refresh(true);
+        if (masters.isEmpty()) {
+            throw new JedisClusterException("can not load cluster slots from " + seeds);
+        }
+    }
+
+    /**
+     * @param key
+     * @return key所在slot,支持{hashtag}
+     */
+    static int slot(String key) {
+        return JedisClusterCRC16.getSlot(key);
+    }
+
+    JedisPool getPool(String key) {
+        return getPoolBySlot(slot(key));
+    }
+
+    JedisPool getPoolBySlot(int slot) {
+        JedisPool pool = slots[slot];
+        if (pool == null) {
+            refresh(false);
+            pool = slots[slot];
+            if (pool == null) {
+                throw new JedisClusterException("no node serves slot " + slot);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @param node
+     * @return 该节点的连接池,不存在时创建(ASK重定向的目标可能还不在拓扑里)
+     */
+    JedisPool getPoolByNode(HostAndPort node) {
+        return nodes.computeIfAbsent(node.toString(), k -> newPool(node));
+    }
+
+    /**
+     * @return 该连接池对应的节点地址,不属于本集群时返回null
+     */
+    String getNodeName(Pool<Jedis> pool) {
+        for (Map.Entry<String, JedisPool> e : nodes.entrySet()) {
+            if (e.getValue() == pool) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 随机一个master的连接池,用于和key无关的命令
+     */
+    JedisPool getAnyPool() {
+        List<JedisPool> list = masters;
+        return list.get(ThreadLocalRandom.current().nextInt(list.size()));
+    }
+
+    /**
+     * @return 所有master的连接池,按节点地址排序,拓扑不变时顺序稳定
+     */
+    List<JedisPool> getMasterPools() {
+        return masters;
+    }
+
+    /**
+     * @param node 节点地址,host:port
+     * @return 该节点的连接池,不是master时返回null
+     */
+    JedisPool getMasterPool(String node) {
+        return masterByNode.get(node);
+    }
+
+    /**
+     * 按地址顺序遍历master,拓扑刷新后仍然能从上次的位置接着走,不会因为列表下标变化而跳过或重复节点
+     *
+     * @param node 当前节点地址,为null时返回第一个master
+     * @return 地址排在node之后的第一个master,没有时返回null
+     */
+    Map.Entry<String, JedisPool> nextMaster(String node) {
+        TreeMap<String, JedisPool> map = masterByNode;
+        return node == null ? map.firstEntry() : map.higherEntry(node);
+    }
+
+    /**
+     * 收到MOVED后调用:先把该slot指向新节点,再尝试刷新整个拓扑
+     */
+    void onMoved(int slot, HostAndPort node) {
+        movedCount.increment();
+        slots[slot] = getPoolByNode(node);
+        refresh(false);
+    }
+
+    void onAsk() {
+        askCount.increment();
+    }
+
+    /**
+     * 重新加载拓扑
+     *
+     * @param force 为false时距离上次刷新不足MIN_REFRESH_INTERVAL_MILLIS则跳过
+     * @return 是否成功刷新
+     */
+    synchronized boolean refresh(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastRefreshMillis < MIN_REFRESH_INTERVAL_MILLIS) {
+            return false;
+        }
+        lastRefreshMillis = now;
+        Set<HostAndPort> candidates = new LinkedHashSet<>();
+        candidates.addAll(masterNodes);
+        candidates.addAll(seeds);
+        for (HostAndPort candidate : candidates) {
+            try {
+                apply(loadSlots(candidate));
+                refreshCount.increment();
+                return true;
+            } catch (JedisException e) {
+                logger.warn("load cluster slots from {} failed", candidate, e);
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<int[], HostAndPort> loadSlots(HostAndPort from) {
+        Jedis jedis = new Jedis(from.getHost(), from.getPort(), timeout);
+        try {
+            if (StringUtils.isNotEmpty(password)) {
+                jedis.auth(password);
+            }
+            Map<int[], HostAndPort> ranges = new IdentityHashMap<>();
+            for (Object o : jedis.clusterSlots()) {
+                List<Object> info = (List<Object>) o;
+                List<Object> master = (List<Object>) info.get(2);
+                String host = SafeEncoder.encode((byte[]) master.get(0));
+                if (host.isEmpty()) {
+                    // 节点没有配置对外地址时返回空串,表示就是当前连接的节点
+                    host = from.getHost();
+                }
+                int port = ((Long) master.get(1)).intValue();
+                int start = ((Long) info.get(0)).intValue();
+                int end = ((Long) info.get(1)).intValue();
+                ranges.put(new int[] { start, end }, new HostAndPort(host, port));
+            }
+            return ranges;
+        } finally {
+            jedis.close();
+        }
+    }
+
+    private void apply(Map<int[], HostAndPort> ranges) {
+        JedisPool[] newSlots = new JedisPool[SLOT_COUNT];
+        TreeMap<String, JedisPool> newMasters = new TreeMap<>();
+        Set<HostAndPort> newMasterNodes = new LinkedHashSet<>();
+        for (Map.Entry<int[], HostAndPort> e : ranges.entrySet()) {
+            JedisPool pool = getPoolByNode(e.getValue());
+            newMasters.put(e.getValue().toString(), pool);
+            newMasterNodes.add(e.getValue());
+            for (int slot = e.getKey()[0]; slot <= e.getKey()[1]; slot++) {
+                newSlots[slot] = pool;
+            }
+        }
+        slots = newSlots;
+        masters = Collections.unmodifiableList(new ArrayList<>(newMasters.values()));
+        masterByNode = newMasters;
+        masterNodes = newMasterNodes;
+        for (String node : nodes.keySet()) {
+            if (!newMasters.containsKey(node)) {
+                JedisPool removed = nodes.remove(node);
+                if (removed != null) {
+                    logger.info("redis cluster node {} is no longer a master, close its pool", node);
+                    removed.close();
+                }
+            }
+        }
+    }
+
+    private JedisPool newPool(HostAndPort node) {
+        return new JedisPool(config, node.getHost(), node.getPort(), timeout, password);
+    }
+
+    /**
+     * @return 所有节点地址,按地址排序
+     */
+    public List<String> getNodes() {
+        List<String> result = new ArrayList<>(nodes.keySet());
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * 并行执行多个节点上的任务,第一个任务在调用线程执行,其余提交到分发线程池(线程池满时也在调用线程执行).
+     * 等所有任务结束后才返回或抛出第一个异常,保证不会有任务还占着连接.
+     *
+     * @param tasks
+     * @param <R>
+     * @return 和tasks一一对应的结果
+     */
+    <R> List<R> fanOut(List<Supplier<R>> tasks) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(tasks.size());
+        for (int i = 1; i < tasks.size(); i++) {
+            futures.add(fanOutExecutor.submit(tasks.get(i)));
+        }
+        List<R> results = new ArrayList<>(tasks.size());
+        RuntimeException error = null;
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                if (i == 0) {
+                    results.add(tasks.get(0).get());
+                } else {
+                    results.add(join(futures.get(i - 1), tasks.get(i)));
+                }
+            } catch (RuntimeException e) {
+                results.add(null);
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return results;
+    }
+
+    private static <R> R join(CompletableFuture<R> future, Supplier<R> task) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RejectedExecutionException) {
+                return task.get();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new JedisException(cause);
+        }
+    }
+
+    /**
+     * 关闭分发线程池和所有节点的连接池
+     */
+    void close() {
+        fanOutExecutor.shutdown();
+        for (JedisPool pool : nodes.values()) {
+            pool.close();
+        }
+        nodes.clear();
+    }
+
+    /**
+     * @return 拓扑刷新成功的次数
+     */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /**
+     * @return 收到MOVED重定向的次数
+     */
+    public long getMovedCount() {
+        return movedCount.sum();
+    }
+
+    /**
+     * @return 收到ASK重定向的次数
+     */
+    public long getAskCount() {
+        return askCount.sum();
+    }
+}
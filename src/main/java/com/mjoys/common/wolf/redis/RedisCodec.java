@@ -0,0 +1,23 @@
+package com.mjoys.common.wolf.redis;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 18:10.<br/>
+ * 功能描述 : 对象和redis中byte[]之间的编解码,配合RedisClient的类型化方法使用,读写全程不经过中间String.<br/>
+ * 常用实现见{@link RedisCodecs}.实现必须是线程安全的.<br/>
+ * 变更记录 : .<br/>
+ */
+public interface RedisCodec<T> {
+
+    /**
+     * @param value 不会为null
+     * @return 写入redis的字节
+     */
+    byte[] encode(T value);
+
+    /**
+     * @param bytes 从redis读出的字节,不会为null
+     * @return 解码后的对象,返回null时按key不存在处理
+     */
+    T decode(byte[] bytes);
+}
@@ -0,0 +1,54 @@
+package com.mjoys.common.wolf.redis;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 18:10.<br/>
+ * 功能描述 : 常用的RedisCodec.<br/>
+ * <br/>
+ * {@link #BYTES}:原样读写byte[];<br/>
+ * {@link #STRING}:UTF-8字符串,和RedisClient的String方法写入的数据兼容;<br/>
+ * {@link #bean(Class)}:紧凑的二进制bean编码,比json小而且不用经过中间String,详见{@link BeanBinaryCodec}.<br/>
+ * 变更记录 : .<br/>
+ */
+public final class RedisCodecs {
+
+    public static final RedisCodec<byte[]> BYTES  = new RedisCodec<byte[]>() {
+
+        @Override
+        public byte[] encode(byte[] value) {
+            return value;
+        }
+
+        @Override
+        public byte[] decode(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+    public static final RedisCodec<String> STRING = new RedisCodec<String>() {
+
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private RedisCodecs() {
+    }
+
+    /**
+     * @param type bean类型,需要有无参构造函数
+     * @param <T>
+     * @return 该类型的二进制编解码器,同一类型应该复用同一个实例(创建时要做反射分析)
+     */
+    public static <T> RedisCodec<T> bean(Class<T> type) {
+        return new BeanBinaryCodec<>(type);
+    }
+}
@@ -0,0 +1,243 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 16:20.<br/>
+ * 功能描述 : redis按命令统计的耗时数据,分为从连接池借连接的等待时间和命令执行时间两部分,各自一个直方图(单位微秒).<br/>
+ * <br/>
+ * 慢日志阈值和采样率可以按命令配置:<br/>
+ * 慢日志阈值针对总耗时(借连接+执行),每次调用都会检查,小于等于0表示不打印慢日志;<br/>
+ * 采样率只影响直方图,取值0~1,调用量特别大的命令可以调低以减少统计开销.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisCommandMetrics {
+
+    private static final Logger                       logger                     = LoggerFactory.getLogger(RedisCommandMetrics.class);
+
+    private final ConcurrentMap<String, CommandStats> stats                      = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long>         slowThresholds             = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Double>       sampleRates                = new ConcurrentHashMap<>();
+
+    private volatile long                             defaultSlowThresholdMillis = 50;
+    private volatile double                           defaultSampleRate          = 1.0;
+
+    /**
+     * 记录一次命令调用
+     *
+     * @param command 命令名
+     * @param key 命令操作的key,只用于慢日志,可以为null
+     * @param borrowNanos 借连接等待的时间
+     * @param executeNanos 命令执行时间,借连接失败时为0
+     * @param success 是否成功
+     */
+    public void record(String command, String key, long borrowNanos, long executeNanos,
+                       boolean success) {
+        CommandStats s = stats(command);
+        s.calls.increment();
+        if (!success) {
+            s.errors.increment();
+        }
+        long threshold = getSlowThresholdMillis(command);
+        long totalNanos = borrowNanos + executeNanos;
+        if (threshold > 0 && totalNanos > TimeUnit.MILLISECONDS.toNanos(threshold)) {
+            s.slowCalls.increment();
+            logger.warn("redis.{} cost {} ms (borrow {} ms), too long,key is:{}", command,
+                        TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                        TimeUnit.NANOSECONDS.toMillis(borrowNanos), key);
+        }
+        double rate = getSampleRate(command);
+        if (rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate) {
+            s.borrow.record(TimeUnit.NANOSECONDS.toMicros(borrowNanos));
+            s.execute.record(TimeUnit.NANOSECONDS.toMicros(executeNanos));
+        }
+    }
+
+    private CommandStats stats(String command) {
+        CommandStats s = stats.get(command);
+        if (s == null) {
+            CommandStats created = new CommandStats();
+            s = stats.putIfAbsent(command, created);
+            if (s == null) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * @param command
+     * @return 该命令的耗时快照,还没有调用过时返回null
+     */
+    public CommandSnapshot snapshot(String command) {
+        CommandStats s = stats.get(command);
+        return s == null ? null : s.snapshot(command);
+    }
+
+    /**
+     * @return 所有命令的耗时快照,按命令名排序
+     */
+    public Map<String, CommandSnapshot> snapshot() {
+        Map<String, CommandSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, CommandStats> e : stats.entrySet()) {
+            result.put(e.getKey(), e.getValue().snapshot(e.getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有统计数据,一般用于按周期上报后重新统计
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    public long getSlowThresholdMillis(String command) {
+        Long threshold = slowThresholds.get(command);
+        return threshold == null ? defaultSlowThresholdMillis : threshold;
+    }
+
+    /**
+     * 设置某个命令的慢日志阈值
+     *
+     * @param command 命令名,和RedisClient的方法名一致,例如get、hgetAll
+     * @param millis 阈值毫秒数,小于等于0表示不打印慢日志
+     */
+    public void setSlowThresholdMillis(String command, long millis) {
+        slowThresholds.put(command, millis);
+    }
+
+    public long getDefaultSlowThresholdMillis() {
+        return defaultSlowThresholdMillis;
+    }
+
+    /**
+     * 设置没有单独配置的命令使用的慢日志阈值,默认50ms
+     *
+     * @param millis 阈值毫秒数,小于等于0表示不打印慢日志
+     */
+    public void setDefaultSlowThresholdMillis(long millis) {
+        this.defaultSlowThresholdMillis = millis;
+    }
+
+    public double getSampleRate(String command) {
+        Double rate = sampleRates.get(command);
+        return rate == null ? defaultSampleRate : rate;
+    }
+
+    /**
+     * 设置某个命令的直方图采样率
+     *
+     * @param command 命令名
+     * @param rate 0~1
+     */
+    public void setSampleRate(String command, double rate) {
+        sampleRates.put(command, checkRate(rate));
+    }
+
+    public double getDefaultSampleRate() {
+        return defaultSampleRate;
+    }
+
+    /**
+     * 设置没有单独配置的命令使用的采样率,默认1(全部记录)
+     *
+     * @param rate 0~1
+     */
+    public void setDefaultSampleRate(double rate) {
+        this.defaultSampleRate = checkRate(rate);
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1");
+        }
+        return rate;
+    }
+
+    private static class CommandStats {
+
+        private final LongAdder      calls     = new LongAdder();
+        private final LongAdder      errors    = new LongAdder();
+        private final LongAdder      slowCalls = new LongAdder();
+        private final RedisHistogram borrow    = new RedisHistogram();
+        private final RedisHistogram execute   = new RedisHistogram();
+
+        CommandSnapshot snapshot(String command) {
+            return new CommandSnapshot(command, calls.sum(), errors.sum(), slowCalls.sum(),
+                                       borrow.snapshot(), execute.snapshot());
+        }
+    }
+
+    /**
+     * 单个命令的耗时快照,直方图单位为微秒
+     */
+    public static class CommandSnapshot {
+
+        private final String                  command;
+        private final long                    calls;
+        private final long                    errors;
+        private final long                    slowCalls;
+        private final RedisHistogram.Snapshot borrow;
+        private final RedisHistogram.Snapshot execute;
+
+        CommandSnapshot(String command, long calls, long errors, long slowCalls,
+                        RedisHistogram.Snapshot borrow, RedisHistogram.Snapshot execute) {
+            this.command = command;
+            this.calls = calls;
+            this.errors = errors;
+            this.slowCalls = slowCalls;
+            this.borrow = borrow;
+            this.execute = execute;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * @return 调用次数(不受采样率影响)
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getSlowCalls() {
+            return slowCalls;
+        }
+
+        /**
+         * @return 借连接等待时间的分布,微秒
+         */
+        public RedisHistogram.Snapshot getBorrow() {
+            return borrow;
+        }
+
+        /**
+         * @return 命令执行时间的分布,微秒
+         */
+        public RedisHistogram.Snapshot getExecute() {
+            return execute;
+        }
+
+        @Override
+        public String toString() {
+            return command + ": calls=" + calls + ", errors=" + errors + ", slow=" + slowCalls
+                   + ", borrow(us)[" + borrow + "], execute(us)[" + execute + "]";
+        }
+    }
+}
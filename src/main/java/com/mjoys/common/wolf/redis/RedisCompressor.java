@@ -0,0 +1,343 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:59.<br/>
+ * 功能描述 : RedisClient类型化方法(get/set/hget/hset/mget/hgetAll,参数带RedisCodec的版本)的透明值压缩,
+ * 通过{@link RedisClient#enableCompression(int)}开启.<br/>
+ * <br/>
+ * 写入时codec编码后的字节超过阈值才压缩,压缩后没有省下至少1/8的不保存压缩结果;阈值可以按key前缀(第一个':'之前的部分)单独设置.
+ * 压缩用Deflater的BEST_SPEED级别,Deflater/Inflater按线程复用.<br/>
+ * 压缩后的值以7字节的头开始:0xFF 'Z' 格式版本 原始长度(4字节).UTF-8文本不会以0xFF开头;
+ * 二进制值碰巧以同样的头开始时,原始长度和压缩后的长度对不上(或者超过maxRawBytes)、解压失败、解压后长度不符,都按未压缩处理.所以开启前写入的旧值、关闭后写入的新值都能正常读取;
+ * 读取时总是识别压缩头,关闭压缩只影响写入.<br/>
+ * 统计按前缀记录压缩前后的字节数和压缩、解压的cpu耗时,用来确认压缩是否划算.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisCompressor {
+
+    private static final Logger                      logger            = LoggerFactory.getLogger(RedisCompressor.class);
+
+    private static final byte                        MAGIC             = (byte) 0xFF;
+    private static final byte                        MAGIC2            = 'Z';
+    private static final byte                        VERSION_DEFLATE   = 1;
+    private static final int                         HEADER_LENGTH     = 7;
+    private static final int                         MAX_DEFLATE_RATIO = 1032;
+    private static final String                      OTHER_PREFIX      = "_other";
+
+    private static final ThreadLocal<Deflater>       DEFLATER          = ThreadLocal.withInitial(
+        () -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater>       INFLATER          = ThreadLocal.withInitial(Inflater::new);
+
+    private final ConcurrentMap<String, Integer>     policies          = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PrefixStats> stats             = new ConcurrentHashMap<>();
+
+    /**
+     * 默认阈值,小于等于0表示不压缩
+     */
+    private volatile int                             threshold;
+    private volatile char                            prefixDelimiter   = ':';
+    private volatile int                             maxPrefixes       = 512;
+    private volatile int                             maxRawBytes       = 64 * 1024 * 1024;
+
+    /**
+     * 写入前调用
+     *
+     * @param key 写入的key
+     * @param bytes codec编码后的字节
+     * @return 需要压缩时返回带压缩头的字节,否则原样返回
+     */
+    byte[] compress(String key, byte[] bytes) {
+        String prefix = prefixOf(key);
+        Integer policy = policies.get(prefix);
+        int limit = policy != null ? policy : threshold;
+        if (limit <= 0 || bytes.length < limit) {
+            return bytes;
+        }
+        PrefixStats s = stats(prefix);
+        long start = System.nanoTime();
+        Deflater deflater = DEFLATER.get();
+        byte[] out = new byte[HEADER_LENGTH + bytes.length - bytes.length / 8];
+        int length;
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            length = HEADER_LENGTH + deflater.deflate(out, HEADER_LENGTH, out.length - HEADER_LENGTH);
+            if (!deflater.finished()) {
+                // 压缩率不够,输出缓冲区装不下
+                length = -1;
+            }
+        } finally {
+            deflater.reset();
+        }
+        s.compressNanos.add(System.nanoTime() - start);
+        if (length < 0) {
+            s.skipped.increment();
+            return bytes;
+        }
+        s.compressed.increment();
+        s.rawBytes.add(bytes.length);
+        s.compressedBytes.add(length);
+        out[0] = MAGIC;
+        out[1] = MAGIC2;
+        out[2] = VERSION_DEFLATE;
+        out[3] = (byte) (bytes.length >>> 24);
+        out[4] = (byte) (bytes.length >>> 16);
+        out[5] = (byte) (bytes.length >>> 8);
+        out[6] = (byte) bytes.length;
+        byte[] result = new byte[length];
+        System.arraycopy(out, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * 读取后、codec解码前调用
+     *
+     * @param key 读取的key,只用于统计
+     * @param bytes 从redis读出的字节
+     * @return 带压缩头时返回解压后的字节,否则原样返回
+     */
+    byte[] decompress(String key, byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC || bytes[1] != MAGIC2
+            || bytes[2] != VERSION_DEFLATE) {
+            return bytes;
+        }
+        int rawLength = (bytes[3] & 0xFF) << 24 | (bytes[4] & 0xFF) << 16 | (bytes[5] & 0xFF) << 8
+                        | (bytes[6] & 0xFF);
+        int payload = bytes.length - HEADER_LENGTH;
+        // 原始长度来自值本身,先确认和压缩后的长度对得上,避免碰巧以压缩头开始的二进制值申请巨大的数组:
+        // 压缩时至少省下1/8,deflate的压缩比不超过MAX_DEFLATE_RATIO
+        if (rawLength <= 0 || rawLength > maxRawBytes || rawLength - rawLength / 8 < payload
+            || rawLength > (long) payload * MAX_DEFLATE_RATIO) {
+            return bytes;
+        }
+        long start = System.nanoTime();
+        Inflater inflater = INFLATER.get();
+        byte[] out = new byte[rawLength];
+        try {
+            inflater.setInput(bytes, HEADER_LENGTH, payload);
+            if (inflater.inflate(out) != rawLength || !inflater.finished()) {
+                logger.debug("redis value of {} looks compressed but length mismatch, read as raw", key);
+                return bytes;
+            }
+        } catch (DataFormatException e) {
+            logger.debug("redis value of {} looks compressed but can not inflate, read as raw", key);
+            return bytes;
+        } finally {
+            inflater.reset();
+        }
+        PrefixStats s = stats(prefixOf(key));
+        s.decompressed.increment();
+        s.decompressNanos.add(System.nanoTime() - start);
+        return out;
+    }
+
+    private String prefixOf(String key) {
+        if (key == null) {
+            return RedisPayloadMetrics.NO_PREFIX;
+        }
+        int index = key.indexOf(prefixDelimiter);
+        return index > 0 ? key.substring(0, index) : RedisPayloadMetrics.NO_PREFIX;
+    }
+
+    private PrefixStats stats(String prefix) {
+        PrefixStats s = stats.get(prefix);
+        if (s == null) {
+            if (stats.size() >= maxPrefixes) {
+                prefix = OTHER_PREFIX;
+            }
+            s = stats.computeIfAbsent(prefix, k -> new PrefixStats());
+        }
+        return s;
+    }
+
+    /**
+     * @param threshold 默认压缩阈值,编码后超过这个字节数才压缩;小于等于0表示只按前缀策略压缩
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 单独设置某个key前缀的压缩阈值,覆盖默认阈值
+     *
+     * @param prefix key前缀,即第一个分隔符之前的部分;没有分隔符的key为"*"
+     * @param threshold 压缩阈值,字节;小于等于0表示这个前缀不压缩
+     */
+    public void setPolicy(String prefix, int threshold) {
+        policies.put(prefix, threshold);
+    }
+
+    /**
+     * 删除前缀策略,恢复使用默认阈值
+     *
+     * @param prefix key前缀
+     */
+    public void removePolicy(String prefix) {
+        policies.remove(prefix);
+    }
+
+    /**
+     * @return 前缀策略,按前缀排序
+     */
+    public Map<String, Integer> getPolicies() {
+        return new TreeMap<>(policies);
+    }
+
+    /**
+     * @param prefixDelimiter key前缀的分隔符,默认':'
+     */
+    public void setPrefixDelimiter(char prefixDelimiter) {
+        this.prefixDelimiter = prefixDelimiter;
+    }
+
+    /**
+     * @param maxPrefixes 统计的前缀数量上限,超过后归入"_other",默认512
+     */
+    public void setMaxPrefixes(int maxPrefixes) {
+        this.maxPrefixes = maxPrefixes;
+    }
+
+    /**
+     * @param maxRawBytes 解压后的最大长度,压缩头中的原始长度超过时按未压缩处理,默认64M
+     */
+    public void setMaxRawBytes(int maxRawBytes) {
+        this.maxRawBytes = maxRawBytes;
+    }
+
+    /**
+     * @return 各前缀的压缩统计,按前缀排序
+     */
+    public Map<String, CompressionSnapshot> getStats() {
+        Map<String, CompressionSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, PrefixStats> e : stats.entrySet()) {
+            result.put(e.getKey(), new CompressionSnapshot(e.getKey(), e.getValue()));
+        }
+        return result;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private static class PrefixStats {
+
+        private final LongAdder compressed      = new LongAdder();
+        private final LongAdder skipped         = new LongAdder();
+        private final LongAdder decompressed    = new LongAdder();
+        private final LongAdder rawBytes        = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final LongAdder compressNanos   = new LongAdder();
+        private final LongAdder decompressNanos = new LongAdder();
+    }
+
+    /**
+     * 一个前缀的压缩统计快照
+     */
+    public static class CompressionSnapshot {
+
+        private final String prefix;
+        private final long   compressed;
+        private final long   skipped;
+        private final long   decompressed;
+        private final long   rawBytes;
+        private final long   compressedBytes;
+        private final long   compressNanos;
+        private final long   decompressNanos;
+
+        CompressionSnapshot(String prefix, PrefixStats s) {
+            this.prefix = prefix;
+            this.compressed = s.compressed.sum();
+            this.skipped = s.skipped.sum();
+            this.decompressed = s.decompressed.sum();
+            this.rawBytes = s.rawBytes.sum();
+            this.compressedBytes = s.compressedBytes.sum();
+            this.compressNanos = s.compressNanos.sum();
+            this.decompressNanos = s.decompressNanos.sum();
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return 压缩后保存的次数
+         */
+        public long getCompressed() {
+            return compressed;
+        }
+
+        /**
+         * @return 超过阈值但压缩率不够、原样保存的次数
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return 解压次数
+         */
+        public long getDecompressed() {
+            return decompressed;
+        }
+
+        /**
+         * @return 压缩保存的值压缩前的总字节数
+         */
+        public long getRawBytes() {
+            return rawBytes;
+        }
+
+        /**
+         * @return 压缩保存的值压缩后的总字节数(含压缩头)
+         */
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        /**
+         * @return 压缩比,压缩后/压缩前,越小越好;没有压缩过时为1
+         */
+        public double getRatio() {
+            return rawBytes == 0 ? 1 : (double) compressedBytes / rawBytes;
+        }
+
+        /**
+         * @return 压缩总耗时,包括压缩率不够没有保存的,纳秒
+         */
+        public long getCompressNanos() {
+            return compressNanos;
+        }
+
+        /**
+         * @return 解压总耗时,纳秒
+         */
+        public long getDecompressNanos() {
+            return decompressNanos;
+        }
+
+        @Override
+        public String toString() {
+            return prefix + "{compressed:" + compressed + ", skipped:" + skipped + ", decompressed:"
+                   + decompressed + ", ratio:" + String.format("%.3f", getRatio()) + ", saved:"
+                   + (rawBytes - compressedBytes) + "B, compressCpu:" + compressNanos / 1000000
+                   + "ms, decompressCpu:" + decompressNanos / 1000000 + "ms}";
+        }
+    }
+}
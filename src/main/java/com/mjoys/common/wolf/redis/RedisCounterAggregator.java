@@ -0,0 +1,435 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:59.<br/>
+ * 功能描述 : 计数器写聚合,通过{@link ShardJedisClient#enableCounterAggregation(long, int)}开启,用于统计类的incrBy/hincrBy热点写.<br/>
+ * <br/>
+ * 调用方的增量先累加到本地每个key(hash为key+field)一个的LongAdder中,不访问redis;
+ * 后台线程每flushIntervalMillis毫秒,或者待写的计数器数达到maxPendingKeys时提前,把累计值用分片pipeline批量写成incrBy/hincrBy,
+ * 带过期时间的计数器同时刷新expire.同一个key一个周期内无论加多少次都只写一条命令.<br/>
+ * 代价是有界的丢失窗口:进程崩溃时最多丢最近一个周期的增量;写入redis时连接中断的那一批增量不再重试(可能已经部分生效,重试会重复计数),
+ * 单条命令的错误回复(例如WRONGTYPE)同样丢弃,都计入{@link #getLostDeltaCount()};
+ * 借不到连接、或者分片的熔断器打开时什么都没发出,增量留到下一次.
+ * 另外读到的值比实际晚最多一个周期,需要读自己写入的结果时不要用聚合.<br/>
+ * 连续两个周期没有增量的计数器会被移除,保证key按天滚动时内存不会一直增长;移除后再到达的增量在下一个周期补写.<br/>
+ * 关闭时({@link ShardJedisClient#disableCounterAggregation()}或jvm退出)会再写一次.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisCounterAggregator {
+
+    private static final Logger                         logger         = LoggerFactory.getLogger(RedisCounterAggregator.class);
+
+    private static final int                            PIPELINE_BATCH = 1000;
+
+    private final ShardedJedisPool                      pool;
+    private final Function<String, RedisCircuitBreaker> breakers;
+    private final long                                  flushIntervalMillis;
+    private final int                                   maxPendingKeys;
+    private final ConcurrentMap<Counter, Cell>          cells          = new ConcurrentHashMap<>();
+    private List<Map.Entry<Counter, Cell>>              retired        = new ArrayList<>();
+    private final ScheduledExecutorService              executor;
+    private final AtomicBoolean                         flushRequested = new AtomicBoolean();
+    private final Thread                                shutdownHook;
+    private volatile boolean                            closed;
+
+    private final LongAdder                             incrementCount = new LongAdder();
+    private final LongAdder                             flushCount     = new LongAdder();
+    private final LongAdder                             commandCount   = new LongAdder();
+    private final LongAdder                             lostDeltaCount = new LongAdder();
+    private volatile long                               lastFlushMillis;
+
+    /**
+     * @param pool 分片连接池
+     * @param breakers 按key取所在分片的熔断器,未开启熔断时返回null
+     * @param flushIntervalMillis 写入周期,毫秒
+     * @param maxPendingKeys 待写的计数器数达到这个值时提前写入
+     */
+    RedisCounterAggregator(ShardedJedisPool pool, Function<String, RedisCircuitBreaker> breakers,
+                           long flushIntervalMillis, int maxPendingKeys) {
+        this.pool = pool;
+        this.breakers = breakers;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPendingKeys = maxPendingKeys;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-counter-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+            TimeUnit.MILLISECONDS);
+        shutdownHook = new Thread(this::flushQuietly, "redis-counter-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 累加一个字符串计数器
+     *
+     * @param key the key
+     * @param delta 增量
+     */
+    public void incrBy(String key, long delta) {
+        add(new Counter(key, null), delta, 0);
+    }
+
+    /**
+     * 累加一个字符串计数器,写入时刷新过期时间
+     *
+     * @param key the key
+     * @param delta 增量
+     * @param expire 过期时间,秒
+     */
+    public void incrBy(String key, long delta, int expire) {
+        add(new Counter(key, null), delta, expire);
+    }
+
+    /**
+     * 累加hash中的一个字段
+     *
+     * @param key the key
+     * @param field the field
+     * @param delta 增量
+     */
+    public void hincrBy(String key, String field, long delta) {
+        add(new Counter(key, field), delta, 0);
+    }
+
+    /**
+     * 累加hash中的一个字段,写入时刷新整个hash的过期时间
+     *
+     * @param key the key
+     * @param field the field
+     * @param delta 增量
+     * @param expire 过期时间,秒
+     */
+    public void hincrBy(String key, String field, long delta, int expire) {
+        add(new Counter(key, field), delta, expire);
+    }
+
+    /**
+     * 累加hash中的多个字段
+     *
+     * @param key the key
+     * @param fields the fields
+     * @param delta 每个字段的增量
+     */
+    public void hincrByFields(String key, Collection<String> fields, long delta) {
+        hincrByFields(key, fields, delta, 0);
+    }
+
+    /**
+     * 累加hash中的多个字段,写入时刷新整个hash的过期时间
+     *
+     * @param key the key
+     * @param fields the fields
+     * @param delta 每个字段的增量
+     * @param expire 过期时间,秒;0表示不设置
+     */
+    public void hincrByFields(String key, Collection<String> fields, long delta, int expire) {
+        for (String field : fields) {
+            add(new Counter(key, field), delta, expire);
+        }
+    }
+
+    private void add(Counter counter, long delta, int expire) {
+        if (closed) {
+            throw new IllegalStateException("redis counter aggregator is closed");
+        }
+        Cell cell = cells.get(counter);
+        if (cell == null) {
+            cell = cells.computeIfAbsent(counter, k -> new Cell());
+            if (cells.size() >= maxPendingKeys && flushRequested.compareAndSet(false, true)) {
+                executor.execute(this::flushQuietly);
+            }
+        }
+        if (expire > 0) {
+            cell.expire = expire;
+        }
+        cell.adder.add(delta);
+        incrementCount.increment();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("flush redis counters failed", e);
+        }
+    }
+
+    /**
+     * 立即把累计的增量写入redis
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        List<Pending> pending = new ArrayList<>();
+        // 上个周期移除的计数器,移除时可能还有增量在路上
+        for (Map.Entry<Counter, Cell> e : retired) {
+            drain(e.getKey(), e.getValue(), pending);
+        }
+        retired = new ArrayList<>();
+        for (Map.Entry<Counter, Cell> e : cells.entrySet()) {
+            Cell cell = e.getValue();
+            if (drain(e.getKey(), cell, pending)) {
+                cell.idleFlushes = 0;
+            } else if (++cell.idleFlushes >= 2 && cells.remove(e.getKey(), cell)) {
+                retired.add(e);
+            }
+        }
+        lastFlushMillis = System.currentTimeMillis();
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushCount.increment();
+        for (int from = 0; from < pending.size(); from += PIPELINE_BATCH) {
+            try {
+                write(pending.subList(from, Math.min(pending.size(), from + PIPELINE_BATCH)));
+            } catch (RuntimeException e) {
+                logger.warn("flush redis counters failed", e);
+            }
+        }
+    }
+
+    /**
+     * 取走一个计数器的累计值;用sum再减回去而不是sumThenReset,并发的累加不会丢
+     */
+    private static boolean drain(Counter counter, Cell cell, List<Pending> pending) {
+        long delta = cell.adder.sum();
+        if (delta == 0) {
+            return false;
+        }
+        cell.adder.add(-delta);
+        pending.add(new Pending(counter, cell, delta));
+        return true;
+    }
+
+    private void write(List<Pending> batch) {
+        ShardedJedis resource;
+        try {
+            resource = pool.getResource();
+        } catch (RuntimeException e) {
+            // 命令还没发出,增量放回去等下一次
+            requeue(batch);
+            throw e;
+        }
+        try {
+            Map<Jedis, List<Pending>> byShard = new LinkedHashMap<>();
+            for (Pending p : batch) {
+                byShard.computeIfAbsent(resource.getShard(p.counter.key), k -> new ArrayList<>()).add(p);
+            }
+            for (Map.Entry<Jedis, List<Pending>> e : byShard.entrySet()) {
+                writeShard(e.getKey(), e.getValue());
+            }
+        } finally {
+            resource.close();
+        }
+    }
+
+    /**
+     * 一个分片的增量用一个pipeline写入.用分片自己的Pipeline而不是ShardedJedisPipeline:
+     * 后者遇到第一个错误回复就抛出,剩下的回复没读完;前者把每条命令的错误放在各自的位置上
+     */
+    private void writeShard(Jedis jedis, List<Pending> shard) {
+        RedisCircuitBreaker breaker = breakers.apply(shard.get(0).counter.key);
+        if (breaker != null && !breaker.tryAcquire()) {
+            // 熔断打开,不发命令,增量留到下一次
+            requeue(shard);
+            return;
+        }
+        long start = System.nanoTime();
+        RuntimeException error = null;
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            List<Pending> order = new ArrayList<>(shard.size() * 2);
+            Set<String> expired = new HashSet<>();
+            for (Pending p : shard) {
+                if (p.counter.field == null) {
+                    pipeline.incrBy(p.counter.key, p.delta);
+                } else {
+                    pipeline.hincrBy(p.counter.key, p.counter.field, p.delta);
+                }
+                order.add(p);
+                int expire = p.cell.expire;
+                if (expire > 0 && expired.add(p.counter.key)) {
+                    pipeline.expire(p.counter.key, expire);
+                    order.add(null);
+                }
+            }
+            List<Object> replies = pipeline.syncAndReturnAll();
+            commandCount.add(replies.size());
+            JedisDataException first = null;
+            for (int i = 0; i < replies.size(); i++) {
+                if (replies.get(i) instanceof JedisDataException && order.get(i) != null) {
+                    // 例如WRONGTYPE,重试也不会成功
+                    lostDeltaCount.increment();
+                    if (first == null) {
+                        first = (JedisDataException) replies.get(i);
+                        logger.warn("redis counter {} rejected, delta dropped", order.get(i).counter.key, first);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            error = e;
+            lostDeltaCount.add(shard.size());
+            logger.warn("flush redis counters to {}:{} failed", jedis.getClient().getHost(),
+                        jedis.getClient().getPort(), e);
+        } finally {
+            if (breaker != null) {
+                breaker.onComplete(System.nanoTime() - start, error);
+            }
+        }
+    }
+
+    /**
+     * 没有发出的增量放回去;计数器可能已经被移除,放回当前的map
+     */
+    private void requeue(List<Pending> pending) {
+        for (Pending p : pending) {
+            Cell cell = cells.computeIfAbsent(p.counter, k -> new Cell());
+            if (p.cell.expire > 0) {
+                cell.expire = p.cell.expire;
+            }
+            cell.adder.add(p.delta);
+        }
+    }
+
+    /**
+     * 停止后台写入并写入剩余的增量,之后再累加会抛出IllegalStateException
+     */
+    void shutdown() {
+        closed = true;
+        executor.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // jvm正在退出,由shutdown hook写入
+            return;
+        }
+        flushQuietly();
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public int getMaxPendingKeys() {
+        return maxPendingKeys;
+    }
+
+    /**
+     * @return 当前本地缓存的计数器数
+     */
+    public int getPendingKeys() {
+        return cells.size();
+    }
+
+    /**
+     * @return 调用方累加的次数
+     */
+    public long getIncrementCount() {
+        return incrementCount.sum();
+    }
+
+    /**
+     * @return 实际写入redis的命令数(包括expire),和累加次数对比就是聚合省下的写入
+     */
+    public long getCommandCount() {
+        return commandCount.sum();
+    }
+
+    /**
+     * @return 有增量需要写入的周期数
+     */
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    /**
+     * @return 写入时连接中断而放弃的计数器增量个数
+     */
+    public long getLostDeltaCount() {
+        return lostDeltaCount.sum();
+    }
+
+    /**
+     * @return 上一次写入的时间戳,毫秒
+     */
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    /**
+     * 计数器标识,field为null表示字符串计数器
+     */
+    private static final class Counter {
+
+        private final String key;
+        private final String field;
+
+        Counter(String key, String field) {
+            this.key = key;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Counter)) {
+                return false;
+            }
+            Counter other = (Counter) o;
+            return key.equals(other.key) && (field == null ? other.field == null : field.equals(other.field));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + (field == null ? 0 : field.hashCode());
+        }
+    }
+
+    private static final class Cell {
+
+        private final LongAdder adder = new LongAdder();
+        private volatile int    expire;
+        private int             idleFlushes;
+    }
+
+    private static final class Pending {
+
+        private final Counter counter;
+        private final Cell    cell;
+        private final long    delta;
+
+        Pending(Counter counter, Cell cell, long delta) {
+            this.counter = counter;
+            this.cell = cell;
+            this.delta = delta;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:59.<br/>
+ * 功能描述 : 基于zset的延时任务队列,通过{@link RedisClient#delayQueue(String, int)}创建.<br/>
+ * <br/>
+ * 任务按内容哈希分到shards个zset({name:0}、{name:1}...),score为到期时间;一个热点zset不会成为整体吞吐的上限,
+ * 集群模式下各分片也会落在不同的节点上.<br/>
+ * 认领用一次lua脚本完成:取出最多batchSize个已到期的任务,从待执行zset移到该分片的认领zset(score为认领超时时间),
+ * 同时返回下一个任务的到期时间.多个进程同时轮询也不会拿到同一个任务.
+ * 处理成功后从认领zset删除;处理失败或者进程崩溃的任务在认领超时后被下一次认领放回待执行zset,所以是至少一次投递.<br/>
+ * 轮询间隔自适应:取满一批说明还有到期任务,立即再取;否则睡到该分片下一个任务的到期时间,最长maxPollMillis.
+ * 本进程新加入的任务比当前计划的轮询更早到期时会唤醒轮询线程.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisDelayQueue {
+
+    private static final Logger      logger           = LoggerFactory.getLogger(RedisDelayQueue.class);
+
+    /**
+     * KEYS: 待执行zset, 认领zset; ARGV: 当前时间, 最多认领几个, 认领超时毫秒数;
+     * 返回{认领到的任务, 下一个任务的到期时间(没有时为false)}
+     */
+    private static final RedisScript CLAIM_SCRIPT     = new RedisScript("delayQueue.claim",
+        "local now = tonumber(ARGV[1]) "
+        + "local limit = tonumber(ARGV[2]) "
+        + "local expired = redis.call('zrangebyscore', KEYS[2], '-inf', now, 'LIMIT', 0, limit) "
+        + "for _, v in ipairs(expired) do "
+        + "  redis.call('zrem', KEYS[2], v) "
+        + "  redis.call('zadd', KEYS[1], now, v) "
+        + "end "
+        + "local items = redis.call('zrangebyscore', KEYS[1], '-inf', now, 'LIMIT', 0, limit) "
+        + "local deadline = now + tonumber(ARGV[3]) "
+        + "for _, v in ipairs(items) do "
+        + "  redis.call('zrem', KEYS[1], v) "
+        + "  redis.call('zadd', KEYS[2], deadline, v) "
+        + "end "
+        + "local nxt = redis.call('zrange', KEYS[1], 0, 0, 'WITHSCORES') "
+        + "return {items, nxt[2]}");
+
+    private final RedisClient        client;
+    private final String             name;
+    private final Shard[]            shards;
+
+    private volatile int             batchSize        = 100;
+    private volatile long            visibilityMillis = 30000;
+    private volatile long            maxPollMillis    = 1000;
+
+    private volatile boolean         running;
+    private Thread                   pollThread;
+    private ThreadPoolExecutor       workers;
+    private Handler                  handler;
+
+    private final LongAdder          scheduledCount   = new LongAdder();
+    private final LongAdder          claimedCount     = new LongAdder();
+    private final LongAdder          ackedCount       = new LongAdder();
+    private final LongAdder          failedCount      = new LongAdder();
+    private final LongAdder          pollCount        = new LongAdder();
+
+    /**
+     * @param client
+     * @param name 队列名,作为key前缀
+     * @param shards 分片数,同一个队列的所有生产者和消费者必须一致
+     */
+    RedisDelayQueue(RedisClient client, String name, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be > 0");
+        }
+        this.client = client;
+        this.name = name;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard("{" + name + ":" + i + "}");
+        }
+    }
+
+    /**
+     * 加入一个延时任务,相同内容的任务已存在时只更新到期时间
+     *
+     * @param job 任务内容,同时也是任务的唯一标识
+     * @param delayMillis 多少毫秒后到期
+     */
+    public void schedule(String job, long delayMillis) {
+        scheduleAt(job, System.currentTimeMillis() + delayMillis);
+    }
+
+    /**
+     * 加入一个定时任务
+     *
+     * @param job 任务内容,同时也是任务的唯一标识
+     * @param timestampMillis 到期时间戳,毫秒
+     */
+    public void scheduleAt(String job, long timestampMillis) {
+        Shard shard = shard(job);
+        client.zadd(shard.key, timestampMillis, job);
+        scheduledCount.increment();
+        if (timestampMillis < shard.nextPollMillis) {
+            // 比计划的下一次轮询更早到期,唤醒轮询线程
+            shard.nextPollMillis = timestampMillis;
+            Thread t = pollThread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    /**
+     * 取消一个还没被认领的任务
+     *
+     * @param job 任务内容
+     * @return 是否取消成功
+     */
+    public boolean cancel(String job) {
+        Long removed = client.zrem(shard(job).key, job);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * @return 所有分片中等待执行的任务数(包括未到期的)
+     */
+    public long size() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += client.zcard(shard.key);
+        }
+        return total;
+    }
+
+    private Shard shard(String job) {
+        return shards[(job.hashCode() & Integer.MAX_VALUE) % shards.length];
+    }
+
+    /**
+     * 开始消费到期任务
+     *
+     * @param workerThreads 处理线程数
+     * @param handler 处理逻辑
+     */
+    public synchronized void start(int workerThreads, Handler handler) {
+        if (running) {
+            return;
+        }
+        this.handler = handler;
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                                              new ArrayBlockingQueue<>(workerThreads), r -> {
+                                                  Thread t = new Thread(r, "redis-delay-worker-" + name);
+                                                  t.setDaemon(true);
+                                                  return t;
+                                              }, new ThreadPoolExecutor.CallerRunsPolicy());
+        running = true;
+        pollThread = new Thread(this::pollLoop, "redis-delay-poller-" + name);
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    private void pollLoop() {
+        while (running) {
+            long now = System.currentTimeMillis();
+            long earliest = Long.MAX_VALUE;
+            for (Shard shard : shards) {
+                if (shard.nextPollMillis <= now) {
+                    poll(shard, now);
+                }
+                earliest = Math.min(earliest, shard.nextPollMillis);
+            }
+            long wait = earliest - System.currentTimeMillis();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+            }
+        }
+    }
+
+    private void poll(Shard shard, long now) {
+        pollCount.increment();
+        List<?> result;
+        try {
+            result = (List<?>) client.eval(CLAIM_SCRIPT, Arrays.asList(shard.key, shard.claimedKey),
+                                           Arrays.asList(String.valueOf(now), String.valueOf(batchSize),
+                                                         String.valueOf(visibilityMillis)));
+        } catch (RuntimeException e) {
+            logger.warn("poll redis delay queue {} failed", shard.key, e);
+            shard.nextPollMillis = now + maxPollMillis;
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<String> jobs = (List<String>) result.get(0);
+        Object next = result.size() > 1 ? result.get(1) : null;
+        if (jobs.size() >= batchSize) {
+            // 还有到期任务,立即再取
+            shard.nextPollMillis = now;
+        } else {
+            long nextDue = next == null ? Long.MAX_VALUE : (long) Double.parseDouble(next.toString());
+            shard.nextPollMillis = Math.max(now + 1, Math.min(nextDue, now + maxPollMillis));
+        }
+        if (!jobs.isEmpty()) {
+            claimedCount.add(jobs.size());
+            workers.execute(() -> process(shard, jobs));
+        }
+    }
+
+    private void process(Shard shard, List<String> jobs) {
+        try {
+            handler.handle(jobs);
+        } catch (Exception e) {
+            // 留在认领zset中,认领超时后重新执行
+            failedCount.add(jobs.size());
+            logger.warn("handle redis delay queue {} jobs failed, retry after {}ms", name, visibilityMillis, e);
+            return;
+        }
+        try {
+            client.zrem(shard.claimedKey, jobs.toArray(new String[jobs.size()]));
+            ackedCount.add(jobs.size());
+        } catch (RuntimeException e) {
+            logger.warn("ack redis delay queue {} jobs failed, they will be retried", name, e);
+        }
+    }
+
+    /**
+     * 停止轮询,等待已认领的任务处理完;没处理完的任务在认领超时后由其他消费者重新执行
+     *
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @throws InterruptedException 等待时被中断
+     */
+    public synchronized void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(pollThread);
+        pollThread.join(unit.toMillis(timeout));
+        workers.shutdown();
+        workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @param batchSize 每次最多认领几个,默认100
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param visibilityMillis 认领超时,超过这个时间没确认的任务会被重新执行,默认30000;应该大于处理一批的最长耗时
+     */
+    public void setVisibilityMillis(long visibilityMillis) {
+        this.visibilityMillis = visibilityMillis;
+    }
+
+    /**
+     * @param maxPollMillis 最长轮询间隔,也是其他进程加入更早到期的任务时的最大延迟,默认1000
+     */
+    public void setMaxPollMillis(long maxPollMillis) {
+        this.maxPollMillis = maxPollMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return 本进程加入的任务数
+     */
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    /**
+     * @return 认领到的任务数
+     */
+    public long getClaimedCount() {
+        return claimedCount.sum();
+    }
+
+    /**
+     * @return 处理成功的任务数
+     */
+    public long getAckedCount() {
+        return ackedCount.sum();
+    }
+
+    /**
+     * @return 处理失败等待重试的任务数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return 认领脚本的调用次数,claimed/polls即平均每次认领到的任务数
+     */
+    public long getPollCount() {
+        return pollCount.sum();
+    }
+
+    /**
+     * 一个分片:待执行zset和认领zset,key带hash tag保证在同一个slot
+     */
+    private static class Shard {
+
+        private final String  key;
+        private final String  claimedKey;
+        private volatile long nextPollMillis;
+
+        Shard(String key) {
+            this.key = key;
+            this.claimedKey = key + ":claimed";
+        }
+    }
+
+    /**
+     * 到期任务的处理逻辑
+     */
+    public interface Handler {
+
+        /**
+         * 处理一批到期任务,正常返回表示全部成功;抛出异常时整批在认领超时后重新执行,所以处理逻辑需要幂等
+         *
+         * @param jobs 任务内容
+         * @throws Exception 处理失败
+         */
+        void handle(List<String> jobs) throws Exception;
+    }
+}
@@ -0,0 +1,251 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:57.<br/>
+ * 功能描述 : 对冲读,通过{@link RedisClient#enableHedgedReads(double, double)}开启,用于对尾延迟敏感的少量读请求.<br/>
+ * <br/>
+ * 请求先在对冲线程池中发出,等待一个按近期延迟分位数(例如p95)算出的时间,还没返回就再发一次同样的读,谁先成功用谁.
+ * 第二次请求同样经过从库路由:开启从库读时,power of two choices会因为慢从库进行中的请求数多而倾向选另一个节点;
+ * 没有从库时在主库上另借一个连接.<br/>
+ * 主请求在对冲延迟内就失败时直接抛出异常,不对冲;预算用完时只等主请求,主请求的结果或异常就是最终结果.<br/>
+ * 输掉的请求:还在排队的直接跳过;已经发出的无法中途取消(jedis打断读会破坏连接),结果被丢弃,连接正常归还.<br/>
+ * 对冲次数受预算限制,每个统计窗口内不超过请求数的budgetRatio(例如5%),避免redis整体变慢时对冲把负载放大一倍.<br/>
+ * 延迟统计每10秒轮换一次,样本不足100个时使用初始延迟10ms.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisHedger {
+
+    private static final Logger      logger            = LoggerFactory.getLogger(RedisHedger.class);
+
+    private static final int         MIN_SAMPLES       = 100;
+    private static final int         BUDGET_BURST      = 10;
+    private static final long        WINDOW_MILLIS     = 10000;
+
+    private final RedisAsyncExecutor executor;
+    private final double             quantile;
+    private final double             budgetRatio;
+    private volatile long            minDelayMicros    = 500;
+    private volatile long            maxDelayMicros    = 50000;
+
+    private final RedisHistogram     latency           = new RedisHistogram();
+    private final LongAdder          windowRequests    = new LongAdder();
+    private final LongAdder          windowHedges      = new LongAdder();
+    private volatile long            windowEndMillis   = System.currentTimeMillis() + WINDOW_MILLIS;
+    private volatile long            delayMicros       = 10000;
+
+    private final LongAdder          requestCount      = new LongAdder();
+    private final LongAdder          hedgeCount        = new LongAdder();
+    private final LongAdder          hedgeWinCount     = new LongAdder();
+    private final LongAdder          budgetRejectCount = new LongAdder();
+
+    /**
+     * @param executor 执行读请求的线程池
+     * @param quantile 延迟分位数,0~1,例如0.95
+     * @param budgetRatio 对冲请求占总请求的上限,例如0.05
+     */
+    RedisHedger(RedisAsyncExecutor executor, double quantile, double budgetRatio) {
+        if (quantile <= 0 || quantile >= 1) {
+            throw new IllegalArgumentException("quantile must be in (0, 1), got " + quantile);
+        }
+        if (budgetRatio < 0 || budgetRatio > 1) {
+            throw new IllegalArgumentException("budgetRatio must be in [0, 1], got " + budgetRatio);
+        }
+        this.executor = executor;
+        this.quantile = quantile;
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * 执行一次对冲读
+     *
+     * @param read 读操作,可能被执行两次,必须没有副作用
+     * @param <T> 返回值类型
+     * @return 先成功的结果;主请求在对冲延迟内失败、或者两次都失败时抛出异常
+     */
+    <T> T execute(Supplier<T> read) {
+        requestCount.increment();
+        windowRequests.increment();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = executor.submit(read);
+        if (primary.isCompletedExceptionally() && isRejected(primary)) {
+            // 线程池满时退化为在调用线程上直接执行,不对冲
+            return read.get();
+        }
+        primary.whenComplete((value, error) -> {
+            record(System.nanoTime() - start);
+            complete(winner, failures, value, error, 2);
+        });
+        try {
+            return primary.get(delayMicros, TimeUnit.MICROSECONDS);
+        } catch (TimeoutException e) {
+            hedge(read, primary, winner, failures);
+        } catch (InterruptedException e) {
+            // 被中断时不再对冲,只等主请求
+            Thread.currentThread().interrupt();
+            return join(primary);
+        } catch (ExecutionException e) {
+            // 主请求在对冲延迟内就失败了,多半是redis不可用,直接失败,不再对冲放大负载
+            throw unwrap(e.getCause());
+        }
+        return join(winner);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private <T> void hedge(Supplier<T> read, CompletableFuture<T> primary, CompletableFuture<T> winner,
+                           AtomicInteger failures) {
+        if (windowHedges.sum() >= windowRequests.sum() * budgetRatio + BUDGET_BURST) {
+            budgetRejectCount.increment();
+            // 预算用完只等主请求,结果(包括失败)直接作为最终结果
+            primary.whenComplete((value, error) -> {
+                if (error == null) {
+                    winner.complete(value);
+                } else {
+                    winner.completeExceptionally(unwrap(error));
+                }
+            });
+            return;
+        }
+        hedgeCount.increment();
+        windowHedges.increment();
+        executor.submit(() -> winner.isDone() ? null : read.get()).whenComplete((value, error) -> {
+            if (error == null && !winner.isDone() && winner.complete(value)) {
+                hedgeWinCount.increment();
+            } else if (error != null) {
+                complete(winner, failures, null, error, 2);
+            }
+        });
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException) {
+            return (RuntimeException) error;
+        }
+        return new CompletionException(error);
+    }
+
+    /**
+     * 成功时直接完成;失败时只有两个请求都失败(或者没有发出对冲)才以异常完成
+     */
+    private static <T> void complete(CompletableFuture<T> winner, AtomicInteger failures, T value,
+                                     Throwable error, int expected) {
+        if (error == null) {
+            winner.complete(value);
+        } else if (failures.incrementAndGet() >= expected) {
+            winner.completeExceptionally(unwrap(error));
+        }
+    }
+
+    private static boolean isRejected(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return false;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RejectedExecutionException;
+        }
+    }
+
+    private void record(long nanos) {
+        latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        long now = System.currentTimeMillis();
+        if (now < windowEndMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (now < windowEndMillis) {
+                return;
+            }
+            RedisHistogram.Snapshot snapshot = latency.snapshot();
+            if (snapshot.getCount() >= MIN_SAMPLES) {
+                long delay = snapshot.getPercentile(quantile);
+                delayMicros = Math.max(minDelayMicros, Math.min(maxDelayMicros, delay));
+            }
+            latency.reset();
+            windowRequests.reset();
+            windowHedges.reset();
+            windowEndMillis = now + WINDOW_MILLIS;
+            logger.debug("redis hedge delay {}us, samples:{}", delayMicros, snapshot.getCount());
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param minDelayMillis 对冲延迟的下限,默认0.5
+     * @param maxDelayMillis 对冲延迟的上限,默认50
+     */
+    public void setDelayBounds(double minDelayMillis, double maxDelayMillis) {
+        this.minDelayMicros = (long) (minDelayMillis * 1000);
+        this.maxDelayMicros = (long) (maxDelayMillis * 1000);
+    }
+
+    /**
+     * @return 当前的对冲延迟,毫秒
+     */
+    public double getDelayMillis() {
+        return delayMicros / 1000.0;
+    }
+
+    public double getQuantile() {
+        return quantile;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * @return 对冲读的请求数
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return 发出对冲请求的次数
+     */
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    /**
+     * @return 对冲请求先返回的次数
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.sum();
+    }
+
+    /**
+     * @return 超过预算没有对冲的次数
+     */
+    public long getBudgetRejectCount() {
+        return budgetRejectCount.sum();
+    }
+}
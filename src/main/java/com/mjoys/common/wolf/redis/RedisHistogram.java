@@ -0,0 +1,157 @@
+package com.mjoys.common.wolf.redis;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 16:20.<br/>
+ * 功能描述 : 无锁的对数分桶直方图,用来统计耗时、大小等非负long值的分布.<br/>
+ * <br/>
+ * 0~15单独成桶,之后每个2的幂区间再均分为8个桶,相对误差不超过12.5%,总共488个桶,内存占用固定约4KB.
+ * 记录只是一次数组元素的原子自增,可以在每次redis调用时使用.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisHistogram {
+
+    private static final int     LINEAR_BUCKETS = 16;
+    private static final int     SUB_BITS       = 3;
+    private static final int     SUB_BUCKETS    = 1 << SUB_BITS;
+    private static final int     BUCKET_COUNT   = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets        = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder       sum            = new LongAdder();
+    private final LongAccumulator max            = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一个值,负数按0处理
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 清空所有数据,和并发的record之间不保证原子性
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * @return 当前数据的快照
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        // 次数取各桶之和,和分位数用的桶保持一致
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return 桶内的最大值,用来作为该桶代表的值(分位数宁可偏大不偏小)
+     */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * 直方图快照,不会再变化
+     */
+    public static class Snapshot {
+
+        private final long[] buckets;
+        private final long   count;
+        private final long   sum;
+        private final long   max;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @param quantile 0~1之间,例如0.99
+         * @return 对应分位的值,没有数据时返回0
+         */
+        public long getPercentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return getPercentile(0.5);
+        }
+
+        public long getP99() {
+            return getPercentile(0.99);
+        }
+
+        public long getP999() {
+            return getPercentile(0.999);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + String.format("%.1f", getMean()) + ", p50="
+                   + getP50() + ", p99=" + getP99() + ", p999=" + getP999() + ", max=" + max;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 21:00.<br/>
+ * 功能描述 : 热点key探测,按采样率抽样每次调用的key,用count-min sketch估算每个key在当前1秒窗口内的调用次数.<br/>
+ * <br/>
+ * 每个命令保留估算值最大的topK个key,窗口结束时按0.5衰减累积成平滑后的QPS,长时间不再热的key会自然掉出.
+ * sketch大小固定(depth * width个int),topK有上限,内存占用和key的数量无关.<br/>
+ * 设置了阈值和监听器后,key在一个窗口内的估算QPS第一次超过阈值时回调一次,回调在业务线程中执行,应该尽快返回.<br/>
+ * count-min sketch只会高估不会低估,低QPS的key在碰撞下可能被误报,阈值应该远高于正常key的QPS.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisHotKeyDetector {
+
+    private static final Logger                                       logger       = LoggerFactory.getLogger(RedisHotKeyDetector.class);
+
+    private static final int                                          DEPTH        = 4;
+    private static final long                                         WINDOW_NANOS = 1000000000L;
+    private static final Comparator<Entry>                            SCORE_ORDER  = Comparator.comparingLong(Entry::score);
+
+    private final int                                                 width;
+    private final int                                                 topK;
+    private volatile double                                           sampleRate;
+
+    private volatile AtomicIntegerArray                               sketch;
+    private final AtomicLong                                          windowStart  = new AtomicLong(System.nanoTime());
+    private volatile long                                             windowId;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Entry>> top          = new ConcurrentHashMap<>();
+
+    private volatile long                                             thresholdQps;
+    private volatile Listener                                         listener;
+
+    /**
+     * @param topK 每个命令保留的热点key个数
+     * @param width sketch每行的计数器个数,会向上取整为2的幂,越大碰撞越少,例如4096
+     * @param sampleRate 采样率,0~1
+     */
+    public RedisHotKeyDetector(int topK, int width, double sampleRate) {
+        this.topK = topK;
+        this.width = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.sketch = new AtomicIntegerArray(DEPTH * this.width);
+        setSampleRate(sampleRate);
+    }
+
+    /**
+     * 记录一次调用,按采样率决定是否真正计数
+     *
+     * @param command 命令名
+     * @param key 为null时忽略
+     */
+    public void record(String command, String key) {
+        if (key != null && sampled()) {
+            add(command, key);
+        }
+    }
+
+    /**
+     * 二进制key版本,只有被采样时才转换成String
+     */
+    public void record(String command, byte[] key) {
+        if (key != null && sampled()) {
+            add(command, SafeEncoder.encode(key));
+        }
+    }
+
+    private boolean sampled() {
+        double rate = sampleRate;
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private void add(String command, String key) {
+        rollIfNeeded();
+        int h1 = mix(key.hashCode() * 31 + command.hashCode());
+        int h2 = mix(h1 ^ 0x5bd1e995) | 1;
+        AtomicIntegerArray s = sketch;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = i * width + ((h1 + i * h2) & (width - 1));
+            min = Math.min(min, s.incrementAndGet(index));
+        }
+        long estimate = (long) (min / sampleRate);
+        offer(command, key, estimate);
+        long threshold = thresholdQps;
+        Listener l = listener;
+        if (threshold > 0 && l != null && estimate >= threshold) {
+            Entry entry = top.get(command).get(key);
+            long id = windowId;
+            if (entry != null && entry.alertedWindow != id) {
+                entry.alertedWindow = id;
+                try {
+                    l.onHotKey(command, key, estimate);
+                } catch (RuntimeException e) {
+                    logger.warn("hot key listener failed, command:{}, key:{}", command, key, e);
+                }
+            }
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private void offer(String command, String key, long estimate) {
+        ConcurrentMap<String, Entry> entries = top.get(command);
+        if (entries == null) {
+            top.putIfAbsent(command, new ConcurrentHashMap<String, Entry>());
+            entries = top.get(command);
+        }
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.windowCount = Math.max(entry.windowCount, estimate);
+            return;
+        }
+        synchronized (entries) {
+            if (entries.size() >= topK) {
+                Entry min = Collections.min(entries.values(), SCORE_ORDER);
+                if (min.score() >= estimate) {
+                    return;
+                }
+                entries.remove(min.key);
+            }
+            entry = new Entry(key);
+            entry.windowCount = estimate;
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 窗口到期时由第一个发现的线程清空sketch,并把各热点key的窗口计数衰减累积到qps
+     */
+    private void rollIfNeeded() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < WINDOW_NANOS || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        // 距离上次记录可能已经过了好几个窗口,按实际经过的时间折算成每秒
+        double seconds = (double) (now - start) / WINDOW_NANOS;
+        sketch = new AtomicIntegerArray(DEPTH * width);
+        windowId++;
+        for (ConcurrentMap<String, Entry> entries : top.values()) {
+            synchronized (entries) {
+                for (Entry entry : entries.values()) {
+                    entry.qps = entry.qps * 0.5 + entry.windowCount / seconds * 0.5;
+                    entry.windowCount = 0;
+                    if (entry.qps < 1) {
+                        entries.remove(entry.key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param command
+     * @return 该命令当前的热点key,按QPS从高到低排序
+     */
+    public List<HotKey> getTopKeys(String command) {
+        rollIfNeeded();
+        ConcurrentMap<String, Entry> entries = top.get(command);
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<HotKey> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            result.add(new HotKey(command, entry.key, entry.score()));
+        }
+        result.sort(Comparator.comparingLong(HotKey::getQps).reversed());
+        return result;
+    }
+
+    /**
+     * @return 所有命令的热点key,按命令名排序
+     */
+    public Map<String, List<HotKey>> getTopKeys() {
+        Map<String, List<HotKey>> result = new TreeMap<>();
+        for (String command : top.keySet()) {
+            List<HotKey> keys = getTopKeys(command);
+            if (!keys.isEmpty()) {
+                result.put(command, keys);
+            }
+        }
+        return result;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate 0~1,调用量越大可以设得越低
+     */
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sample rate must be in (0, 1]");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 设置热点告警
+     *
+     * @param thresholdQps 单个key的估算QPS超过这个值时回调,小于等于0表示关闭
+     * @param listener 回调,在业务线程中执行
+     */
+    public void setThreshold(long thresholdQps, Listener listener) {
+        this.listener = listener;
+        this.thresholdQps = thresholdQps;
+    }
+
+    private static class Entry {
+
+        private final String    key;
+        private volatile long   windowCount;
+        private volatile double qps;
+        private volatile long   alertedWindow = -1;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 平滑QPS和当前窗口计数取大者,让突发的key能立即进入topK
+         */
+        long score() {
+            return Math.max((long) qps, windowCount);
+        }
+    }
+
+    /**
+     * 热点key的快照
+     */
+    public static class HotKey {
+
+        private final String command;
+        private final String key;
+        private final long   qps;
+
+        HotKey(String command, String key, long qps) {
+            this.command = command;
+            this.key = key;
+            this.qps = qps;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return 估算的每秒调用次数
+         */
+        public long getQps() {
+            return qps;
+        }
+
+        @Override
+        public String toString() {
+            return command + " " + key + " " + qps + "/s";
+        }
+    }
+
+    /**
+     * 热点key回调
+     */
+    public interface Listener {
+
+        /**
+         * @param command 命令名
+         * @param key 热点key
+         * @param qps 当前窗口的估算QPS
+         */
+        void onHotKey(String command, String key, long qps);
+    }
+}
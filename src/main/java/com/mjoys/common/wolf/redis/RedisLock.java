@@ -0,0 +1,141 @@
+package com.mjoys.common.wolf.redis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 22:55.<br/>
+ * 功能描述 : 基于redis的可重入分布式锁,通过{@link RedisClient#getLock(String)}获得.<br/>
+ * <br/>
+ * 本对象只是锁名的句柄,持有状态保存在{@link RedisLockManager}中,同一个锁名的多个RedisLock对象之间可以重入.
+ * 锁属于加锁的线程,必须由同一个线程解锁.持有期间自动续期,临界区再长也不会因为租约到期被别人拿走,
+ * 除非redis连续一个租约都不可用.<br/>
+ * 用法和{@link java.util.concurrent.locks.ReentrantLock}一样:
+ * <pre>
+ * RedisLock lock = redisClient.getLock("lock:order:" + orderId);
+ * if (lock.tryLock(3, TimeUnit.SECONDS)) {
+ *     try {
+ *         ...
+ *     } finally {
+ *         lock.unlock();
+ *     }
+ * }
+ * </pre>
+ * 不支持{@link #newCondition()}.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisLock implements Lock {
+
+    private final RedisLockManager manager;
+    private final String           name;
+    private final long             leaseMillis;
+
+    RedisLock(RedisLockManager manager, String name, long leaseMillis) {
+        this.manager = manager;
+        this.name = name;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * 加锁,一直等到成功为止,等待期间不响应中断(返回后保留中断标记)
+     */
+    @Override
+    public void lock() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                manager.acquire(name, leaseMillis, Long.MAX_VALUE);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        manager.acquire(name, leaseMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * 只尝试一次,不等待
+     *
+     * @return 是否加锁成功
+     */
+    @Override
+    public boolean tryLock() {
+        try {
+            return manager.acquire(name, leaseMillis, 0);
+        } catch (InterruptedException e) {
+            // 不等待时不会走到这里
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 在超时时间内等待加锁,等待期间靠解锁通知唤醒,不会轮询redis
+     *
+     * @param time 最长等待时间
+     * @param unit 时间单位
+     * @return 是否加锁成功
+     * @throws InterruptedException 等待期间被中断
+     */
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return manager.acquire(name, leaseMillis, unit.toNanos(time));
+    }
+
+    /**
+     * 解锁,重入多少次就要解锁多少次
+     *
+     * @throws IllegalMonitorStateException 当前线程没有持有该锁
+     */
+    @Override
+    public void unlock() {
+        manager.release(name);
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException("redis lock does not support condition");
+    }
+
+    /**
+     * @return 当前线程是否持有该锁;续期时发现锁已经过期被别人拿走时返回false,临界区应该尽快放弃
+     */
+    public boolean isHeldByCurrentThread() {
+        return manager.isHeldByCurrentThread(name);
+    }
+
+    /**
+     * @return 当前线程的重入次数,没有持有时为0
+     */
+    public int getHoldCount() {
+        return manager.getHoldCount(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisLock[" + name + "]";
+    }
+}
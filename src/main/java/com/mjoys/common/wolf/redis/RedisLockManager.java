@@ -0,0 +1,377 @@
+package com.mjoys.common.wolf.redis;
+
+import com.mjoys.common.wolf.utils.UUIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 22:40.<br/>
+ * 功能描述 : 分布式锁的管理器,负责加锁/解锁的lua脚本、租约续期(watchdog)和解锁通知,由{@link RedisClient#getLock(String)}创建的锁共用.<br/>
+ * <br/>
+ * 加锁是一条SET NX PX,值为持有者token(节点id:线程id),失败时同一个脚本顺便返回锁的剩余过期时间,脚本都通过EVALSHA执行;
+ * 解锁用lua比较token后再删除,不会误删别人的锁,删除后往unlock channel发布锁名.
+ * 同一线程重复加锁只在本地计数,不访问redis.<br/>
+ * 持有期间watchdog每隔租约的1/3把过期时间重新设为整个租约,持有者进程挂掉后锁最多再保留一个租约.
+ * 续期时发现token已经不是自己(锁过期后被别人拿走)会停止续期并打印警告,见{@link RedisLock#isHeldByCurrentThread()}.<br/>
+ * 等锁的线程不轮询redis,而是在本地等待解锁消息,最长等到锁的剩余过期时间就重试一次;订阅断开期间退化为每100毫秒重试.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisLockManager {
+
+    private static final Logger                 logger               = LoggerFactory.getLogger(RedisLockManager.class);
+
+    /** 加锁成功返回nil,失败返回锁的剩余毫秒数(没有过期时间时为-1) */
+    private static final RedisScript            ACQUIRE_SCRIPT       = new RedisScript("lock.acquire",
+        "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return nil end "
+        + "return redis.call('pttl', KEYS[1])");
+
+    private static final RedisScript            RELEASE_SCRIPT       = new RedisScript("lock.release",
+        "if redis.call('get', KEYS[1]) == ARGV[1] then "
+        + "redis.call('del', KEYS[1]) "
+        + "redis.call('publish', ARGV[2], KEYS[1]) "
+        + "return 1 end "
+        + "return 0");
+
+    private static final RedisScript            RENEW_SCRIPT         = new RedisScript("lock.renew",
+        "if redis.call('get', KEYS[1]) == ARGV[1] then "
+        + "return redis.call('pexpire', KEYS[1], ARGV[2]) end "
+        + "return 0");
+
+    static final long                           FALLBACK_WAIT_MILLIS = 100;
+
+    private final RedisClient                   client;
+    private final String                        channel;
+    private final long                          defaultLeaseMillis;
+    private final String                        nodeId               = UUIDUtils.createUUID();
+
+    private final ConcurrentMap<String, Hold>   holds                = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Waiter> waiters              = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService      watchdog;
+
+    private final LongAdder                     acquireCount         = new LongAdder();
+    private final LongAdder                     renewCount           = new LongAdder();
+    private final LongAdder                     lostCount            = new LongAdder();
+    private final LongAdder                     wakeupCount          = new LongAdder();
+
+    private volatile boolean                    subscribed;
+    private final RedisPubSubManager.Listener   unlockListener       = new UnlockListener();
+
+    /**
+     * @param client
+     * @param channel 解锁通知的channel,各节点必须一致
+     * @param defaultLeaseMillis 默认租约,毫秒
+     */
+    RedisLockManager(RedisClient client, String channel, long defaultLeaseMillis) {
+        if (defaultLeaseMillis < 30) {
+            throw new IllegalArgumentException("lease must be >= 30ms");
+        }
+        this.client = client;
+        this.channel = channel;
+        this.defaultLeaseMillis = defaultLeaseMillis;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-lock-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param name 锁对应的redis key
+     * @return 使用默认租约的锁
+     */
+    public RedisLock getLock(String name) {
+        return new RedisLock(this, name, defaultLeaseMillis);
+    }
+
+    /**
+     * @param name 锁对应的redis key
+     * @param leaseMillis 租约,毫秒,持有期间会自动续期
+     * @return 锁
+     */
+    public RedisLock getLock(String name, long leaseMillis) {
+        if (leaseMillis < 30) {
+            throw new IllegalArgumentException("lease must be >= 30ms");
+        }
+        return new RedisLock(this, name, leaseMillis);
+    }
+
+    /**
+     * 加锁,直到成功、超时或者被中断
+     *
+     * @param name 锁名
+     * @param leaseMillis 租约
+     * @param timeoutNanos 最长等待时间,小于等于0表示只尝试一次
+     * @return 是否加锁成功
+     * @throws InterruptedException 等待期间被中断
+     */
+    boolean acquire(String name, long leaseMillis, long timeoutNanos) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        Hold hold = holds.get(name);
+        if (hold != null && hold.owner == current) {
+            hold.count++;
+            return true;
+        }
+        String token = nodeId + ":" + current.getId();
+        long deadline = System.nanoTime() + timeoutNanos;
+        Waiter waiter = null;
+        try {
+            while (true) {
+                // 先记下通知的版本再尝试,尝试失败后等待期间版本变了说明锁被释放过
+                long generation = waiter == null ? 0 : waiter.generation;
+                Object ttl = client.eval(ACQUIRE_SCRIPT, Collections.singletonList(name),
+                                         Arrays.asList(token, String.valueOf(leaseMillis)));
+                if (ttl == null) {
+                    acquired(name, token, leaseMillis);
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (waiter == null) {
+                    // 注册后立即再试一次,避免错过注册前刚发出的解锁通知
+                    waiter = register(name);
+                    continue;
+                }
+                long waitMillis = (Long) ttl > 0 ? (Long) ttl : FALLBACK_WAIT_MILLIS;
+                if (!subscribed) {
+                    waitMillis = Math.min(waitMillis, FALLBACK_WAIT_MILLIS);
+                }
+                waiter.await(generation, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(waitMillis)));
+            }
+        } finally {
+            if (waiter != null) {
+                unregister(name, waiter);
+            }
+        }
+    }
+
+    private void acquired(String name, String token, long leaseMillis) {
+        Hold hold = new Hold(Thread.currentThread(), token, leaseMillis);
+        holds.put(name, hold);
+        acquireCount.increment();
+        long period = leaseMillis / 3;
+        hold.renewal = watchdog.scheduleWithFixedDelay(() -> renew(name, hold), period, period,
+                                                       TimeUnit.MILLISECONDS);
+    }
+
+    private void renew(String name, Hold hold) {
+        try {
+            Object result = client.eval(RENEW_SCRIPT, Collections.singletonList(name),
+                                        Arrays.asList(hold.token, String.valueOf(hold.leaseMillis)));
+            if (Long.valueOf(1).equals(result)) {
+                renewCount.increment();
+                return;
+            }
+            hold.lost = true;
+            hold.renewal.cancel(false);
+            lostCount.increment();
+            logger.warn("redis lock {} expired before renewal, held by {} for {}ms", name, hold.token,
+                        System.currentTimeMillis() - hold.acquireMillis);
+        } catch (RuntimeException e) {
+            // 下一个周期会再试,只要在租约到期前恢复就不会丢锁
+            logger.warn("renew redis lock {} failed", name, e);
+        }
+    }
+
+    /**
+     * 解锁,重入时只减计数,最后一次解锁才删除redis中的锁
+     *
+     * @param name 锁名
+     * @throws IllegalMonitorStateException 当前线程没有持有该锁
+     */
+    void release(String name) {
+        Hold hold = holds.get(name);
+        if (hold == null || hold.owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("redis lock " + name + " is not held by current thread");
+        }
+        if (--hold.count > 0) {
+            return;
+        }
+        holds.remove(name, hold);
+        hold.renewal.cancel(false);
+        try {
+            Object result = client.eval(RELEASE_SCRIPT, Collections.singletonList(name),
+                                        Arrays.asList(hold.token, channel));
+            if (!Long.valueOf(1).equals(result) && !hold.lost) {
+                lostCount.increment();
+                logger.warn("redis lock {} expired before unlock, held by {} for {}ms", name,
+                            hold.token, System.currentTimeMillis() - hold.acquireMillis);
+            }
+        } finally {
+            // 本进程的等待者不必等redis转一圈
+            signal(name);
+        }
+    }
+
+    /**
+     * @return 当前线程是否持有该锁并且没有发现锁已经过期
+     */
+    boolean isHeldByCurrentThread(String name) {
+        Hold hold = holds.get(name);
+        return hold != null && hold.owner == Thread.currentThread() && !hold.lost;
+    }
+
+    /**
+     * @return 当前线程对该锁的重入次数,没有持有时为0
+     */
+    int getHoldCount(String name) {
+        Hold hold = holds.get(name);
+        return hold != null && hold.owner == Thread.currentThread() ? hold.count : 0;
+    }
+
+    private Waiter register(String name) {
+        while (true) {
+            Waiter waiter = waiters.computeIfAbsent(name, k -> new Waiter());
+            synchronized (waiter) {
+                if (!waiter.removed) {
+                    waiter.count++;
+                    return waiter;
+                }
+            }
+        }
+    }
+
+    private void unregister(String name, Waiter waiter) {
+        synchronized (waiter) {
+            if (--waiter.count == 0) {
+                waiter.removed = true;
+                waiters.remove(name, waiter);
+            }
+        }
+    }
+
+    private void signal(String name) {
+        Waiter waiter = waiters.get(name);
+        if (waiter != null) {
+            synchronized (waiter) {
+                waiter.generation++;
+                waiter.notifyAll();
+            }
+        }
+    }
+
+    void start() {
+        client.getPubSubManager().subscribe(channel, unlockListener);
+    }
+
+    /**
+     * 停止续期和订阅,还没释放的锁会在租约到期后自动过期
+     */
+    void shutdown() {
+        client.getPubSubManager().unsubscribe(channel, unlockListener);
+        subscribed = false;
+        watchdog.shutdownNow();
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public long getDefaultLeaseMillis() {
+        return defaultLeaseMillis;
+    }
+
+    /**
+     * @return 本进程当前持有的锁个数
+     */
+    public int getHeldCount() {
+        return holds.size();
+    }
+
+    /**
+     * @return 从redis成功加锁的次数,不含重入
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * @return watchdog成功续期的次数
+     */
+    public long getRenewCount() {
+        return renewCount.sum();
+    }
+
+    /**
+     * @return 持有期间锁过期(续期或解锁时发现token不是自己)的次数,大于0说明租约太短或者redis有故障
+     */
+    public long getLostCount() {
+        return lostCount.sum();
+    }
+
+    /**
+     * @return 收到的解锁通知数
+     */
+    public long getWakeupCount() {
+        return wakeupCount.sum();
+    }
+
+    private static class Hold {
+
+        private final Thread                owner;
+        private final String                token;
+        private final long                  leaseMillis;
+        private final long                  acquireMillis = System.currentTimeMillis();
+        private int                         count         = 1;                          // 只有owner线程会修改
+        private volatile boolean            lost;
+        private volatile ScheduledFuture<?> renewal;
+
+        Hold(Thread owner, String token, long leaseMillis) {
+            this.owner = owner;
+            this.token = token;
+            this.leaseMillis = leaseMillis;
+        }
+    }
+
+    /**
+     * 同一个锁名的本地等待者共用一个Waiter,收到解锁通知时版本加一并唤醒所有等待者
+     */
+    private static class Waiter {
+
+        private volatile long generation;
+        private int           count;
+        private boolean       removed;
+
+        synchronized void await(long expected, long nanos) throws InterruptedException {
+            if (generation == expected && nanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, nanos);
+            }
+        }
+    }
+
+    /**
+     * 接收解锁通知,唤醒等待该锁的线程
+     */
+    private class UnlockListener implements RedisPubSubManager.Listener {
+
+        @Override
+        public void onMessage(String channel, String message) {
+            wakeupCount.increment();
+            signal(message);
+        }
+
+        @Override
+        public void onSubscribed(String channel) {
+            subscribed = true;
+            // 断开期间可能错过了解锁通知,让所有等待者重试一次
+            waiters.keySet().forEach(RedisLockManager.this::signal);
+        }
+
+        @Override
+        public void onDisconnected(String channel) {
+            subscribed = false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.mjoys.common.wolf.redis;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 19:40.<br/>
+ * 功能描述 : RedisClient的部署模式.<br/>
+ * 变更记录 : .<br/>
+ */
+public enum RedisMode {
+
+    /** 单节点,servers只能有一个地址 */
+    STANDALONE,
+
+    /** 哨兵,servers为哨兵地址列表,需要指定masterName */
+    SENTINEL,
+
+    /** RedisCluster,servers为部分或全部集群节点地址,客户端自己计算slot并路由 */
+    CLUSTER
+}
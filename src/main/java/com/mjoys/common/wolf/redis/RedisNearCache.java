@@ -0,0 +1,338 @@
+package com.mjoys.common.wolf.redis;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mjoys.common.wolf.utils.UUIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 13:40.<br/>
+ * 功能描述 : RedisClient的本地一级缓存(near cache),按key前缀配置过期时间和容量,缓存get/hget/hgetAll的结果.<br/>
+ * <br/>
+ * 通过同一个RedisClient写入(set/del/hset/expire等)时,先清掉本地缓存,再往invalidation channel发布一条失效消息,
+ * 其他节点收到后清掉自己的副本.没有配置规则的key不会被缓存,写入时也不会发布消息.<br/>
+ * batch中的写命令在batch结束后统一失效;rpoplpush这类写两个key的命令两个key都会失效.<br/>
+ * 注意:不经过RedisClient的写入(其他系统直接写redis、lua脚本中KEYS以外的key)不会触发失效,只能等本地缓存过期.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisNearCache {
+
+    private static final Logger               logger               = LoggerFactory.getLogger(RedisNearCache.class);
+
+    private static final Object               NULL_VALUE           = new Object();                              // 缓存redis中不存在的值,防止穿透
+
+    private final RedisClient                 client;
+    private final String                      channel;
+    private final String                      nodeId               = UUIDUtils.createUUID();                    // 用来忽略自己发出的失效消息
+    private final List<Rule>                  rules                = new CopyOnWriteArrayList<>();
+
+    private final LongAdder                   publishCount         = new LongAdder();
+    private final LongAdder                   receiveCount         = new LongAdder();
+
+    private final RedisPubSubManager.Listener invalidationListener = new InvalidationListener();
+
+    RedisNearCache(RedisClient client, String channel) {
+        this.client = client;
+        this.channel = channel;
+    }
+
+    /**
+     * 为某个key前缀配置本地缓存,一个key匹配多个前缀时使用最长的那个
+     *
+     * @param prefix key前缀
+     * @param ttlMillis 本地缓存写入后的过期时间,毫秒
+     * @param maxSize 该前缀最多缓存的key个数,超出后按LRU淘汰
+     * @return this
+     */
+    public RedisNearCache addRule(String prefix, long ttlMillis, long maxSize) {
+        if (prefix == null || ttlMillis <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("prefix must not be null, ttlMillis and maxSize must be > 0");
+        }
+        rules.add(new Rule(prefix, ttlMillis, maxSize));
+        return this;
+    }
+
+    /**
+     * @return 所有规则,可以从中读取每个前缀的命中/未命中次数
+     */
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * @return 所有前缀的命中次数之和
+     */
+    public long getHitCount() {
+        long count = 0;
+        for (Rule rule : rules) {
+            count += rule.getHitCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return 所有前缀的未命中次数之和
+     */
+    public long getMissCount() {
+        long count = 0;
+        for (Rule rule : rules) {
+            count += rule.getMissCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return 本节点发布的失效消息数
+     */
+    public long getPublishCount() {
+        return publishCount.sum();
+    }
+
+    /**
+     * @return 收到的其他节点的失效消息数
+     */
+    public long getReceiveCount() {
+        return receiveCount.sum();
+    }
+
+    boolean isCacheable(String key) {
+        return findRule(key) != null;
+    }
+
+    String get(String key, Supplier<String> loader) {
+        Rule rule = findRule(key);
+        if (rule == null) {
+            return loader.get();
+        }
+        Entry entry = rule.entry(key);
+        Object value = entry.value;
+        if (value != null) {
+            rule.hits.increment();
+            return value == NULL_VALUE ? null : (String) value;
+        }
+        rule.misses.increment();
+        String loaded = loader.get();
+        if (rule.isCurrent(key, entry)) {
+            entry.value = loaded == null ? NULL_VALUE : loaded;
+        }
+        return loaded;
+    }
+
+    String hget(String key, String field, Supplier<String> loader) {
+        Rule rule = findRule(key);
+        if (rule == null) {
+            return loader.get();
+        }
+        Entry entry = rule.entry(key);
+        Object value = entry.fields.get(field);
+        if (value == null && entry.all != null) {
+            // hgetAll已经缓存了整个hash,直接从里面取
+            String v = entry.all.get(field);
+            value = v == null ? NULL_VALUE : v;
+        }
+        if (value != null) {
+            rule.hits.increment();
+            return value == NULL_VALUE ? null : (String) value;
+        }
+        rule.misses.increment();
+        String loaded = loader.get();
+        if (rule.isCurrent(key, entry)) {
+            entry.fields.put(field, loaded == null ? NULL_VALUE : loaded);
+        }
+        return loaded;
+    }
+
+    Map<String, String> hgetAll(String key, Supplier<Map<String, String>> loader) {
+        Rule rule = findRule(key);
+        if (rule == null) {
+            return loader.get();
+        }
+        Entry entry = rule.entry(key);
+        Map<String, String> all = entry.all;
+        if (all != null) {
+            rule.hits.increment();
+            return new HashMap<>(all);
+        }
+        rule.misses.increment();
+        Map<String, String> loaded = loader.get();
+        if (loaded != null && rule.isCurrent(key, entry)) {
+            entry.all = new HashMap<>(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * key被修改后调用:清掉本地缓存,并通知其他节点
+     *
+     * @param key
+     */
+    void invalidate(String key) {
+        if (!isCacheable(key)) {
+            return;
+        }
+        invalidateLocal(key);
+        try {
+            client.publish(channel, nodeId + ":" + key);
+            publishCount.increment();
+        } catch (RuntimeException e) {
+            // 发布失败不影响写操作本身,其他节点的副本只能等过期
+            logger.warn("redis near cache publish invalidation failed, key:{}", key, e);
+        }
+    }
+
+    private void invalidateLocal(String key) {
+        Rule rule = findRule(key);
+        if (rule != null) {
+            rule.cache.invalidate(key);
+        }
+    }
+
+    private Rule findRule(String key) {
+        Rule found = null;
+        for (Rule rule : rules) {
+            if (key.startsWith(rule.prefix)
+                && (found == null || rule.prefix.length() > found.prefix.length())) {
+                found = rule;
+            }
+        }
+        return found;
+    }
+
+    void start() {
+        client.getPubSubManager().subscribe(channel, invalidationListener);
+    }
+
+    void shutdown() {
+        client.getPubSubManager().unsubscribe(channel, invalidationListener);
+        for (Rule rule : rules) {
+            rule.cache.invalidateAll();
+        }
+    }
+
+    private void onInvalidation(String message) {
+        int idx = message.indexOf(':');
+        if (idx <= 0) {
+            return;
+        }
+        if (nodeId.equals(message.substring(0, idx))) {
+            return;
+        }
+        receiveCount.increment();
+        invalidateLocal(message.substring(idx + 1));
+    }
+
+    /**
+     * 一个key前缀的缓存规则及其统计数据
+     */
+    public static class Rule {
+
+        private final String               prefix;
+        private final long                 ttlMillis;
+        private final long                 maxSize;
+        private final Cache<String, Entry> cache;
+        private final LongAdder            hits   = new LongAdder();
+        private final LongAdder            misses = new LongAdder();
+
+        Rule(String prefix, long ttlMillis, long maxSize) {
+            this.prefix = prefix;
+            this.ttlMillis = ttlMillis;
+            this.maxSize = maxSize;
+            this.cache = CacheBuilder.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS).build();
+        }
+
+        private Entry entry(String key) {
+            Entry entry = cache.getIfPresent(key);
+            if (entry == null) {
+                Entry created = new Entry();
+                entry = cache.asMap().putIfAbsent(key, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            return entry;
+        }
+
+        /**
+         * 加载期间如果key被失效了,entry会被移除,此时不能再把加载到的(可能是旧的)值放进去
+         */
+        private boolean isCurrent(String key, Entry entry) {
+            return cache.getIfPresent(key) == entry;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public long getTtlMillis() {
+            return ttlMillis;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public long getSize() {
+            return cache.size();
+        }
+
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+        public long getMissCount() {
+            return misses.sum();
+        }
+    }
+
+    /**
+     * 一个key在本地缓存的内容:string值、hash的部分字段、或者整个hash
+     */
+    private static class Entry {
+
+        private volatile Object                     value;
+        private volatile Map<String, String>        all;
+        private final ConcurrentMap<String, Object> fields = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 接收其他节点的失效消息
+     */
+    private class InvalidationListener implements RedisPubSubManager.Listener {
+
+        @Override
+        public void onMessage(String channel, String message) {
+            onInvalidation(message);
+        }
+
+        @Override
+        public void onSubscribed(String channel) {
+            // 断开到重新订阅之间可能错过了失效消息,也可能缓存了之后被别人改掉的值,全部清掉最安全
+            invalidateAll();
+        }
+
+        @Override
+        public void onDisconnected(String channel) {
+            invalidateAll();
+        }
+
+        private void invalidateAll() {
+            for (Rule rule : rules) {
+                rule.cache.invalidateAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Tuple;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 22:10.<br/>
+ * 功能描述 : redis请求和响应的数据量统计,按命令和key前缀分别记录大小直方图(单位字节),并发现大value.<br/>
+ * <br/>
+ * key前缀取第一个分隔符(默认':')之前的部分,没有分隔符的key归入"*",前缀数量超过上限后新的前缀归入"_other",保证内存有上限.<br/>
+ * 大小按String的UTF-8字节数、byte[]的长度计算,集合类型为所有元素之和.只统计读命令和返回数据的写命令(getSet、pop等)的响应,
+ * 写命令的状态回复不计入.<br/>
+ * 单个请求或响应超过大value阈值时打印警告并回调监听器;设置了写入上限时,超限的写请求在发出之前就抛出IllegalArgumentException.
+ * 计算大小要遍历整个值,可以通过{@link #setEnabled(boolean)}关闭统计,关闭后只有设置了写入上限时才计算写请求的大小.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisPayloadMetrics {
+
+    private static final Logger                    logger             = LoggerFactory.getLogger(RedisPayloadMetrics.class);
+
+    static final String                            NO_PREFIX          = "*";
+    static final String                            OTHER_PREFIX       = "_other";
+
+    private final ConcurrentMap<String, SizeStats> commands           = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SizeStats> prefixes           = new ConcurrentHashMap<>();
+
+    private volatile boolean                       enabled            = true;
+    private volatile char                          prefixDelimiter    = ':';
+    private volatile int                           maxPrefixes        = 512;
+    private volatile long                          bigValueThreshold  = 1024 * 1024;
+    private volatile long                          maxWriteBytes      = 0;
+    private volatile BigValueListener              listener;
+
+    private final LongAdder                        bigValueCount      = new LongAdder();
+    private final LongAdder                        rejectedWriteCount = new LongAdder();
+
+    /**
+     * 记录一次写请求的数据量,超过写入上限时抛出异常,调用方应该在发出命令之前调用
+     *
+     * @param command 命令名
+     * @param key 操作的key
+     * @param value 写入的值,支持String、byte[]、数组、集合和Map
+     */
+    public void recordWrite(String command, String key, Object value) {
+        long limit = maxWriteBytes;
+        if (!enabled && limit <= 0) {
+            return;
+        }
+        long size = sizeOf(value);
+        if (size < 0) {
+            return;
+        }
+        if (limit > 0 && size > limit) {
+            rejectedWriteCount.increment();
+            throw new IllegalArgumentException("redis." + command + " value too large, key:" + key
+                                               + ", size:" + size + ", limit:" + limit);
+        }
+        if (!enabled) {
+            return;
+        }
+        stats(commands, command).request.record(size);
+        stats(prefixes, prefixOf(key)).request.record(size);
+        checkBigValue(command, key, size, true);
+    }
+
+    /**
+     * 记录一次响应的数据量,非数据类型的返回值(数字、状态等)会被忽略
+     *
+     * @param command 命令名
+     * @param key 操作的key,可以为null
+     * @param result 命令的返回值
+     */
+    public void recordRead(String command, String key, Object result) {
+        if (!enabled) {
+            return;
+        }
+        long size = sizeOf(result);
+        if (size < 0) {
+            return;
+        }
+        stats(commands, command).response.record(size);
+        if (key != null) {
+            stats(prefixes, prefixOf(key)).response.record(size);
+        }
+        checkBigValue(command, key, size, false);
+    }
+
+    private void checkBigValue(String command, String key, long size, boolean write) {
+        long threshold = bigValueThreshold;
+        if (threshold <= 0 || size < threshold) {
+            return;
+        }
+        bigValueCount.increment();
+        logger.warn("redis.{} big value, {} {} bytes, key:{}", command, write ? "write" : "read",
+                    size, key);
+        BigValueListener l = listener;
+        if (l != null) {
+            try {
+                l.onBigValue(command, key, size, write);
+            } catch (RuntimeException e) {
+                logger.warn("big value listener failed, command:{}, key:{}", command, key, e);
+            }
+        }
+    }
+
+    private SizeStats stats(ConcurrentMap<String, SizeStats> map, String name) {
+        SizeStats s = map.get(name);
+        if (s == null) {
+            if (map == prefixes && map.size() >= maxPrefixes) {
+                name = OTHER_PREFIX;
+            }
+            SizeStats created = new SizeStats();
+            s = map.putIfAbsent(name, created);
+            if (s == null) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    String prefixOf(String key) {
+        if (key == null) {
+            return NO_PREFIX;
+        }
+        int index = key.indexOf(prefixDelimiter);
+        return index > 0 ? key.substring(0, index) : NO_PREFIX;
+    }
+
+    /**
+     * @param value
+     * @return 数据大小,不是数据类型时返回-1
+     */
+    static long sizeOf(Object value) {
+        if (value instanceof String) {
+            return utf8Length((String) value);
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Collection) {
+            long size = 0;
+            for (Object o : (Collection<?>) value) {
+                size += Math.max(sizeOf(o), 0);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = 0;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                size += Math.max(sizeOf(e.getKey()), 0) + Math.max(sizeOf(e.getValue()), 0);
+            }
+            return size;
+        }
+        if (value instanceof Map.Entry) {
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) value;
+            return Math.max(sizeOf(e.getKey()), 0) + Math.max(sizeOf(e.getValue()), 0);
+        }
+        if (value instanceof Tuple) {
+            return ((Tuple) value).getBinaryElement().length + 8;
+        }
+        if (value instanceof Object[]) {
+            long size = 0;
+            for (Object o : (Object[]) value) {
+                size += Math.max(sizeOf(o), 0);
+            }
+            return size;
+        }
+        if (value instanceof ScanResult) {
+            return sizeOf(((ScanResult<?>) value).getResult());
+        }
+        return -1;
+    }
+
+    /**
+     * 不编码直接计算UTF-8字节数
+     */
+    static long utf8Length(String s) {
+        long size = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                // 代理对两个char共4个字节
+                size += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                size += 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return 按命令统计的请求/响应大小,按命令名排序
+     */
+    public Map<String, SizeSnapshot> getCommandSizes() {
+        return snapshot(commands);
+    }
+
+    /**
+     * @return 按key前缀统计的请求/响应大小,按前缀排序
+     */
+    public Map<String, SizeSnapshot> getPrefixSizes() {
+        return snapshot(prefixes);
+    }
+
+    private static Map<String, SizeSnapshot> snapshot(ConcurrentMap<String, SizeStats> map) {
+        Map<String, SizeSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, SizeStats> e : map.entrySet()) {
+            result.put(e.getKey(), new SizeSnapshot(e.getKey(), e.getValue().request.snapshot(),
+                                                    e.getValue().response.snapshot()));
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有直方图,一般用于按周期上报后重新统计
+     */
+    public void reset() {
+        commands.clear();
+        prefixes.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled 是否统计大小,默认开启;关闭后写入上限仍然生效
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getBigValueThreshold() {
+        return bigValueThreshold;
+    }
+
+    /**
+     * @param bigValueThreshold 大value阈值,字节,默认1MB;小于等于0表示不检查
+     */
+    public void setBigValueThreshold(long bigValueThreshold) {
+        this.bigValueThreshold = bigValueThreshold;
+    }
+
+    public long getMaxWriteBytes() {
+        return maxWriteBytes;
+    }
+
+    /**
+     * @param maxWriteBytes 单个写请求的上限,字节,超过时直接抛出IllegalArgumentException;小于等于0表示不限制(默认)
+     */
+    public void setMaxWriteBytes(long maxWriteBytes) {
+        this.maxWriteBytes = maxWriteBytes;
+    }
+
+    /**
+     * @param listener 发现大value时的回调,在业务线程中执行
+     */
+    public void setListener(BigValueListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param prefixDelimiter 截取key前缀的分隔符,默认':'
+     */
+    public void setPrefixDelimiter(char prefixDelimiter) {
+        this.prefixDelimiter = prefixDelimiter;
+    }
+
+    /**
+     * @param maxPrefixes 最多单独统计的前缀数量,默认512
+     */
+    public void setMaxPrefixes(int maxPrefixes) {
+        this.maxPrefixes = maxPrefixes;
+    }
+
+    /**
+     * @return 发现大value的次数
+     */
+    public long getBigValueCount() {
+        return bigValueCount.sum();
+    }
+
+    /**
+     * @return 因为超过写入上限被拒绝的次数
+     */
+    public long getRejectedWriteCount() {
+        return rejectedWriteCount.sum();
+    }
+
+    private static class SizeStats {
+
+        private final RedisHistogram request  = new RedisHistogram();
+        private final RedisHistogram response = new RedisHistogram();
+    }
+
+    /**
+     * 一个命令或前缀的大小分布快照,单位字节
+     */
+    public static class SizeSnapshot {
+
+        private final String                  name;
+        private final RedisHistogram.Snapshot request;
+        private final RedisHistogram.Snapshot response;
+
+        SizeSnapshot(String name, RedisHistogram.Snapshot request,
+                     RedisHistogram.Snapshot response) {
+            this.name = name;
+            this.request = request;
+            this.response = response;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 写入数据的大小分布
+         */
+        public RedisHistogram.Snapshot getRequest() {
+            return request;
+        }
+
+        /**
+         * @return 读取结果的大小分布
+         */
+        public RedisHistogram.Snapshot getResponse() {
+            return response;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": request(bytes)[" + request + "], response(bytes)[" + response + "]";
+        }
+    }
+
+    /**
+     * 大value回调
+     */
+    public interface BigValueListener {
+
+        /**
+         * @param command 命令名
+         * @param key 操作的key,多key命令为null
+         * @param bytes 估算的大小
+         * @param write true表示写请求,false表示读结果
+         */
+        void onBigValue(String command, String key, long bytes, boolean write);
+    }
+}
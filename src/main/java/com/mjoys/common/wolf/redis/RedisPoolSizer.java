@@ -0,0 +1,205 @@
+package com.mjoys.common.wolf.redis;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.util.Pool;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:55.<br/>
+ * 功能描述 : 连接池自适应调整,由监控线程定期调用{@link #adjust(String, Pool)},在[minTotal, maxTotal]之间调整maxTotal和minIdle.<br/>
+ * <br/>
+ * 扩容:有线程在等连接、活跃连接数达到maxTotal的80%、或者平均借连接耗时超过阈值且比上次采样更高,
+ * 就把maxTotal扩大一半(至少加1),minIdle提高到当前活跃数,让下一波请求不用现建连接.<br/>
+ * 缩容:活跃连接数连续idleTicksToShrink次采样都不超过maxTotal的25%,把maxTotal缩到活跃数的两倍和一半中较大的那个,
+ * minIdle降到活跃数,多出来的空闲连接由连接池的evictor回收.<br/>
+ * jedis的Pool没有暴露maxTotal,这里通过反射取内部的GenericObjectPool修改;JedisSentinelPool主从切换时会重建内部连接池,
+ * 恢复成初始配置,之后由下一次采样重新调整.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisPoolSizer {
+
+    private static final Logger           logger                    = LoggerFactory.getLogger(RedisPoolSizer.class);
+
+    private static final double           HIGH_WATERMARK            = 0.8;
+    private static final double           LOW_WATERMARK             = 0.25;
+
+    private static final Field            INTERNAL_POOL             = internalPoolField();
+
+    private final int                     minTotal;
+    private final int                     maxTotal;
+    private volatile long                 borrowWaitThresholdMillis = 5;
+    private volatile int                  idleTicksToShrink         = 12;
+
+    private final Map<Pool<?>, PoolState> states                    = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final LongAdder               growCount                 = new LongAdder();
+    private final LongAdder               shrinkCount               = new LongAdder();
+
+    /**
+     * @param minTotal maxTotal的下限
+     * @param maxTotal maxTotal的上限
+     */
+    public RedisPoolSizer(int minTotal, int maxTotal) {
+        if (minTotal <= 0 || maxTotal < minTotal) {
+            throw new IllegalArgumentException("pool size bounds must be 0 < minTotal <= maxTotal, got ["
+                                               + minTotal + ", " + maxTotal + "]");
+        }
+        this.minTotal = minTotal;
+        this.maxTotal = maxTotal;
+    }
+
+    private static Field internalPoolField() {
+        try {
+            Field field = Pool.class.getDeclaredField("internalPool");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            logger.warn("jedis Pool.internalPool not accessible, adaptive pool sizing disabled", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return 连接池内部的GenericObjectPool,取不到时返回null
+     */
+    static GenericObjectPool<?> internalPool(Pool<?> pool) {
+        if (INTERNAL_POOL == null) {
+            return null;
+        }
+        try {
+            return (GenericObjectPool<?>) INTERNAL_POOL.get(pool);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param pool 连接池
+     * @param defaultValue 取不到时的默认值
+     * @return 连接池当前的maxTotal
+     */
+    static int maxTotal(Pool<?> pool, int defaultValue) {
+        GenericObjectPool<?> internal = internalPool(pool);
+        return internal != null ? internal.getMaxTotal() : defaultValue;
+    }
+
+    /**
+     * 采样一次并按需调整,只应该由一个线程调用
+     *
+     * @param name 连接池名,用于日志
+     * @param pool 连接池
+     */
+    void adjust(String name, Pool<?> pool) {
+        GenericObjectPool<?> internal = internalPool(pool);
+        if (internal == null || internal.isClosed()) {
+            return;
+        }
+        PoolState state = states.get(pool);
+        if (state == null || state.internal != internal) {
+            // 第一次看到或者内部连接池被重建,以当时的配置为基准
+            state = new PoolState(internal);
+            states.put(pool, state);
+        }
+        int total = internal.getMaxTotal();
+        int active = internal.getNumActive();
+        int waiters = internal.getNumWaiters();
+        long meanWait = internal.getMeanBorrowWaitTimeMillis();
+        boolean waitRising = meanWait >= borrowWaitThresholdMillis && meanWait > state.lastMeanWait;
+        state.lastMeanWait = meanWait;
+
+        if (waiters > 0 || active >= total * HIGH_WATERMARK || waitRising) {
+            state.idleTicks = 0;
+            if (total < maxTotal) {
+                int newTotal = Math.min(maxTotal, Math.max(total + 1, total * 3 / 2));
+                resize(internal, state, newTotal, active);
+                growCount.increment();
+                logger.info("redis pool {} grows maxTotal {} -> {}, active:{}, waiters:{}, meanBorrowWait:{}ms",
+                            name, total, newTotal, active, waiters, meanWait);
+            }
+            return;
+        }
+        if (active > total * LOW_WATERMARK) {
+            state.idleTicks = 0;
+            return;
+        }
+        if (++state.idleTicks < idleTicksToShrink || total <= minTotal) {
+            return;
+        }
+        state.idleTicks = 0;
+        int newTotal = Math.max(minTotal, Math.max(active * 2, total / 2));
+        if (newTotal < total) {
+            resize(internal, state, newTotal, active);
+            shrinkCount.increment();
+            logger.info("redis pool {} shrinks maxTotal {} -> {}, active:{}", name, total, newTotal, active);
+        }
+    }
+
+    private static void resize(GenericObjectPool<?> internal, PoolState state, int newTotal, int active) {
+        int minIdle = Math.min(newTotal, Math.max(state.baseMinIdle, active));
+        internal.setMaxTotal(newTotal);
+        internal.setMaxIdle(Math.min(newTotal, Math.max(state.baseMaxIdle, minIdle)));
+        internal.setMinIdle(minIdle);
+    }
+
+    public int getMinTotal() {
+        return minTotal;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @param borrowWaitThresholdMillis 平均借连接耗时超过这个值且在上升时扩容,默认5
+     */
+    public void setBorrowWaitThresholdMillis(long borrowWaitThresholdMillis) {
+        this.borrowWaitThresholdMillis = borrowWaitThresholdMillis;
+    }
+
+    /**
+     * @param idleTicksToShrink 连续多少次采样都空闲才缩容,默认12,按5秒的采样间隔即1分钟
+     */
+    public void setIdleTicksToShrink(int idleTicksToShrink) {
+        this.idleTicksToShrink = idleTicksToShrink;
+    }
+
+    /**
+     * @return 扩容次数
+     */
+    public long getGrowCount() {
+        return growCount.sum();
+    }
+
+    /**
+     * @return 缩容次数
+     */
+    public long getShrinkCount() {
+        return shrinkCount.sum();
+    }
+
+    /**
+     * 单个连接池的采样状态,只在监控线程中读写
+     */
+    private static class PoolState {
+
+        private final GenericObjectPool<?> internal;
+        private final int                  baseMinIdle;
+        private final int                  baseMaxIdle;
+        private long                       lastMeanWait;
+        private int                        idleTicks;
+
+        PoolState(GenericObjectPool<?> internal) {
+            this.internal = internal;
+            this.baseMinIdle = internal.getMinIdle();
+            this.baseMaxIdle = internal.getMaxIdle();
+        }
+    }
+}
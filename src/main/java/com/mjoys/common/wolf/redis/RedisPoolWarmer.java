@@ -0,0 +1,180 @@
+package com.mjoys.common.wolf.redis;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.util.Pool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:56.<br/>
+ * 功能描述 : 连接池预热和启动就绪信号.<br/>
+ * <br/>
+ * 发布后的第一批请求要在业务线程上建TCP连接、AUTH,p99会抖动一段时间.预热时并行从每个连接池借出指定数量的连接,
+ * 逐个PING校验后一起归还,连接就留在池里成为空闲连接.数量不超过连接池的maxTotal和maxIdle,否则归还时会被直接销毁.<br/>
+ * 所有连接池预热完成后就绪信号放行,应用可以在接入流量之前调用{@link #awaitReady(long, TimeUnit)}等待;
+ * 每个连接池至少有一个连接PING通才算健康,否则awaitReady返回false,由应用决定是否继续启动.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisPoolWarmer {
+
+    private static final Logger  logger         = LoggerFactory.getLogger(RedisPoolWarmer.class);
+
+    private static final int     MAX_PARALLEL   = 16;
+
+    private final CountDownLatch ready          = new CountDownLatch(1);
+    private volatile boolean     healthy        = true;
+    private volatile long        warmupMillis   = -1;
+
+    private final LongAdder      warmedCount    = new LongAdder();
+    private final LongAdder      failedCount    = new LongAdder();
+
+    /**
+     * 并行借出connections个连接并PING,全部完成后归还
+     *
+     * @param name 连接池名,用于日志
+     * @param pool 连接池
+     * @param connections 预热的连接数
+     * @param ping 校验连接的操作,失败时抛异常
+     * @param <T> 连接类型
+     * @return PING通的连接数
+     */
+    <T extends Closeable> int warm(String name, Pool<T> pool, int connections, Consumer<T> ping) {
+        GenericObjectPool<?> internal = RedisPoolSizer.internalPool(pool);
+        if (internal != null) {
+            connections = Math.min(connections, Math.min(internal.getMaxTotal(), internal.getMaxIdle()));
+        }
+        if (connections <= 0) {
+            return 0;
+        }
+        List<T> borrowed = new ArrayList<>(connections);
+        List<CompletableFuture<T>> futures = new ArrayList<>(connections);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(connections, MAX_PARALLEL), r -> {
+            Thread t = new Thread(r, "redis-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < connections; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    T resource = pool.getResource();
+                    try {
+                        ping.accept(resource);
+                        return resource;
+                    } catch (RuntimeException e) {
+                        closeQuietly(resource);
+                        throw e;
+                    }
+                }, executor));
+            }
+            Exception error = null;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    borrowed.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // 还没取到结果的任务仍在执行,完成后直接归还,否则借出的连接没有人归还
+                    for (int j = i; j < futures.size(); j++) {
+                        futures.get(j).thenAccept(RedisPoolWarmer::closeQuietly);
+                    }
+                    break;
+                } catch (Exception e) {
+                    error = e;
+                    failedCount.increment();
+                }
+            }
+            warmedCount.add(borrowed.size());
+            if (error != null) {
+                logger.warn("redis pool {} warmed {}/{} connections", name, borrowed.size(), connections, error);
+            }
+            return borrowed.size();
+        } finally {
+            executor.shutdown();
+            for (T resource : borrowed) {
+                closeQuietly(resource);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("return warmed redis connection failed", e);
+        }
+    }
+
+    /**
+     * 记录一个连接池的预热结果,没有一个连接PING通时标记为不健康
+     */
+    void onWarmed(String name, int warmed, int expected) {
+        if (expected > 0 && warmed == 0) {
+            healthy = false;
+            logger.error("redis pool {} warm up failed, no connection available", name);
+        }
+    }
+
+    /**
+     * 所有连接池预热完成后调用,放行就绪信号
+     *
+     * @param startNanos 预热开始时间
+     */
+    void markReady(long startNanos) {
+        warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        ready.countDown();
+        logger.info("redis warm up finished in {}ms, connections:{}, failed:{}, healthy:{}", warmupMillis,
+                    getWarmedCount(), getFailedCount(), healthy);
+    }
+
+    /**
+     * 等待预热完成
+     *
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 预热已完成且每个连接池都可用时返回true
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit) && healthy;
+    }
+
+    /**
+     * @return 预热已完成且每个连接池都可用
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0 && healthy;
+    }
+
+    /**
+     * @return 预热耗时,毫秒;未完成时返回-1
+     */
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    /**
+     * @return 预热成功的连接数
+     */
+    public long getWarmedCount() {
+        return warmedCount.sum();
+    }
+
+    /**
+     * @return 预热失败的连接数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+}
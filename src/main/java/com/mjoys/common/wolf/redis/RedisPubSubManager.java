@@ -0,0 +1,429 @@
+package com.mjoys.common.wolf.redis;
+
+import com.mjoys.common.wolf.utils.UUIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:58.<br/>
+ * 功能描述 : 发布订阅管理器,所有channel和pattern共用一个独立的订阅连接,通过{@link RedisClient#getPubSubManager()}获得.<br/>
+ * <br/>
+ * 订阅连接不从连接池借,不会占用普通命令的连接.连接上始终订阅一个内部channel,所以没有任何监听器时订阅循环也不会退出,
+ * 之后增删channel/pattern只是在这个连接上追加SUBSCRIBE/UNSUBSCRIBE.
+ * 集群模式下PUBLISH会广播到所有节点,订阅任意一个节点就能收到全部消息,因此每个客户端也只需要一个订阅连接.<br/>
+ * 连接断开(包括sentinel主从切换)后每秒重连一次,每次重连都重新解析节点地址,并重新订阅所有channel和pattern;
+ * 断开期间的消息已经丢失,监听器会收到{@link Listener#onSubscribed(String)},可以在里面做补偿.<br/>
+ * 消息在读连接的线程上只做分发:按channel哈希到固定的工作线程,同一个channel的消息保持顺序,慢监听器只会堵住自己所在的队列.
+ * 队列满时丢弃消息并计数,不会反压到订阅连接(否则redis会因为输出缓冲区超限断开连接).<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisPubSubManager {
+
+    private static final Logger                         logger         = LoggerFactory.getLogger(RedisPubSubManager.class);
+
+    private static final long                           RETRY_MILLIS   = 1000;
+
+    private final Supplier<HostAndPort>                 nodeSupplier;
+    private final int                                   timeout;
+    private final String                                password;
+    private final String                                placeholder    = "__redis_pubsub__:" + UUIDUtils.createUUID();
+
+    private final ConcurrentMap<String, List<Listener>> channels       = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<Listener>> patterns       = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ChannelStats>   stats          = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor[]                  workers;
+
+    private final Object                                writeLock      = new Object();
+    private volatile boolean                            running        = true;
+    private volatile boolean                            connected;
+    private volatile JedisPubSub                        pubSub;
+    private volatile Jedis                              connection;
+    private Thread                                      subscribeThread;
+
+    private final LongAdder                             reconnectCount = new LongAdder();
+
+    /**
+     * @param nodeSupplier 每次建立订阅连接时调用,返回要连接的节点
+     * @param timeout 连接超时,毫秒
+     * @param password 密码,无密码传null
+     * @param threads 分发消息的工作线程数
+     * @param queueCapacity 每个工作线程的队列长度
+     */
+    RedisPubSubManager(Supplier<HostAndPort> nodeSupplier, int timeout, String password, int threads,
+                       int queueCapacity) {
+        this.nodeSupplier = nodeSupplier;
+        this.timeout = timeout;
+        this.password = password;
+        this.workers = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+            String name = "redis-pubsub-worker-" + (i + 1);
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                                                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                                                    Thread t = new Thread(r, name);
+                                                    t.setDaemon(true);
+                                                    return t;
+                                                });
+        }
+    }
+
+    /**
+     * 订阅一个channel,同一个channel可以有多个监听器
+     *
+     * @param channel
+     * @param listener
+     */
+    public void subscribe(String channel, Listener listener) {
+        add(channels, channel, listener);
+        if (connected) {
+            send(ps -> ps.subscribe(channel));
+            dispatchSubscribed(channel, listener);
+        }
+    }
+
+    /**
+     * 按pattern订阅,监听器收到的是实际的channel
+     *
+     * @param pattern
+     * @param listener
+     */
+    public void psubscribe(String pattern, Listener listener) {
+        add(patterns, pattern, listener);
+        if (connected) {
+            send(ps -> ps.psubscribe(pattern));
+            dispatchSubscribed(pattern, listener);
+        }
+    }
+
+    /**
+     * 取消一个监听器,channel上没有监听器时退订
+     *
+     * @param channel
+     * @param listener
+     */
+    public void unsubscribe(String channel, Listener listener) {
+        if (remove(channels, channel, listener) && connected) {
+            send(ps -> ps.unsubscribe(channel));
+        }
+    }
+
+    /**
+     * 取消一个pattern监听器,pattern上没有监听器时退订
+     *
+     * @param pattern
+     * @param listener
+     */
+    public void punsubscribe(String pattern, Listener listener) {
+        if (remove(patterns, pattern, listener) && connected) {
+            send(ps -> ps.punsubscribe(pattern));
+        }
+    }
+
+    private void add(ConcurrentMap<String, List<Listener>> map, String name, Listener listener) {
+        map.computeIfAbsent(name, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * @return 是否已经没有监听器
+     */
+    private boolean remove(ConcurrentMap<String, List<Listener>> map, String name, Listener listener) {
+        boolean[] empty = new boolean[1];
+        map.computeIfPresent(name, (k, list) -> {
+            list.remove(listener);
+            empty[0] = list.isEmpty();
+            return empty[0] ? null : list;
+        });
+        return empty[0];
+    }
+
+    /**
+     * 在订阅连接上发命令,和读线程回调中的发送串行
+     */
+    private void send(Consumer<JedisPubSub> command) {
+        synchronized (writeLock) {
+            JedisPubSub ps = pubSub;
+            if (ps == null || !ps.isSubscribed()) {
+                // 还没连上,连上后会统一重新订阅
+                return;
+            }
+            try {
+                command.accept(ps);
+            } catch (RuntimeException e) {
+                logger.warn("send pub/sub command failed, will resubscribe after reconnect", e);
+            }
+        }
+    }
+
+    void start() {
+        subscribeThread = new Thread("redis-pubsub-subscriber") {
+
+            @Override
+            public void run() {
+                while (running) {
+                    Jedis jedis = null;
+                    try {
+                        HostAndPort node = nodeSupplier.get();
+                        jedis = new Jedis(node.getHost(), node.getPort(), timeout);
+                        if (password != null) {
+                            jedis.auth(password);
+                        }
+                        connection = jedis;
+                        JedisPubSub ps = new Dispatcher();
+                        pubSub = ps;
+                        // 阻塞直到连接断开或者关闭
+                        jedis.subscribe(ps, placeholder);
+                    } catch (RuntimeException e) {
+                        if (running) {
+                            logger.warn("redis pub/sub connection lost, will reconnect", e);
+                        }
+                    } finally {
+                        onDisconnected();
+                        connection = null;
+                        if (jedis != null) {
+                            jedis.close();
+                        }
+                    }
+                    if (running) {
+                        reconnectCount.increment();
+                        try {
+                            Thread.sleep(RETRY_MILLIS);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+        };
+        subscribeThread.setDaemon(true);
+        subscribeThread.start();
+    }
+
+    /**
+     * 内部channel订阅成功说明连接可用,重新订阅所有channel和pattern
+     */
+    private void onConnected(JedisPubSub ps) {
+        synchronized (writeLock) {
+            connected = true;
+            List<String> names = new ArrayList<>(channels.keySet());
+            if (!names.isEmpty()) {
+                ps.subscribe(names.toArray(new String[names.size()]));
+            }
+            List<String> pats = new ArrayList<>(patterns.keySet());
+            if (!pats.isEmpty()) {
+                ps.psubscribe(pats.toArray(new String[pats.size()]));
+            }
+        }
+        logger.info("redis pub/sub connected, channels:{}, patterns:{}", channels.size(), patterns.size());
+        channels.forEach((name, list) -> list.forEach(l -> dispatchSubscribed(name, l)));
+        patterns.forEach((name, list) -> list.forEach(l -> dispatchSubscribed(name, l)));
+    }
+
+    private void onDisconnected() {
+        if (!connected) {
+            return;
+        }
+        connected = false;
+        channels.forEach((name, list) -> list.forEach(l -> dispatch(name, () -> l.onDisconnected(name))));
+        patterns.forEach((name, list) -> list.forEach(l -> dispatch(name, () -> l.onDisconnected(name))));
+    }
+
+    private void dispatchSubscribed(String name, Listener listener) {
+        dispatch(name, () -> listener.onSubscribed(name));
+    }
+
+    private void dispatchMessage(String name, List<Listener> listeners, String channel, String message) {
+        ChannelStats s = stats(name);
+        s.received.increment();
+        long received = System.nanoTime();
+        try {
+            worker(name).execute(() -> {
+                s.lag.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - received));
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onMessage(channel, message);
+                    } catch (RuntimeException e) {
+                        logger.warn("redis pub/sub listener failed, channel:{}", channel, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            s.dropped.increment();
+            logger.warn("redis pub/sub dispatch queue is full, drop message of {}", channel);
+        }
+    }
+
+    /**
+     * 连接状态事件,队列满时在当前线程执行,不能丢
+     */
+    private void dispatch(String name, Runnable event) {
+        Runnable safe = () -> {
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                logger.warn("redis pub/sub listener failed, channel:{}", name, e);
+            }
+        };
+        try {
+            worker(name).execute(safe);
+        } catch (RejectedExecutionException e) {
+            safe.run();
+        }
+    }
+
+    private ThreadPoolExecutor worker(String name) {
+        return workers[(name.hashCode() & Integer.MAX_VALUE) % workers.length];
+    }
+
+    private ChannelStats stats(String name) {
+        ChannelStats s = stats.get(name);
+        if (s == null) {
+            s = stats.computeIfAbsent(name, k -> new ChannelStats());
+        }
+        return s;
+    }
+
+    void shutdown() {
+        running = false;
+        Jedis jedis = connection;
+        if (jedis != null) {
+            // 直接断开socket,读线程随之退出订阅循环
+            jedis.disconnect();
+        }
+        if (subscribeThread != null) {
+            subscribeThread.interrupt();
+        }
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * @return 订阅连接当前是否可用
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return 重连次数
+     */
+    public long getReconnectCount() {
+        return reconnectCount.sum();
+    }
+
+    /**
+     * @return 各channel/pattern的消息统计,按名字排序
+     */
+    public Map<String, ChannelStats> getChannelStats() {
+        return new TreeMap<>(stats);
+    }
+
+    private class Dispatcher extends JedisPubSub {
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            if (placeholder.equals(channel)) {
+                onConnected(this);
+            }
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            List<Listener> listeners = channels.get(channel);
+            if (listeners != null) {
+                dispatchMessage(channel, listeners, channel, message);
+            }
+        }
+
+        @Override
+        public void onPMessage(String pattern, String channel, String message) {
+            List<Listener> listeners = patterns.get(pattern);
+            if (listeners != null) {
+                dispatchMessage(pattern, listeners, channel, message);
+            }
+        }
+    }
+
+    /**
+     * 消息监听器,在工作线程中回调
+     */
+    public interface Listener {
+
+        /**
+         * @param channel 消息所在的channel,pattern订阅时是实际的channel
+         * @param message 消息内容
+         */
+        void onMessage(String channel, String message);
+
+        /**
+         * 订阅生效时调用,包括第一次订阅和每次重连之后;重连前断开期间的消息已经丢失
+         *
+         * @param channel 订阅的channel或pattern
+         */
+        default void onSubscribed(String channel) {
+        }
+
+        /**
+         * 订阅连接断开时调用
+         *
+         * @param channel 订阅的channel或pattern
+         */
+        default void onDisconnected(String channel) {
+        }
+    }
+
+    /**
+     * 单个channel或pattern的消息统计
+     */
+    public static class ChannelStats {
+
+        private final LongAdder      received = new LongAdder();
+        private final LongAdder      dropped  = new LongAdder();
+        private final RedisHistogram lag      = new RedisHistogram();
+
+        /**
+         * @return 收到的消息数
+         */
+        public long getReceivedCount() {
+            return received.sum();
+        }
+
+        /**
+         * @return 分发队列满被丢弃的消息数
+         */
+        public long getDroppedCount() {
+            return dropped.sum();
+        }
+
+        /**
+         * @return 从收到消息到监听器开始处理的延迟,微秒
+         */
+        public RedisHistogram.Snapshot getLag() {
+            return lag.snapshot();
+        }
+
+        @Override
+        public String toString() {
+            return "received:" + getReceivedCount() + ", dropped:" + getDroppedCount() + ", lag(us):"
+                   + getLag();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.mjoys.common.wolf.redis;
+
+import com.mjoys.common.wolf.utils.UUIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:59.<br/>
+ * 功能描述 : 基于list的可靠队列消费者,批量取出、至少一次投递,通过{@link RedisClient#queueConsumer(String, int, int, BatchHandler)}创建.<br/>
+ * <br/>
+ * 生产者LPUSH到队列,消费者从右边取.每个消费者实例有自己的处理中列表(queue:processing:实例id),
+ * 取出时用RPOPLPUSH原子地把元素移到处理中列表,处理成功后从处理中列表删除(ack),处理失败重新放回队列尾部.<br/>
+ * 取数:先用一次lua脚本连续RPOPLPUSH最多batchSize个;队列为空时改用BRPOPLPUSH阻塞等待第一个,拿到后再用脚本补满一批.
+ * 队列有积压时每批只有一次往返,吞吐随batchSize增长而不是受RTT限制.阻塞等待走{@link RedisBlockingLane},不占用普通连接池.<br/>
+ * 取到的一批交给工作线程池处理,线程池满时由取数线程自己处理,自然形成反压.<br/>
+ * 每个实例定期刷新心跳key并登记到queue:consumers集合;回收线程发现某个实例心跳过期(进程崩溃、被kill),
+ * 就把它处理中列表里的元素放回队列.正常关闭时先等工作线程处理完,再把没处理的放回队列.<br/>
+ * 注意:集群模式下RPOPLPUSH和脚本要求队列和处理中列表在同一个slot,队列名需要带hash tag,例如{orders}.
+ * 处理逻辑卡死但进程还活着时心跳正常,元素不会被回收.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisQueueConsumer {
+
+    private static final Logger            logger          = LoggerFactory.getLogger(RedisQueueConsumer.class);
+
+    /** KEYS: 队列, 处理中列表; ARGV: 最多取几个;返回取到的元素 */
+    private static final RedisScript       FETCH_SCRIPT    = new RedisScript("queue.fetch",
+        "local items = {} "
+        + "for i = 1, tonumber(ARGV[1]) do "
+        + "  local v = redis.call('rpoplpush', KEYS[1], KEYS[2]) "
+        + "  if not v then break end "
+        + "  items[i] = v "
+        + "end "
+        + "return items");
+
+    /** KEYS: 处理中列表; ARGV: 处理完的元素 */
+    private static final RedisScript       ACK_SCRIPT      = new RedisScript("queue.ack",
+        "local n = 0 "
+        + "for i = 1, #ARGV do n = n + redis.call('lrem', KEYS[1], -1, ARGV[i]) end "
+        + "return n");
+
+    /** KEYS: 处理中列表, 队列; ARGV: 处理失败的元素,放回队列尾部 */
+    private static final RedisScript       REQUEUE_SCRIPT  = new RedisScript("queue.requeue",
+        "local n = 0 "
+        + "for i = 1, #ARGV do "
+        + "  if redis.call('lrem', KEYS[1], -1, ARGV[i]) > 0 then "
+        + "    redis.call('lpush', KEYS[2], ARGV[i]) n = n + 1 "
+        + "  end "
+        + "end "
+        + "return n");
+
+    /** KEYS: 处理中列表, 队列; ARGV: 最多移动几个;返回移动的个数 */
+    private static final RedisScript       RECLAIM_SCRIPT  = new RedisScript("queue.reclaim",
+        "local n = 0 "
+        + "for i = 1, tonumber(ARGV[1]) do "
+        + "  if not redis.call('rpoplpush', KEYS[1], KEYS[2]) then break end "
+        + "  n = n + 1 "
+        + "end "
+        + "return n");
+
+    private static final int               RECLAIM_BATCH   = 1000;
+
+    private final RedisClient              client;
+    private final String                   queue;
+    private final int                      batchSize;
+    private final BatchHandler             handler;
+    private final String                   consumerId      = UUIDUtils.createUUID();
+    private final String                   processing;
+    private final ThreadPoolExecutor       workers;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile int                   blockSeconds    = 1;
+    private volatile long                  heartbeatMillis = 5000;
+    private volatile long                  reapMillis      = 30000;
+
+    private volatile boolean               running;
+    private Thread                         fetchThread;
+
+    private final LongAdder                fetchedCount    = new LongAdder();
+    private final LongAdder                batchCount      = new LongAdder();
+    private final LongAdder                ackedCount      = new LongAdder();
+    private final LongAdder                failedCount     = new LongAdder();
+    private final LongAdder                reclaimedCount  = new LongAdder();
+
+    /**
+     * @param client
+     * @param queue 队列的key
+     * @param batchSize 每批最多取几个
+     * @param workerThreads 处理线程数
+     * @param handler 处理逻辑
+     */
+    RedisQueueConsumer(RedisClient client, String queue, int batchSize, int workerThreads,
+                       BatchHandler handler) {
+        if (batchSize <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException("batchSize and workerThreads must be > 0");
+        }
+        this.client = client;
+        this.queue = queue;
+        this.batchSize = batchSize;
+        this.handler = handler;
+        this.processing = queue + ":processing:" + consumerId;
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                                              new ArrayBlockingQueue<>(workerThreads), r -> {
+                                                  Thread t = new Thread(r, "redis-queue-worker-" + queue);
+                                                  t.setDaemon(true);
+                                                  return t;
+                                              }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-queue-reaper-" + queue);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 开始消费
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        heartbeat();
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis,
+                                         TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::reap, 0, reapMillis, TimeUnit.MILLISECONDS);
+        fetchThread = new Thread(this::fetchLoop, "redis-queue-fetcher-" + queue);
+        fetchThread.setDaemon(true);
+        fetchThread.start();
+    }
+
+    private void fetchLoop() {
+        boolean backlog = true;
+        while (running) {
+            try {
+                List<String> items = backlog ? fetch(batchSize) : Collections.emptyList();
+                if (items.isEmpty()) {
+                    String first = client.brpoplpush(queue, processing, blockSeconds);
+                    if (first == null) {
+                        backlog = false;
+                        continue;
+                    }
+                    items = new ArrayList<>(batchSize);
+                    items.add(first);
+                    if (batchSize > 1) {
+                        items.addAll(fetch(batchSize - 1));
+                    }
+                }
+                // 取满一批说明还有积压,下一轮直接用脚本取,不再阻塞
+                backlog = items.size() >= batchSize;
+                fetchedCount.add(items.size());
+                batchCount.increment();
+                List<String> batch = items;
+                workers.execute(() -> process(batch));
+            } catch (RuntimeException e) {
+                if (running) {
+                    logger.warn("fetch redis queue {} failed", queue, e);
+                    sleep(1000);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> fetch(int n) {
+        return (List<String>) client.eval(FETCH_SCRIPT, Arrays.asList(queue, processing),
+                                          Collections.singletonList(String.valueOf(n)));
+    }
+
+    private void process(List<String> batch) {
+        boolean success = false;
+        try {
+            handler.handle(batch);
+            success = true;
+        } catch (Exception e) {
+            logger.warn("handle redis queue {} batch of {} failed, requeue", queue, batch.size(), e);
+        }
+        try {
+            client.eval(success ? ACK_SCRIPT : REQUEUE_SCRIPT,
+                        success ? Collections.singletonList(processing) : Arrays.asList(processing, queue),
+                        batch);
+            (success ? ackedCount : failedCount).add(batch.size());
+        } catch (RuntimeException e) {
+            // 元素还在处理中列表里,本实例关闭或者心跳过期后会被放回队列
+            logger.warn("{} redis queue {} batch failed", success ? "ack" : "requeue", queue, e);
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            client.psetex(heartbeatKey(consumerId), heartbeatMillis * 3, "1");
+            client.sadd(consumersKey(), consumerId);
+        } catch (RuntimeException e) {
+            logger.warn("redis queue {} heartbeat failed", queue, e);
+        }
+    }
+
+    /**
+     * 回收心跳过期的实例的处理中元素
+     */
+    private void reap() {
+        try {
+            Set<String> consumers = client.smembers(consumersKey());
+            for (String id : consumers) {
+                if (id.equals(consumerId) || client.exists(heartbeatKey(id))) {
+                    continue;
+                }
+                long moved = reclaim(queue + ":processing:" + id);
+                client.srem(consumersKey(), id);
+                if (moved > 0) {
+                    logger.warn("redis queue {} consumer {} is dead, requeue {} items", queue, id, moved);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("reap redis queue {} failed", queue, e);
+        }
+    }
+
+    private long reclaim(String list) {
+        long total = 0;
+        while (true) {
+            Long moved = (Long) client.eval(RECLAIM_SCRIPT, Arrays.asList(list, queue),
+                                            Collections.singletonList(String.valueOf(RECLAIM_BATCH)));
+            total += moved;
+            if (moved < RECLAIM_BATCH) {
+                reclaimedCount.add(total);
+                return total;
+            }
+        }
+    }
+
+    private String consumersKey() {
+        return queue + ":consumers";
+    }
+
+    private String heartbeatKey(String id) {
+        return queue + ":consumer:" + id;
+    }
+
+    /**
+     * 停止取数,等工作线程处理完已取出的元素,没处理的放回队列
+     *
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @throws InterruptedException 等待时被中断
+     */
+    public synchronized void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (fetchThread != null) {
+            // 最多等一个阻塞超时
+            fetchThread.join(TimeUnit.SECONDS.toMillis(blockSeconds) + 1000);
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(timeout, unit)) {
+            logger.warn("redis queue {} workers not finished in time, unprocessed items will be requeued",
+                        queue);
+        }
+        scheduler.shutdownNow();
+        try {
+            long moved = reclaim(processing);
+            client.del(heartbeatKey(consumerId));
+            client.srem(consumersKey(), consumerId);
+            if (moved > 0) {
+                logger.info("redis queue {} requeued {} unprocessed items on shutdown", queue, moved);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("redis queue {} cleanup failed, items will be reaped by other consumers", queue, e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param blockSeconds 队列为空时BRPOPLPUSH的阻塞秒数,也决定了关闭时最多等多久,默认1;start之前设置
+     */
+    public void setBlockSeconds(int blockSeconds) {
+        this.blockSeconds = blockSeconds;
+    }
+
+    /**
+     * @param heartbeatMillis 心跳间隔,心跳key的过期时间是它的3倍,默认5000;start之前设置
+     */
+    public void setHeartbeatMillis(long heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * @param reapMillis 检查死亡实例的间隔,默认30000;start之前设置
+     */
+    public void setReapMillis(long reapMillis) {
+        this.reapMillis = reapMillis;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public String getConsumerId() {
+        return consumerId;
+    }
+
+    /**
+     * @return 取出的元素数
+     */
+    public long getFetchedCount() {
+        return fetchedCount.sum();
+    }
+
+    /**
+     * @return 取数的批次数,fetched/batches即平均批大小
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return 处理成功并确认的元素数
+     */
+    public long getAckedCount() {
+        return ackedCount.sum();
+    }
+
+    /**
+     * @return 处理失败放回队列的元素数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return 从死亡实例或关闭时回收的元素数
+     */
+    public long getReclaimedCount() {
+        return reclaimedCount.sum();
+    }
+
+    /**
+     * 批量处理逻辑
+     */
+    public interface BatchHandler {
+
+        /**
+         * 处理一批元素,正常返回表示整批成功;抛出异常时整批放回队列尾部重试,所以处理逻辑需要幂等
+         *
+         * @param items 按出队顺序排列的元素
+         * @throws Exception 处理失败
+         */
+        void handle(List<String> items) throws Exception;
+    }
+}
@@ -0,0 +1,289 @@
+package com.mjoys.common.wolf.redis;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mjoys.common.wolf.utils.UUIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:50.<br/>
+ * 功能描述 : 基于redis的分布式限流器,支持令牌桶和滑动窗口日志两种算法,通过RedisClient的tokenBucketLimiter/slidingWindowLimiter创建.<br/>
+ * <br/>
+ * 每个限流对象(例如用户id、商户id)对应一个key:name:id,一次判断就是一次EVALSHA,读取、计算、扣减在脚本里原子完成.
+ * 令牌桶用hash保存剩余令牌数和上次补充时间,允许突发到桶容量;滑动窗口用zset记录窗口内每个许可的时间,严格限制任意窗口内的总数,
+ * 但每个许可占一个zset元素,只适合窗口内许可数不大(几千以内)的场景.<br/>
+ * 被拒绝时脚本同时算出最早什么时候能拿到同样多的许可,本地记下来,在那之前同一个对象再申请不少于这个数量的许可直接拒绝,
+ * 不访问redis;申请更少的许可仍然会去redis判断.<br/>
+ * 时间取的是各个客户端的本地时间,机器之间的时钟误差会直接变成限流误差.<br/>
+ * redis不可用时默认放行(fail open)并打印警告,可以通过{@link #setFailOpen(boolean)}改为拒绝.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisRateLimiter {
+
+    private static final Logger        logger                = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+    /** ARGV: 容量, 每毫秒补充的令牌数, 当前时间, 申请数, key过期时间;返回{是否通过, 需要等待的毫秒数} */
+    private static final RedisScript   TOKEN_BUCKET_SCRIPT   = new RedisScript("rateLimiter.tokenBucket",
+        "local capacity = tonumber(ARGV[1]) "
+        + "local rate = tonumber(ARGV[2]) "
+        + "local now = tonumber(ARGV[3]) "
+        + "local requested = tonumber(ARGV[4]) "
+        + "local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts') "
+        + "local tokens = tonumber(bucket[1]) "
+        + "local ts = tonumber(bucket[2]) "
+        + "if tokens == nil then tokens = capacity ts = now end "
+        + "if now > ts then tokens = math.min(capacity, tokens + (now - ts) * rate) ts = now end "
+        + "if tokens >= requested then "
+        + "  redis.call('hmset', KEYS[1], 'tokens', tokens - requested, 'ts', ts) "
+        + "  redis.call('pexpire', KEYS[1], ARGV[5]) "
+        + "  return {1, 0} "
+        + "end "
+        + "return {0, math.ceil((requested - tokens) / rate)}");
+
+    /** ARGV: 窗口内上限, 窗口毫秒数, 当前时间, 申请数, 成员前缀;返回{是否通过, 需要等待的毫秒数} */
+    private static final RedisScript   SLIDING_WINDOW_SCRIPT = new RedisScript("rateLimiter.slidingWindow",
+        "local limit = tonumber(ARGV[1]) "
+        + "local window = tonumber(ARGV[2]) "
+        + "local now = tonumber(ARGV[3]) "
+        + "local requested = tonumber(ARGV[4]) "
+        + "redis.call('zremrangebyscore', KEYS[1], '-inf', now - window) "
+        + "local count = redis.call('zcard', KEYS[1]) "
+        + "if count + requested <= limit then "
+        + "  for i = 1, requested do redis.call('zadd', KEYS[1], now, ARGV[5] .. ':' .. i) end "
+        + "  redis.call('pexpire', KEYS[1], window) "
+        + "  return {1, 0} "
+        + "end "
+        + "local need = count + requested - limit "
+        + "local oldest = redis.call('zrange', KEYS[1], need - 1, need - 1, 'WITHSCORES') "
+        + "return {0, tonumber(oldest[2]) + window - now}");
+
+    private final RedisClient          client;
+    private final Algorithm            algorithm;
+    private final String               name;
+    private final long                 limit;
+    private final double               permitsPerMillis;
+    private final long                 windowMillis;
+    private final long                 keyTtlMillis;
+
+    private final String               nodeId                = UUIDUtils.createUUID();
+    private final AtomicLong           sequence              = new AtomicLong();
+    private final Cache<String, Block> blocks;
+
+    private volatile boolean           failOpen              = true;
+
+    private final LongAdder            allowedCount          = new LongAdder();
+    private final LongAdder            rejectedCount         = new LongAdder();
+    private final LongAdder            localRejectedCount    = new LongAdder();
+    private final LongAdder            errorCount            = new LongAdder();
+
+    private RedisRateLimiter(RedisClient client, Algorithm algorithm, String name, long limit,
+                             double permitsPerMillis, long windowMillis, long keyTtlMillis) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("rate limiter limit must be > 0");
+        }
+        this.client = client;
+        this.algorithm = algorithm;
+        this.name = name;
+        this.limit = limit;
+        this.permitsPerMillis = permitsPerMillis;
+        this.windowMillis = windowMillis;
+        this.keyTtlMillis = keyTtlMillis;
+        this.blocks = CacheBuilder.newBuilder().maximumSize(100000)
+            .expireAfterWrite(Math.max(keyTtlMillis, 1), TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * @param capacity 桶容量,即允许的最大突发
+     * @param permitsPerSecond 每秒补充的令牌数
+     */
+    static RedisRateLimiter tokenBucket(RedisClient client, String name, long capacity,
+                                        double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be > 0");
+        }
+        double perMillis = permitsPerSecond / 1000;
+        // 桶从空到满需要的时间,之后key不再有意义
+        long ttl = (long) Math.ceil(capacity / perMillis) + 1000;
+        return new RedisRateLimiter(client, Algorithm.TOKEN_BUCKET, name, capacity, perMillis, 0,
+                                    ttl);
+    }
+
+    /**
+     * @param limit 任意windowMillis毫秒内最多的许可数
+     * @param windowMillis 窗口长度
+     */
+    static RedisRateLimiter slidingWindow(RedisClient client, String name, long limit,
+                                          long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be > 0");
+        }
+        return new RedisRateLimiter(client, Algorithm.SLIDING_WINDOW, name, limit, 0, windowMillis,
+                                    windowMillis);
+    }
+
+    /**
+     * 申请一个许可
+     *
+     * @param id 限流对象,例如用户id
+     * @return 是否通过
+     */
+    public boolean tryAcquire(String id) {
+        return tryAcquire(id, 1);
+    }
+
+    /**
+     * 一次申请多个许可,要么全部拿到,要么一个都不扣
+     *
+     * @param id 限流对象
+     * @param permits 许可数,不能超过容量/窗口上限
+     * @return 是否通过
+     */
+    public boolean tryAcquire(String id, int permits) {
+        if (permits <= 0 || permits > limit) {
+            throw new IllegalArgumentException("permits must be in [1, " + limit + "], got " + permits);
+        }
+        long now = System.currentTimeMillis();
+        Block block = blocks.getIfPresent(id);
+        if (block != null && now < block.untilMillis && permits >= block.permits) {
+            localRejectedCount.increment();
+            return false;
+        }
+        RedisScript script = algorithm == Algorithm.TOKEN_BUCKET ? TOKEN_BUCKET_SCRIPT
+            : SLIDING_WINDOW_SCRIPT;
+        List<?> result;
+        try {
+            result = (List<?>) client.eval(script, Collections.singletonList(keyOf(id)),
+                                           args(now, permits));
+        } catch (RuntimeException e) {
+            errorCount.increment();
+            logger.warn("redis rate limiter {} failed, id:{}, {}", name, id,
+                        failOpen ? "allow" : "reject", e);
+            return failOpen;
+        }
+        if (((Long) result.get(0)) == 1) {
+            allowedCount.increment();
+            if (block != null) {
+                blocks.invalidate(id);
+            }
+            return true;
+        }
+        rejectedCount.increment();
+        long waitMillis = (Long) result.get(1);
+        if (waitMillis > 0) {
+            blocks.put(id, new Block(now + waitMillis, permits));
+        }
+        return false;
+    }
+
+    private List<String> args(long now, int permits) {
+        if (algorithm == Algorithm.TOKEN_BUCKET) {
+            return Arrays.asList(String.valueOf(limit), String.valueOf(permitsPerMillis),
+                                 String.valueOf(now), String.valueOf(permits),
+                                 String.valueOf(keyTtlMillis));
+        }
+        return Arrays.asList(String.valueOf(limit), String.valueOf(windowMillis),
+                             String.valueOf(now), String.valueOf(permits),
+                             nodeId + ":" + sequence.incrementAndGet());
+    }
+
+    private String keyOf(String id) {
+        return name + ":" + id;
+    }
+
+    /**
+     * 清掉某个限流对象在redis和本地的状态,例如人工解封
+     *
+     * @param id 限流对象
+     */
+    public void reset(String id) {
+        blocks.invalidate(id);
+        client.del(keyOf(id));
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 令牌桶的容量,或者滑动窗口内的上限
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    public boolean isFailOpen() {
+        return failOpen;
+    }
+
+    /**
+     * @param failOpen redis出错时是否放行,默认true
+     */
+    public void setFailOpen(boolean failOpen) {
+        this.failOpen = failOpen;
+    }
+
+    /**
+     * @return 通过的次数
+     */
+    public long getAllowedCount() {
+        return allowedCount.sum();
+    }
+
+    /**
+     * @return 被redis拒绝的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return 本地预判直接拒绝、没有访问redis的次数
+     */
+    public long getLocalRejectedCount() {
+        return localRejectedCount.sum();
+    }
+
+    /**
+     * @return redis出错的次数
+     */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * 限流算法
+     */
+    public enum Algorithm {
+        /** 令牌桶,允许突发 */
+        TOKEN_BUCKET,
+        /** 滑动窗口日志,严格限制任意窗口内的总数 */
+        SLIDING_WINDOW
+    }
+
+    /**
+     * 被拒绝后本地记下的解封时间,在此之前申请不少于permits个许可一定会被拒绝
+     */
+    private static class Block {
+
+        private final long untilMillis;
+        private final int  permits;
+
+        Block(long untilMillis, int permits) {
+            this.untilMillis = untilMillis;
+            this.permits = permits;
+        }
+    }
+}
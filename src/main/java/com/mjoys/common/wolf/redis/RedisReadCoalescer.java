@@ -0,0 +1,284 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 11:03.<br/>
+ * 功能描述 : 单key读请求合并器.并发到达的get/hget/exists请求先进入队列,由分发线程在一个时间窗口内(或凑满maxBatchSize)
+ * 收集起来,一次pipeline发出(集群模式下每个slot一个pipeline),再把结果分别交还给各个调用线程.
+ * pipeline和单个读一样经过热点key采样、从库路由、熔断和命令统计.<br/>
+ * 同一批次内重复的读请求只发一次命令.<br/>
+ * <br/>
+ * 代价是单个请求最多多等一个窗口的时间,所以只适合高并发的场景,默认不开启,通过{@link RedisClient#enableReadCoalescing}开启.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisReadCoalescer {
+
+    private static final Logger              logger       = LoggerFactory.getLogger(RedisReadCoalescer.class);
+
+    private final RedisClient                client;
+    private final long                       windowNanos;
+    private final int                        maxBatchSize;
+    private final BlockingQueue<PendingRead> queue        = new LinkedBlockingQueue<>();
+    private final List<Thread>               dispatchers  = new ArrayList<>();
+
+    private final LongAdder                  batchCount   = new LongAdder();
+    private final LongAdder                  commandCount = new LongAdder();
+    private final LongAdder                  requestCount = new LongAdder();
+
+    private volatile boolean                 running      = true;
+
+    /**
+     * @param client 执行批量命令的客户端
+     * @param windowMicros 合并窗口,从批次中第一个请求入队开始计算,单位微秒
+     * @param maxBatchSize 每批最多合并的请求数,凑满后立即发出
+     * @param concurrency 分发线程数,也就是同时在途的pipeline数
+     */
+    RedisReadCoalescer(RedisClient client, long windowMicros, int maxBatchSize, int concurrency) {
+        if (windowMicros < 0 || maxBatchSize < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("windowMicros must be >= 0, maxBatchSize and concurrency must be >= 1");
+        }
+        this.client = client;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        for (int i = 0; i < concurrency; i++) {
+            Thread t = new Thread("redis-read-coalescer-" + i) {
+
+                @Override
+                public void run() {
+                    dispatchLoop();
+                }
+            };
+            t.setDaemon(true);
+            dispatchers.add(t);
+        }
+    }
+
+    void start() {
+        for (Thread t : dispatchers) {
+            t.start();
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        for (Thread t : dispatchers) {
+            t.interrupt();
+        }
+        // 还在排队的请求不再处理,直接让调用方失败
+        List<PendingRead> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (PendingRead r : rest) {
+            r.future.completeExceptionally(new IllegalStateException("redis read coalescer is shut down"));
+        }
+    }
+
+    String get(String key) {
+        return (String) submit(new PendingRead(ReadType.GET, key, null));
+    }
+
+    String hget(String key, String field) {
+        return (String) submit(new PendingRead(ReadType.HGET, key, field));
+    }
+
+    Boolean exists(String key) {
+        return (Boolean) submit(new PendingRead(ReadType.EXISTS, key, null));
+    }
+
+    private Object submit(PendingRead read) {
+        if (!running) {
+            throw new IllegalStateException("redis read coalescer is shut down");
+        }
+        requestCount.increment();
+        queue.add(read);
+        if (!running && queue.remove(read)) {
+            // 和shutdown并发:入队时已经drain过了,没有线程会再处理这个请求
+            read.future.completeExceptionally(new IllegalStateException("redis read coalescer is shut down"));
+        }
+        try {
+            return read.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void dispatchLoop() {
+        List<PendingRead> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingRead first = queue.take();
+                batch.add(first);
+                long deadline = first.enqueueNanos + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remain = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remain <= 0) {
+                        break;
+                    }
+                    PendingRead next = queue.poll(remain, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                execute(batch);
+            } catch (InterruptedException e) {
+                for (PendingRead r : batch) {
+                    r.future.completeExceptionally(new IllegalStateException("redis read coalescer is shut down"));
+                }
+                break;
+            } catch (Throwable e) {
+                // execute内部已经处理了异常,这里只是兜底,保证分发线程不会退出
+                logger.error("redis read coalescer dispatch error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<PendingRead> batch) {
+        // 同一批次中相同的读请求只发一次;集群模式下按slot分组,每组一个pipeline
+        boolean clusterMode = client.getClusterTopology() != null;
+        Map<String, PendingRead> unique = new LinkedHashMap<>();
+        Map<Integer, List<PendingRead>> groups = new LinkedHashMap<>();
+        for (PendingRead r : batch) {
+            if (unique.putIfAbsent(r.id(), r) == null) {
+                int slot = clusterMode ? RedisClusterTopology.slot(r.key) : 0;
+                groups.computeIfAbsent(slot, k -> new ArrayList<>()).add(r);
+            }
+        }
+        Map<String, Response<?>> responses = new HashMap<>();
+        Map<String, RuntimeException> errors = new HashMap<>();
+        for (final List<PendingRead> group : groups.values()) {
+            List<String> commands = new ArrayList<>(group.size());
+            List<String> keys = new ArrayList<>(group.size());
+            List<Function<RedisBatch, Response<?>>> requests = new ArrayList<>(group.size());
+            for (PendingRead r : group) {
+                commands.add(r.type.command);
+                keys.add(r.key);
+                requests.add(b -> r.type.submit(b, r));
+            }
+            try {
+                List<Response<?>> result = client.executeCoalesced(commands, keys, requests);
+                for (int i = 0; i < group.size(); i++) {
+                    responses.put(group.get(i).id(), result.get(i));
+                }
+            } catch (RuntimeException e) {
+                for (PendingRead r : group) {
+                    errors.put(r.id(), e);
+                }
+            }
+        }
+        batchCount.add(groups.size());
+        commandCount.add(unique.size());
+        for (PendingRead r : batch) {
+            RuntimeException error = errors.get(r.id());
+            if (error != null) {
+                r.future.completeExceptionally(error);
+                continue;
+            }
+            try {
+                r.future.complete(responses.get(r.id()).get());
+            } catch (RuntimeException e) {
+                r.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * @return 已发出的pipeline批次数
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return 实际发到redis的命令数(去重之后)
+     */
+    public long getCommandCount() {
+        return commandCount.sum();
+    }
+
+    /**
+     * @return 调用方提交的读请求数
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return 当前排队等待合并的请求数
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private enum ReadType {
+        GET("get") {
+
+            @Override
+            Response<?> submit(RedisBatch batch, PendingRead read) {
+                return batch.get(read.key);
+            }
+        },
+        HGET("hget") {
+
+            @Override
+            Response<?> submit(RedisBatch batch, PendingRead read) {
+                return batch.hget(read.key, read.field);
+            }
+        },
+        EXISTS("exists") {
+
+            @Override
+            Response<?> submit(RedisBatch batch, PendingRead read) {
+                return batch.exists(read.key);
+            }
+        };
+
+        private final String command;
+
+        ReadType(String command) {
+            this.command = command;
+        }
+
+        abstract Response<?> submit(RedisBatch batch, PendingRead read);
+    }
+
+    private static class PendingRead {
+
+        private final ReadType                  type;
+        private final String                    key;
+        private final String                    field;
+        private final long                      enqueueNanos = System.nanoTime();
+        private final CompletableFuture<Object> future       = new CompletableFuture<>();
+
+        PendingRead(ReadType type, String key, String field) {
+            this.type = type;
+            this.key = key;
+            this.field = field;
+        }
+
+        String id() {
+            return field == null ? type.name() + '\0' + key : type.name() + '\0' + key + '\0' + field;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.mjoys.common.wolf.redis;
+
+import com.mjoys.common.wolf.utils.NumberUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:52.<br/>
+ * 功能描述 : sentinel模式下把只读命令分发到从库,通过{@link RedisClient#enableReplicaReads(long, long)}开启.<br/>
+ * <br/>
+ * 定期从sentinel拉取从库列表(SENTINEL SLAVES),每个从库一个连接池;同时对比主库的master_repl_offset和从库的slave_repl_offset,
+ * 复制断开或者落后超过maxLagBytes的从库不参与分发.<br/>
+ * 分发使用power of two choices:随机挑两个可用从库,选(EWMA延迟 * (进行中的请求数 + 1))较小的那个,慢的从库自然少分到请求.
+ * 从库连接失败、熔断、正在加载数据(LOADING)或者和主库断开(MASTERDOWN)时,本次请求改到主库执行,并把该从库摘掉直到下次刷新.<br/>
+ * 注意:从库是异步复制的,刚写入的数据立即从从库读可能读不到,需要读己之写的场景不要开启.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisReplicaRouter {
+
+    private static final Logger                  logger        = LoggerFactory.getLogger(RedisReplicaRouter.class);
+
+    private static final double                  EWMA_ALPHA    = 0.2;
+
+    private final String                         masterName;
+    private final Set<String>                    sentinels;
+    private final Pool<Jedis>                    master;
+    private final JedisPoolConfig                config;
+    private final int                            timeout;
+    private final String                         password;
+    private final long                           maxLagBytes;
+
+    private final ConcurrentMap<String, Replica> replicas      = new ConcurrentHashMap<>();
+    private volatile List<Replica>               available     = Collections.emptyList();
+    private final ScheduledExecutorService       refresher;
+
+    private final LongAdder                      replicaReads  = new LongAdder();
+    private final LongAdder                      fallbackReads = new LongAdder();
+
+    /**
+     * @param masterName sentinel中的master名
+     * @param sentinels sentinel地址,格式ip:port
+     * @param master 主库连接池,用于读取主库的复制偏移量
+     * @param config 每个从库的连接池配置
+     * @param timeout 连接和读超时,毫秒
+     * @param password 密码,无密码传null
+     * @param maxLagBytes 允许从库落后主库的最大字节数
+     */
+    RedisReplicaRouter(String masterName, Set<String> sentinels, Pool<Jedis> master,
+                       JedisPoolConfig config, int timeout, String password, long maxLagBytes) {
+        this.masterName = masterName;
+        this.sentinels = sentinels;
+        this.master = master;
+        this.config = config;
+        this.timeout = timeout;
+        this.password = password;
+        this.maxLagBytes = maxLagBytes;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-replica-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 先同步刷新一次,再按间隔定期刷新
+     */
+    void start(long refreshIntervalMillis) {
+        refresh();
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis,
+                                         refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重新拉取从库列表并检查每个从库的复制状态
+     */
+    void refresh() {
+        try {
+            List<Map<String, String>> slaves = loadSlaves();
+            if (slaves == null) {
+                return;
+            }
+            long masterOffset = offset(master, "master_repl_offset");
+            Map<String, Replica> seen = new HashMap<>();
+            List<Replica> healthy = new ArrayList<>();
+            for (Map<String, String> slave : slaves) {
+                HostAndPort node = new HostAndPort(slave.get("ip"),
+                                                   NumberUtils.parseInt(slave.get("port"), 0));
+                Replica replica = replicas.computeIfAbsent(node.toString(), k -> new Replica(node,
+                    new JedisPool(config, node.getHost(), node.getPort(), timeout, password)));
+                seen.put(node.toString(), replica);
+                replica.healthy = check(replica, slave, masterOffset);
+                if (replica.healthy) {
+                    healthy.add(replica);
+                }
+            }
+            available = Collections.unmodifiableList(healthy);
+            for (String node : replicas.keySet()) {
+                if (!seen.containsKey(node)) {
+                    Replica removed = replicas.remove(node);
+                    if (removed != null) {
+                        logger.info("redis replica {} is gone, close its pool", node);
+                        removed.pool.close();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("refresh redis replicas of {} failed", masterName, e);
+        }
+    }
+
+    /**
+     * @return 任意一个sentinel返回的从库列表,所有sentinel都不可用时返回null
+     */
+    private List<Map<String, String>> loadSlaves() {
+        for (String sentinel : sentinels) {
+            String[] hostAndPort = sentinel.trim().split(":");
+            Jedis jedis = new Jedis(hostAndPort[0], NumberUtils.parseInt(hostAndPort[1], 0), timeout);
+            try {
+                return jedis.sentinelSlaves(masterName);
+            } catch (JedisException e) {
+                logger.warn("load replicas of {} from sentinel {} failed", masterName, sentinel, e);
+            } finally {
+                jedis.close();
+            }
+        }
+        return null;
+    }
+
+    private boolean check(Replica replica, Map<String, String> slave, long masterOffset) {
+        String flags = StringUtils.defaultString(slave.get("flags"));
+        if (flags.contains("s_down") || flags.contains("o_down") || flags.contains("disconnected")
+            || !"ok".equals(slave.get("master-link-status"))) {
+            logger.debug("redis replica {} is down in sentinel, flags:{}", replica.node, flags);
+            return false;
+        }
+        try {
+            long lag = masterOffset - offset(replica.pool, "slave_repl_offset");
+            replica.lagBytes = lag;
+            if (lag > maxLagBytes) {
+                logger.warn("redis replica {} lags {} bytes behind master, skip it", replica.node, lag);
+                return false;
+            }
+            return true;
+        } catch (JedisException e) {
+            logger.warn("check redis replica {} failed", replica.node, e);
+            return false;
+        }
+    }
+
+    private static long offset(Pool<Jedis> pool, String field) {
+        Jedis jedis = pool.getResource();
+        try {
+            for (String line : jedis.info("replication").split("\r\n")) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1).trim());
+                }
+            }
+            throw new JedisDataException("no " + field + " in info replication");
+        } finally {
+            jedis.close();
+        }
+    }
+
+    /**
+     * power of two choices选出一个从库
+     *
+     * @return 没有可用从库时返回null,由调用方走主库
+     */
+    Replica choose() {
+        List<Replica> list = available;
+        int size = list.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return list.get(0).healthy ? list.get(0) : null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(size);
+        int j = random.nextInt(size - 1);
+        if (j >= i) {
+            j++;
+        }
+        Replica a = list.get(i);
+        Replica b = list.get(j);
+        if (!a.healthy) {
+            return b.healthy ? b : null;
+        }
+        if (!b.healthy) {
+            return a;
+        }
+        return a.score() <= b.score() ? a : b;
+    }
+
+    /**
+     * @return 该连接池对应的从库地址,不是从库的连接池时返回null
+     */
+    String getNodeName(Pool<Jedis> pool) {
+        for (Replica replica : replicas.values()) {
+            if (replica.pool == pool) {
+                return replica.node.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 判断从库上的异常是否应该改到主库重试:连接失败、熔断、从库加载数据中、从库和主库断开且不提供旧数据
+     */
+    static boolean shouldFallback(RuntimeException e) {
+        if (e instanceof JedisConnectionException || e instanceof RedisCircuitOpenException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return e instanceof JedisDataException && message != null
+               && (message.startsWith("LOADING") || message.startsWith("MASTERDOWN"));
+    }
+
+    void onReplicaRead() {
+        replicaReads.increment();
+    }
+
+    void onFallback(Replica replica, RuntimeException e) {
+        fallbackReads.increment();
+        if (replica.healthy) {
+            replica.healthy = false;
+            logger.warn("redis replica {} failed, read from master until next refresh", replica.node, e);
+        }
+    }
+
+    void shutdown() {
+        refresher.shutdownNow();
+        for (Replica replica : replicas.values()) {
+            replica.pool.close();
+        }
+        replicas.clear();
+        available = Collections.emptyList();
+    }
+
+    /**
+     * @return 所有从库,包括当前不可用的
+     */
+    public List<Replica> getReplicas() {
+        return new ArrayList<>(replicas.values());
+    }
+
+    public long getMaxLagBytes() {
+        return maxLagBytes;
+    }
+
+    /**
+     * @return 在从库上执行的读请求数
+     */
+    public long getReplicaReadCount() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * @return 从库失败后改到主库执行的读请求数
+     */
+    public long getFallbackReadCount() {
+        return fallbackReads.sum();
+    }
+
+    /**
+     * 一个从库及其负载和延迟统计
+     */
+    public static class Replica {
+
+        private final HostAndPort   node;
+        private final JedisPool     pool;
+        private final AtomicInteger inflight = new AtomicInteger();
+        private volatile double     ewmaNanos;
+        private volatile long       lagBytes;
+        private volatile boolean    healthy;
+
+        Replica(HostAndPort node, JedisPool pool) {
+            this.node = node;
+            this.pool = pool;
+        }
+
+        Pool<Jedis> getPool() {
+            return pool;
+        }
+
+        /**
+         * @return 开始时间,传给{@link #finish(long)}
+         */
+        long start() {
+            inflight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        void finish(long start) {
+            inflight.decrementAndGet();
+            long elapsed = System.nanoTime() - start;
+            double ewma = ewmaNanos;
+            // 并发更新时可能丢掉个别样本,对负载均衡没有影响
+            ewmaNanos = ewma == 0 ? elapsed : ewma + EWMA_ALPHA * (elapsed - ewma);
+        }
+
+        double score() {
+            return ewmaNanos * (inflight.get() + 1);
+        }
+
+        public String getNode() {
+            return node.toString();
+        }
+
+        /**
+         * @return 延迟的指数加权平均,毫秒
+         */
+        public double getEwmaMillis() {
+            return ewmaNanos / 1000000;
+        }
+
+        /**
+         * @return 最近一次刷新时落后主库的字节数
+         */
+        public long getLagBytes() {
+            return lagBytes;
+        }
+
+        public int getInflight() {
+            return inflight.get();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        @Override
+        public String toString() {
+            return node + (healthy ? "" : "(down)") + " ewma:" + String.format("%.2f", getEwmaMillis())
+                   + "ms, lag:" + lagBytes + "B, inflight:" + inflight.get();
+        }
+    }
+}
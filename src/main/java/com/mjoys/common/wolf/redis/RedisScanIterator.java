@@ -0,0 +1,121 @@
+package com.mjoys.common.wolf.redis;
+
+import com.google.common.util.concurrent.RateLimiter;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 19:00.<br/>
+ * 功能描述 : 惰性的SCAN/HSCAN/SSCAN/ZSCAN迭代器,一次只在内存里保留一页数据.<br/>
+ * <br/>
+ * 只有当前页消费完并且调用方继续取下一个元素时才会发出下一次scan命令,消费慢时自然不会继续读取(背压).
+ * 设置了每秒最大元素数时,每取回一页就按该页的元素个数申请令牌,超速时阻塞等待,避免扫描把线上redis打满.<br/>
+ * 提前结束时调用{@link #close()},之后不会再发出任何命令;stream的close也会关闭迭代器.<br/>
+ * 和scan命令本身一样,遍历期间有变化的元素可能被返回多次或者不返回.迭代器不是线程安全的.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisScanIterator<T> implements Iterator<T>, Closeable {
+
+    private final Function<String, ScanResult<T>> fetcher;
+    private final RateLimiter                     rateLimiter;
+
+    private String                                cursor    = ScanParams.SCAN_POINTER_START;
+    private List<T>                               page;
+    private int                                   index;
+    private boolean                               finished;
+    private boolean                               closed;
+    private long                                  pageCount;
+    private long                                  elementCount;
+
+    /**
+     * @param fetcher 根据游标取一页数据
+     * @param maxElementsPerSecond 每秒最多取回的元素数,小于等于0表示不限速
+     */
+    RedisScanIterator(Function<String, ScanResult<T>> fetcher, double maxElementsPerSecond) {
+        this.fetcher = fetcher;
+        this.rateLimiter = maxElementsPerSecond > 0 ? RateLimiter.create(maxElementsPerSecond) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        // scan可能返回空页但游标没有结束,需要继续取
+        while (!closed && (page == null || index >= page.size())) {
+            if (finished) {
+                return false;
+            }
+            fetch();
+        }
+        return !closed;
+    }
+
+    private void fetch() {
+        ScanResult<T> result = fetcher.apply(cursor);
+        cursor = result.getStringCursor();
+        finished = ScanParams.SCAN_POINTER_START.equals(cursor);
+        page = result.getResult();
+        index = 0;
+        pageCount++;
+        elementCount += page.size();
+        if (rateLimiter != null && !page.isEmpty()) {
+            rateLimiter.acquire(page.size());
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    /**
+     * 停止迭代,之后hasNext返回false且不会再发出scan命令
+     */
+    @Override
+    public void close() {
+        closed = true;
+        page = null;
+    }
+
+    /**
+     * @return 包装成顺序stream,stream关闭时关闭本迭代器
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this,
+            Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * @return 当前游标,可以保存下来以后继续扫描;扫描结束时为"0"
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return 已经发出的scan命令次数
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return 已经取回的元素个数
+     */
+    public long getElementCount() {
+        return elementCount;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mjoys.common.wolf.redis;
+
+import com.mjoys.common.wolf.utils.SecurityUtils;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:20.<br/>
+ * 功能描述 : 一段lua脚本和它的sha1,sha1在本地计算,和redis的SCRIPT LOAD结果一致.<br/>
+ * <br/>
+ * 通过{@link RedisScriptRegistry#register(String, String)}或者直接new创建,
+ * 再交给RedisClient/ShardJedisClient的eval执行:平时只发EVALSHA,节点上没有该脚本时自动SCRIPT LOAD后重试.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisScript {
+
+    private final String name;
+    private final String source;
+    private final String sha1;
+    private final byte[] binarySource;
+    private final byte[] binarySha1;
+
+    /**
+     * @param name 脚本名,只用于日志和统计
+     * @param source lua源码
+     */
+    public RedisScript(String name, String source) {
+        if (name == null || source == null) {
+            throw new IllegalArgumentException("script name and source must not be null");
+        }
+        this.name = name;
+        this.source = source;
+        this.sha1 = SecurityUtils.encode2StringBySHA(source);
+        this.binarySource = SafeEncoder.encode(source);
+        this.binarySha1 = SafeEncoder.encode(sha1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    byte[] getBinarySource() {
+        return binarySource;
+    }
+
+    byte[] getBinarySha1() {
+        return binarySha1;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisScript[" + name + ", " + sha1 + "]";
+    }
+}
@@ -0,0 +1,127 @@
+package com.mjoys.common.wolf.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 23:30.<br/>
+ * 功能描述 : lua脚本注册表,按名字保存脚本,并负责在某个连接上以EVALSHA执行脚本.<br/>
+ * <br/>
+ * 脚本的sha1在注册时本地算好,执行时直接发EVALSHA,不用每次把源码传给redis.
+ * 节点重启、主从切换或者SCRIPT FLUSH之后节点上没有脚本,收到NOSCRIPT时在同一个连接上SCRIPT LOAD再EVALSHA一次,
+ * 调用方无感知.因为是同一个连接,分片/集群模式下脚本总是加载到key所在的节点.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisScriptRegistry {
+
+    private static final Logger                      logger        = LoggerFactory.getLogger(RedisScriptRegistry.class);
+
+    private final ConcurrentMap<String, RedisScript> scripts       = new ConcurrentHashMap<>();
+
+    private final LongAdder                          evalshaCount  = new LongAdder();
+    private final LongAdder                          noScriptCount = new LongAdder();
+
+    /**
+     * 注册脚本,同名同源码重复注册返回已有的脚本
+     *
+     * @param name 脚本名
+     * @param source lua源码
+     * @return 脚本
+     * @throws IllegalArgumentException 同名脚本已经用不同的源码注册过
+     */
+    public RedisScript register(String name, String source) {
+        RedisScript script = scripts.computeIfAbsent(name, k -> new RedisScript(name, source));
+        if (!script.getSource().equals(source)) {
+            throw new IllegalArgumentException("redis script " + name + " already registered with different source");
+        }
+        return script;
+    }
+
+    /**
+     * @param name 脚本名
+     * @return 脚本,没有注册时返回null
+     */
+    public RedisScript get(String name) {
+        return scripts.get(name);
+    }
+
+    /**
+     * @return 所有已注册的脚本
+     */
+    public Collection<RedisScript> getScripts() {
+        return Collections.unmodifiableCollection(scripts.values());
+    }
+
+    /**
+     * 在指定连接上执行脚本,NOSCRIPT时先加载再重试一次
+     *
+     * @param jedis 连接,必须是key所在节点的连接
+     * @param script 脚本
+     * @param keys KEYS参数
+     * @param args ARGV参数
+     * @return 脚本返回值
+     */
+    Object eval(Jedis jedis, RedisScript script, List<String> keys, List<String> args) {
+        evalshaCount.increment();
+        try {
+            return jedis.evalsha(script.getSha1(), keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            load(jedis, script);
+            return jedis.evalsha(script.getSha1(), keys, args);
+        }
+    }
+
+    /**
+     * 二进制参数版本,脚本返回的字符串为byte[]
+     */
+    Object evalBinary(Jedis jedis, RedisScript script, List<byte[]> keys, List<byte[]> args) {
+        evalshaCount.increment();
+        try {
+            return jedis.evalsha(script.getBinarySha1(), keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            load(jedis, script);
+            return jedis.evalsha(script.getBinarySha1(), keys, args);
+        }
+    }
+
+    private void load(Jedis jedis, RedisScript script) {
+        noScriptCount.increment();
+        logger.info("redis script {} not found on {}:{}, loading", script.getName(),
+                    jedis.getClient().getHost(), jedis.getClient().getPort());
+        jedis.scriptLoad(script.getBinarySource());
+    }
+
+    private static boolean isNoScript(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith("NOSCRIPT");
+    }
+
+    /**
+     * @return 发出EVALSHA的次数
+     */
+    public long getEvalshaCount() {
+        return evalshaCount.sum();
+    }
+
+    /**
+     * @return 收到NOSCRIPT后重新加载脚本的次数
+     */
+    public long getNoScriptCount() {
+        return noScriptCount.sum();
+    }
+}
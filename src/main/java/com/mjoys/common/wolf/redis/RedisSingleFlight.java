@@ -0,0 +1,200 @@
+package com.mjoys.common.wolf.redis;
+
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mjoys.common.wolf.utils.UUIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 创 建 人 : leiliang.<br/>
+ * 创建时间 : 2026/10/17 17:30.<br/>
+ * 功能描述 : 缓存未命中时的请求合并(single flight),防止热点key过期瞬间大量线程同时回源(缓存击穿).<br/>
+ * <br/>
+ * 同一个JVM内同一个key同时只有一个线程执行loader,其他线程等待它的结果.<br/>
+ * 开启分布式模式(distributedLeaseMillis &gt; 0)后,执行loader前还要先用set NX PX抢一个短租约,
+ * 抢不到的节点轮询等待抢到的节点把值写进redis,租约到期还没等到时才自己加载.<br/>
+ * loader返回null时不写缓存.<br/>
+ * 变更记录 : .<br/>
+ */
+public class RedisSingleFlight {
+
+    private static final Logger                                    logger                 = LoggerFactory.getLogger(RedisSingleFlight.class);
+
+    private static final String                                    LEASE_SUFFIX           = ":__load_lease";
+
+    private static final RedisScript                               RELEASE_SCRIPT         = new RedisScript("singleFlight.release",
+        "if redis.call('get', KEYS[1]) == ARGV[1] then "
+        + "return redis.call('del', KEYS[1]) end "
+        + "return 0");
+
+    private final RedisClient                                      client;
+    private final ConcurrentMap<String, CompletableFuture<String>> flights                = new ConcurrentHashMap<>();
+
+    private volatile long                                          distributedLeaseMillis = 0;
+    private volatile long                                          pollIntervalMillis     = 50;
+
+    private final LongAdder                                        loadCount              = new LongAdder();
+    private final LongAdder                                        collapsedCount         = new LongAdder();
+
+    RedisSingleFlight(RedisClient client) {
+        this.client = client;
+    }
+
+    String getOrLoad(final String key, final int ttlSeconds, final Callable<String> loader) {
+        String value = client.get(key);
+        if (value != null) {
+            return value;
+        }
+        return flight("k\0" + key, () -> load(key, null, ttlSeconds, loader));
+    }
+
+    String hgetOrLoad(final String key, final String field, final int ttlSeconds,
+                      final Callable<String> loader) {
+        String value = client.hget(key, field);
+        if (value != null) {
+            return value;
+        }
+        return flight("h\0" + key + "\0" + field, () -> load(key, field, ttlSeconds, loader));
+    }
+
+    private String flight(String flightKey, Callable<String> action) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = flights.putIfAbsent(flightKey, created);
+        if (existing != null) {
+            collapsedCount.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            }
+        }
+        try {
+            String value = action.call();
+            created.complete(value);
+            return value;
+        } catch (Exception e) {
+            created.completeExceptionally(e);
+            throw unwrap(e);
+        } finally {
+            flights.remove(flightKey, created);
+        }
+    }
+
+    private String load(String key, String field, int ttlSeconds,
+                        Callable<String> loader) throws Exception {
+        // 进入flight之前的读和这里之间,上一个flight可能刚写好
+        String loaded = read(key, field);
+        if (loaded != null) {
+            return loaded;
+        }
+        long leaseMillis = distributedLeaseMillis;
+        if (leaseMillis <= 0) {
+            return loadAndStore(key, field, ttlSeconds, loader);
+        }
+        String leaseKey = (field == null ? key : key + ":" + field) + LEASE_SUFFIX;
+        String token = UUIDUtils.createUUID();
+        if ("OK".equals(client.set(leaseKey, token, "NX", "PX", leaseMillis))) {
+            try {
+                // 抢到租约之前可能已经有其他节点写好了
+                String value = read(key, field);
+                if (value != null) {
+                    return value;
+                }
+                return loadAndStore(key, field, ttlSeconds, loader);
+            } finally {
+                // 比较后删除必须原子,否则租约恰好过期时会删掉别人刚抢到的租约
+                client.eval(RELEASE_SCRIPT, Collections.singletonList(leaseKey),
+                            Collections.singletonList(token));
+            }
+        }
+        long deadline = System.currentTimeMillis() + leaseMillis;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(pollIntervalMillis);
+            String value = read(key, field);
+            if (value != null) {
+                return value;
+            }
+        }
+        logger.warn("redis single flight wait lease timeout, load locally, key:{}", key);
+        return loadAndStore(key, field, ttlSeconds, loader);
+    }
+
+    private String read(String key, String field) {
+        return field == null ? client.get(key) : client.hget(key, field);
+    }
+
+    private String loadAndStore(final String key, final String field, final int ttlSeconds,
+                                Callable<String> loader) throws Exception {
+        loadCount.increment();
+        final String value = loader.call();
+        if (value == null) {
+            return null;
+        }
+        if (field == null) {
+            client.setex(key, ttlSeconds, value);
+        } else {
+            // 不用batch:batch里的写不会失效近端缓存,第一次hget缓存下的null会一直命中
+            client.hset(key, field, value);
+            client.expire(key, ttlSeconds);
+        }
+        return value;
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new UncheckedExecutionException(e);
+    }
+
+    public long getDistributedLeaseMillis() {
+        return distributedLeaseMillis;
+    }
+
+    /**
+     * 设置分布式模式的租约时间,应该略大于loader的正常耗时;小于等于0表示关闭分布式模式,只做JVM内的合并(默认)
+     *
+     * @param distributedLeaseMillis
+     */
+    public void setDistributedLeaseMillis(long distributedLeaseMillis) {
+        this.distributedLeaseMillis = distributedLeaseMillis;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    /**
+     * 设置分布式模式下没抢到租约时轮询redis的间隔,默认50ms
+     *
+     * @param pollIntervalMillis
+     */
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * @return 实际执行loader的次数
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * @return 因为同一个key已经在加载而直接等待结果的次数
+     */
+    public long getCollapsedCount() {
+        return collapsedCount.sum();
+    }
+}
@@ -15,7 +15,10 @@ import org.springframework.stereotype.Component;
 @Aspect
 public class RediscachePlugin {
 
-    @Around("execution(public * com.mjoys.common.wolf.redis.ShardJedisClient.*(..))")
+    /**
+     * 只拦截返回ReturnValue的命令方法;开关、统计之类的方法返回其他类型,异常时不能转换成ReturnValue,也不需要打点
+     */
+    @Around("execution(public com.mjoys.common.wolf.model.ReturnValue com.mjoys.common.wolf.redis.ShardJedisClient.*(..))")
     public Object redisJoinPoint(ProceedingJoinPoint joinPoint) {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         String methodName = signature.getMethod().getName();
@@ -5,7 +5,12 @@ import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.ShardedJedis;
+import redis.clients.util.SafeEncoder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,6 +20,37 @@ import java.util.Set;
  */
 public class ShardJedisClient extends BaseShardedJedisClient {
 
+    private static final RedisScript     INCRBY_EXPIRE_SCRIPT  = new RedisScript("incrByExpire",
+        "local v = redis.call('incrby', KEYS[1], ARGV[1]) "
+        + "redis.call('expire', KEYS[1], ARGV[2]) "
+        + "return v");
+
+    private static final RedisScript     DECRBY_EXPIRE_SCRIPT  = new RedisScript("decrByExpire",
+        "local v = redis.call('decrby', KEYS[1], ARGV[1]) "
+        + "redis.call('expire', KEYS[1], ARGV[2]) "
+        + "return v");
+
+    private static final RedisScript     HSET_EXPIRE_SCRIPT    = new RedisScript("hsetExpire",
+        "redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) "
+        + "redis.call('expire', KEYS[1], ARGV[3]) "
+        + "return 1");
+
+    private static final RedisScript     HINCRBY_EXPIRE_SCRIPT = new RedisScript("hincrByExpire",
+        "local v = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) "
+        + "redis.call('expire', KEYS[1], ARGV[3]) "
+        + "return v");
+
+    /** ARGV[1]为步长,ARGV[2]为失效时间(空串表示不设置),之后是各个字段 */
+    private static final RedisScript     HINCRBY_FIELDS_SCRIPT = new RedisScript("hincrByFields",
+        "for i = 3, #ARGV do redis.call('hincrby', KEYS[1], ARGV[i], ARGV[1]) end "
+        + "if ARGV[2] ~= '' then redis.call('expire', KEYS[1], ARGV[2]) end "
+        + "return 1");
+
+    private volatile RedisHotKeyDetector hotKeyDetector        = new RedisHotKeyDetector(10, 4096, 0.05); // 热点key探测,默认开启
+    private final RedisPayloadMetrics    payloadMetrics        = new RedisPayloadMetrics();
+    private final RedisScriptRegistry    scripts               = new RedisScriptRegistry();
+    private volatile RedisCounterAggregator counterAggregator;                                        // 计数器写聚合,为null表示未开启
+
     /**
      * Instantiates a new Shard jedis client.
      *
@@ -23,7 +59,19 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @throws Exception the exception
      */
     public ShardJedisClient(String clusterNodes) throws Exception {
+        this(clusterNodes, 0);
+    }
+
+    /**
+     * 创建客户端并在后台预热连接池,可以通过{@link #awaitReady(long, java.util.concurrent.TimeUnit)}等待预热完成
+     *
+     * @param clusterNodes 集群节点，样例：192.168.1.174:8901,192.168.1.174:8902,192.168.1.174:8903
+     * @param warmupConnections 预热的连接数,每个连接都会PING所有分片;0表示不预热
+     * @throws Exception the exception
+     */
+    public ShardJedisClient(String clusterNodes, int warmupConnections) throws Exception {
         initJedisPool(clusterNodes);
+        warmUp(warmupConnections);
     }
 
     /**
@@ -33,13 +81,7 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<byte[]> get(byte[] key) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            return ReturnValue.successResult(resource.get(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("get", key, resource -> ReturnValue.successResult(resource.get(key)));
     }
 
     /**
@@ -49,13 +91,7 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<String> get(String key) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            return ReturnValue.successResult(resource.get(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("get", key, resource -> ReturnValue.successResult(resource.get(key)));
     }
 
     /**
@@ -65,13 +101,7 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> exists(byte[] key) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            return ReturnValue.successResult(resource.exists(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("exists", key, resource -> ReturnValue.successResult(resource.exists(key)));
     }
 
     /**
@@ -81,13 +111,7 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> exists(String key) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            return ReturnValue.successResult(resource.exists(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("exists", key, resource -> ReturnValue.successResult(resource.exists(key)));
     }
 
     /**
@@ -98,12 +122,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> decrBy(byte[] key, long value) {
-        ShardedJedis resource = null;
-        try {
-            return ReturnValue.successResult(resource.decrBy(key, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("decrBy", key,
+            resource -> ReturnValue.successResult(resource.decrBy(key, value)));
     }
 
     /**
@@ -114,13 +134,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> decrBy(String key, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            return ReturnValue.successResult(resource.decrBy(key, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("decrBy", key,
+            resource -> ReturnValue.successResult(resource.decrBy(key, value)));
     }
 
     /**
@@ -132,16 +147,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> decrBy(byte[] key, long value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            Long bs = resource.decrBy(key, value);
-            resource.expire(key, expire);
-
-            return ReturnValue.successResult(bs);
-        } finally {
-            closeResource(resource);
-        }
+        return execute("decrBy", key, resource -> ReturnValue.successResult(
+            (Long) evalBinary(resource, DECRBY_EXPIRE_SCRIPT, key, args(value, expire))));
     }
 
     /**
@@ -153,16 +160,9 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Long> decrBy(String key, long value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            Long bs = resource.decrBy(key, value);
-            resource.expire(key, expire);
-
-            return ReturnValue.successResult(bs);
-        } finally {
-            closeResource(resource);
-        }
+        return execute("decrBy", key, resource -> ReturnValue.successResult(
+            (Long) eval(resource, DECRBY_EXPIRE_SCRIPT, key, String.valueOf(value),
+                        String.valueOf(expire))));
     }
 
     /**
@@ -173,14 +173,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Long> incrBy(String key, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.incrBy(key, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("incrBy", key,
+            resource -> ReturnValue.successResult(resource.incrBy(key, value)));
     }
 
     /**
@@ -191,14 +185,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> incrBy(byte[] key, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.incrBy(key, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("incrBy", key,
+            resource -> ReturnValue.successResult(resource.incrBy(key, value)));
     }
 
     /**
@@ -210,16 +198,9 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Long> incrBy(String key, long value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            Long bs = resource.incrBy(key, value);
-            resource.expire(key, expire);
-
-            return ReturnValue.successResult(bs);
-        } finally {
-            closeResource(resource);
-        }
+        return execute("incrBy", key, resource -> ReturnValue.successResult(
+            (Long) eval(resource, INCRBY_EXPIRE_SCRIPT, key, String.valueOf(value),
+                        String.valueOf(expire))));
     }
 
     /**
@@ -231,16 +212,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> incrBy(byte[] key, long value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            Long bs = resource.incrBy(key, value);
-            resource.expire(key, expire);
-
-            return ReturnValue.successResult(resource.incrBy(key, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("incrBy", key, resource -> ReturnValue.successResult(
+            (Long) evalBinary(resource, INCRBY_EXPIRE_SCRIPT, key, args(value, expire))));
     }
 
     /**
@@ -251,15 +224,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> set(byte[] key, byte[] value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("set", key, value, resource -> {
             resource.set(key, value);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -270,15 +239,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> set(String key, String value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("set", key, value, resource -> {
             resource.set(key, value);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -290,15 +255,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the
      */
     public ReturnValue<Boolean> setex(byte[] key, byte[] value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("setex", key, value, resource -> {
             resource.setex(key, expire, value);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -310,15 +271,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the
      */
     public ReturnValue<Boolean> setex(String key, String value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("setex", key, value, resource -> {
             resource.setex(key, expire, value);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -330,15 +287,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> hset(byte[] key, byte[] field, byte[] value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("hset", key, value, resource -> {
             resource.hset(key, field, value);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -350,15 +303,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> hset(String key, String field, String value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("hset", key, value, resource -> {
             resource.hset(key, field, value);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -371,16 +320,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> hset(byte[] key, byte[] field, byte[] value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            resource.hset(key, field, value);
-            resource.expire(key, expire);
+        return execute("hset", key, value, resource -> {
+            evalBinary(resource, HSET_EXPIRE_SCRIPT, key, args(field, value, expire));
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -393,16 +337,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> hset(String key, String field, String value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            resource.hset(key, field, value);
-            resource.expire(key, expire);
+        return execute("hset", key, value, resource -> {
+            eval(resource, HSET_EXPIRE_SCRIPT, key, field, value, String.valueOf(expire));
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -413,14 +352,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<byte[]> hget(byte[] key, byte[] field) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hget(key, field));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hget", key,
+            resource -> ReturnValue.successResult(resource.hget(key, field)));
     }
 
     /**
@@ -431,14 +364,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<String> hget(String key, String field) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hget(key, field));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hget", key,
+            resource -> ReturnValue.successResult(resource.hget(key, field)));
     }
 
     /**
@@ -448,14 +375,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Map<String, String>> hgetAll(String key) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hgetAll(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hgetAll", key,
+            resource -> ReturnValue.successResult(resource.hgetAll(key)));
     }
 
     /**
@@ -465,14 +386,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Map<byte[], byte[]>> hgetAll(byte[] key) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hgetAll(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hgetAll", key,
+            resource -> ReturnValue.successResult(resource.hgetAll(key)));
     }
 
     /**
@@ -484,14 +399,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> hincrBy(String key, String field, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hincrBy(key, field, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hincrBy", key,
+            resource -> ReturnValue.successResult(resource.hincrBy(key, field, value)));
     }
 
     /**
@@ -503,14 +412,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> hincrBy(byte[] key, byte[] field, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hincrBy(key, field, value));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hincrBy", key,
+            resource -> ReturnValue.successResult(resource.hincrBy(key, field, value)));
     }
 
     /**
@@ -523,16 +426,9 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> hincrBy(String key, String field, long value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            Long bs = resource.hincrBy(key, field, value);
-            resource.expire(key, expire);
-
-            return ReturnValue.successResult(bs);
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hincrBy", key, resource -> ReturnValue.successResult(
+            (Long) eval(resource, HINCRBY_EXPIRE_SCRIPT, key, field, String.valueOf(value),
+                        String.valueOf(expire))));
     }
 
     /**
@@ -545,17 +441,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> hincrBy(byte[] key, byte[] field, long value, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            Long bs = resource.hincrBy(key, field, value);
-            resource.expire(key, expire);
-
-            return ReturnValue.successResult(bs);
-        } finally {
-            closeResource(resource);
-        }
-
+        return execute("hincrBy", key, resource -> ReturnValue.successResult(
+            (Long) evalBinary(resource, HINCRBY_EXPIRE_SCRIPT, key, args(field, value, expire))));
     }
 
     /**
@@ -566,14 +453,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> hexists(String key, String field) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hexists(key, field));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hexists", key,
+            resource -> ReturnValue.successResult(resource.hexists(key, field)));
     }
 
     /**
@@ -584,15 +465,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Boolean> hexists(byte[] key, byte[] field) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.hexists(key, field));
-        } finally {
-            closeResource(resource);
-        }
-
+        return execute("hexists", key,
+            resource -> ReturnValue.successResult(resource.hexists(key, field)));
     }
 
     /**
@@ -606,18 +480,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      */
     public ReturnValue<Boolean> hincrByFields(byte[] key, Set<byte[]> fields, long value,
                                               int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            for (byte[] field : fields) {
-                resource.hincrBy(key, field, value);
-            }
-            resource.expire(key, expire);
+        return execute("hincrByFields", key, resource -> {
+            evalBinary(resource, HINCRBY_FIELDS_SCRIPT, key, args(value, expire, fields));
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -629,17 +496,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Boolean> hincrByFields(byte[] key, Set<byte[]> fields, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            for (byte[] field : fields) {
-                resource.hincrBy(key, field, value);
-            }
+        return execute("hincrByFields", key, resource -> {
+            evalBinary(resource, HINCRBY_FIELDS_SCRIPT, key, args(value, "", fields));
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -653,18 +514,12 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      */
     public ReturnValue<Boolean> hincrByFields(String key, Set<String> fields, long value,
                                               int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            for (String field : fields) {
-                resource.hincrBy(key, field, value);
-            }
-            resource.expire(key, expire);
+        return execute("hincrByFields", key, resource -> {
+            evalBinary(resource, HINCRBY_FIELDS_SCRIPT, SafeEncoder.encode(key),
+                       args(value, expire, fields));
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -676,17 +531,12 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Boolean> hincrByFields(String key, Set<String> fields, long value) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-            for (String field : fields) {
-                resource.hincrBy(key, field, value);
-            }
+        return execute("hincrByFields", key, resource -> {
+            evalBinary(resource, HINCRBY_FIELDS_SCRIPT, SafeEncoder.encode(key),
+                       args(value, "", fields));
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -697,15 +547,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Boolean> expire(byte[] key, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("expire", key, resource -> {
             resource.expire(key, expire);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -716,15 +562,11 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<Boolean> expire(String key, int expire) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
+        return execute("expire", key, resource -> {
             resource.expire(key, expire);
 
             return ReturnValue.successResult();
-        } finally {
-            closeResource(resource);
-        }
+        });
     }
 
     /**
@@ -736,14 +578,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return value return value
      */
     public ReturnValue<List<String>> lrange(String key, long start, long end) {
-        ShardedJedis resource = null;
-        try {
-            resource = jedisPool.getResource();
-
-            return ReturnValue.successResult(resource.lrange(key, start, end));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("lrange", key,
+            resource -> ReturnValue.successResult(resource.lrange(key, start, end)));
     }
 
     /**
@@ -764,12 +600,7 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> del(String key) {
-        ShardedJedis resource = null;
-        try {
-            return ReturnValue.successResult(resource.del(key));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("del", key, resource -> ReturnValue.successResult(resource.del(key)));
     }
 
     /**
@@ -780,12 +611,8 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return the return value
      */
     public ReturnValue<Long> hdel(String key, String... fields) {
-        ShardedJedis resource = null;
-        try {
-            return ReturnValue.successResult(resource.hdel(key, fields));
-        } finally {
-            closeResource(resource);
-        }
+        return execute("hdel", key,
+            resource -> ReturnValue.successResult(resource.hdel(key, fields)));
     }
 
     /**
@@ -795,12 +622,236 @@ public class ShardJedisClient extends BaseShardedJedisClient {
      * @return return value
      */
     public ReturnValue<Long> del(byte[] keys) {
+        return execute("del", keys, resource -> ReturnValue.successResult(resource.del(keys)));
+    }
+
+    /**
+     * 执行lua脚本,平时只发EVALSHA,分片上没有该脚本时自动加载后重试.按第一个key路由到所在分片,
+     * 所有key必须在同一个分片上
+     *
+     * @param script 脚本,见{@link #registerScript(String, String)}
+     * @param keys KEYS参数,不能为空
+     * @param args ARGV参数
+     * @return 脚本返回值
+     */
+    public ReturnValue<Object> eval(RedisScript script, List<String> keys, List<String> args) {
+        String key = keys.get(0);
+        return execute("evalsha", key, resource -> ReturnValue.successResult(
+            scripts.eval(resource.getShard(key), script, keys, args)));
+    }
+
+    /**
+     * 二进制参数版本,脚本返回的字符串为byte[]
+     *
+     * @param script 脚本
+     * @param keys KEYS参数,不能为空
+     * @param args ARGV参数
+     * @return 脚本返回值
+     */
+    public ReturnValue<Object> evalBinary(RedisScript script, List<byte[]> keys,
+                                          List<byte[]> args) {
+        byte[] key = keys.get(0);
+        return execute("evalsha", key, resource -> ReturnValue.successResult(
+            scripts.evalBinary(resource.getShard(key), script, keys, args)));
+    }
+
+    /**
+     * 注册lua脚本,sha1在本地计算,不访问redis
+     *
+     * @param name 脚本名
+     * @param source lua源码
+     * @return 脚本
+     */
+    public RedisScript registerScript(String name, String source) {
+        return scripts.register(name, source);
+    }
+
+    /**
+     * @return lua脚本注册表
+     */
+    public RedisScriptRegistry getScriptRegistry() {
+        return scripts;
+    }
+
+    private Object eval(ShardedJedis resource, RedisScript script, String key, String... args) {
+        return scripts.eval(resource.getShard(key), script, Collections.singletonList(key),
+                            Arrays.asList(args));
+    }
+
+    private Object evalBinary(ShardedJedis resource, RedisScript script, byte[] key,
+                              List<byte[]> args) {
+        return scripts.evalBinary(resource.getShard(key), script, Collections.singletonList(key),
+                                  args);
+    }
+
+    /**
+     * 把脚本参数转成byte[],集合参数展开,byte[]原样保留,其他类型取toString
+     */
+    private static List<byte[]> args(Object... values) {
+        List<byte[]> result = new ArrayList<>();
+        for (Object value : values) {
+            if (value instanceof Collection) {
+                for (Object o : (Collection<?>) value) {
+                    result.add(arg(o));
+                }
+            } else {
+                result.add(arg(value));
+            }
+        }
+        return result;
+    }
+
+    private static byte[] arg(Object value) {
+        return value instanceof byte[] ? (byte[]) value : SafeEncoder.encode(String.valueOf(value));
+    }
+
+    /**
+     * 重新配置热点key探测,默认已经以topK=10、width=4096、采样率0.05开启
+     *
+     * @param topK 每个命令保留的热点key个数
+     * @param width count-min sketch每行的计数器个数
+     * @param sampleRate 采样率,0~1
+     * @return 新的探测器,可以在上面设置告警阈值和回调
+     */
+    public RedisHotKeyDetector enableHotKeyDetection(int topK, int width, double sampleRate) {
+        RedisHotKeyDetector detector = new RedisHotKeyDetector(topK, width, sampleRate);
+        hotKeyDetector = detector;
+        return detector;
+    }
+
+    /**
+     * 关闭热点key探测
+     */
+    public void disableHotKeyDetection() {
+        hotKeyDetector = null;
+    }
+
+    /**
+     * @return 热点key探测器,关闭时返回null
+     */
+    public RedisHotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    /**
+     * @return 按命令和key前缀统计的请求/响应大小,也可以在上面设置大value阈值和写入上限
+     */
+    public RedisPayloadMetrics getPayloadMetrics() {
+        return payloadMetrics;
+    }
+
+    /**
+     * 开启计数器写聚合:通过返回的聚合器累加的incrBy/hincrBy/hincrByFields先在本地合并,
+     * 每flushIntervalMillis毫秒用pipeline批量写入一次.本类原有的incrBy/hincrBy方法不受影响,仍然同步写入并返回最新值.
+     * 已经开启时返回当前的聚合器
+     *
+     * @param flushIntervalMillis 写入周期,毫秒,也是进程崩溃时最多丢失的增量时长,例如1000
+     * @param maxPendingKeys 本地待写的计数器数达到这个值时提前写入,例如10000
+     * @return 聚合器
+     * @see RedisCounterAggregator
+     */
+    public synchronized RedisCounterAggregator enableCounterAggregation(long flushIntervalMillis,
+                                                                        int maxPendingKeys) {
+        if (counterAggregator == null) {
+            counterAggregator = new RedisCounterAggregator(jedisPool, this::circuitBreaker,
+                                                           flushIntervalMillis, maxPendingKeys);
+        }
+        return counterAggregator;
+    }
+
+    /**
+     * 关闭计数器写聚合,先把本地剩余的增量写入redis;应用退出前应该调用,没有调用时由jvm的shutdown hook写入
+     */
+    public synchronized void disableCounterAggregation() {
+        if (counterAggregator != null) {
+            counterAggregator.shutdown();
+            counterAggregator = null;
+        }
+    }
+
+    /**
+     * @return 计数器写聚合器,未开启时返回null
+     */
+    public RedisCounterAggregator getCounterAggregator() {
+        return counterAggregator;
+    }
+
+    private <T> ReturnValue<T> execute(String command, String key, ShardedAction<T> action) {
+        return execute(command, key, null, action);
+    }
+
+    private <T> ReturnValue<T> execute(String command, String key, Object value,
+                                       ShardedAction<T> action) {
+        return execute(command, key, circuitBreaker(key), value, action);
+    }
+
+    private <T> ReturnValue<T> execute(String command, byte[] key, ShardedAction<T> action) {
+        return execute(command, key, null, action);
+    }
+
+    /**
+     * 熔断器按原始字节找分片,转成的String只用于热点采样和大小统计
+     */
+    private <T> ReturnValue<T> execute(String command, byte[] key, Object value,
+                                       ShardedAction<T> action) {
+        return execute(command, SafeEncoder.encode(key), circuitBreaker(key), value, action);
+    }
+
+    /**
+     * 借一个连接执行操作,执行完归还,同时对key做热点采样、统计请求和响应的大小.
+     * 开启熔断且key所在节点的熔断器打开时不借连接,直接返回失败
+     *
+     * @param command 命令名,用于统计
+     * @param key 操作的key
+     * @param breaker key所在节点的熔断器,未开启熔断时为null
+     * @param value 写入的值,用于统计大小和检查写入上限,不是写命令时传null
+     * @param action 具体操作
+     * @return 操作的返回值
+     */
+    private <T> ReturnValue<T> execute(String command, String key, RedisCircuitBreaker breaker,
+                                       Object value, ShardedAction<T> action) {
+        RedisHotKeyDetector detector = hotKeyDetector;
+        if (detector != null) {
+            detector.record(command, key);
+        }
+        if (breaker != null && !breaker.tryAcquire()) {
+            return ReturnValue.failResult("redis circuit breaker " + breaker.getName() + " is open");
+        }
+        if (value != null) {
+            payloadMetrics.recordWrite(command, key, value);
+        }
+        long start = System.nanoTime();
+        RuntimeException error = null;
+        ReturnValue<T> result;
+        try {
+            result = execute(action);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            if (breaker != null) {
+                breaker.onComplete(System.nanoTime() - start, error);
+            }
+        }
+        if (value == null) {
+            // 带value的都是写命令,回复只是状态或数字
+            payloadMetrics.recordRead(command, key, result.getValue());
+        }
+        return result;
+    }
+
+    private <T> ReturnValue<T> execute(ShardedAction<T> action) {
         ShardedJedis resource = null;
         try {
-            return ReturnValue.successResult(resource.del(keys));
+            resource = jedisPool.getResource();
+            return action.doInRedis(resource);
         } finally {
             closeResource(resource);
         }
     }
 
+    private interface ShardedAction<T> {
+
+        ReturnValue<T> doInRedis(ShardedJedis resource);
+    }
 }